@@ -0,0 +1,68 @@
+package io.muzoo.ssc.bench;
+
+import io.muzoo.ssc.algos.AlgoFactory;
+import io.muzoo.ssc.algos.Algorithms;
+import io.muzoo.ssc.algos.ContentComparator;
+import io.muzoo.ssc.algos.DetectionAlgorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The AlgorithmBenchmark class measures every Algorithms implementation on a single file of
+ * each size from 1 KiB to 1 GiB. Hashing algorithms hash one file per invocation; `bbb` has no
+ * per-file hash and instead compares the file with an identical copy, which is its worst case,
+ * since identical files are read to the end.
+ *
+ * Scores are the average time per file; divide the file size by the score for the throughput.
+ * Point `java.io.tmpdir` at the storage to measure, e.g. `-jvmArgs -Djava.io.tmpdir=/mnt/nas/tmp`.
+ *
+ * Example Usage:
+ * java -jar target/benchmarks.jar AlgorithmBenchmark -p algorithm=md5,xxh64 -p fileSize=1048576
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AlgorithmBenchmark {
+
+    @Param({"md5", "sha256", "xxh64", "murmur3", "bbb"})
+    public String algorithm;
+
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    public long fileSize;
+
+    private DetectionAlgorithm algo;
+    private Path dir;
+    private Path file;
+    private List<Path> identicalPair;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        algo = AlgoFactory.createAlgo(algorithm);
+        dir = BenchmarkFixtures.createTempDirectory();
+        file = BenchmarkFixtures.createRandomFile(dir, "data.bin", fileSize, 42);
+        if (algo instanceof ContentComparator) {
+            identicalPair = List.of(file, Files.copy(file, dir.resolve("copy.bin")));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        BenchmarkFixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public Object hashFile() throws IOException {
+        if (algo instanceof ContentComparator) {
+            return ((ContentComparator) algo).partition(identicalPair, fileSize, bytes -> {});
+        }
+        return ((Algorithms) algo).computeDigest(file.toFile());
+    }
+}
@@ -0,0 +1,105 @@
+package io.muzoo.ssc.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * The BenchmarkFixtures class generates the temporary files the benchmarks run against.
+ * Content is pseudo-random with a fixed seed, so every run hashes exactly the same bytes.
+ *
+ * Example Usage:
+ * Path dir = BenchmarkFixtures.createTempDirectory();
+ * Path file = BenchmarkFixtures.createRandomFile(dir, "data.bin", 1024 * 1024, 42);
+ * BenchmarkFixtures.createDuplicateTree(dir.resolve("tree"), 1000, 64 * 1024, 0.25, 42);
+ * BenchmarkFixtures.deleteRecursively(dir);
+ */
+public final class BenchmarkFixtures {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Creates an empty temporary directory for the fixtures of a benchmark.
+     *
+     * @return The new directory.
+     * @throws IOException If the directory cannot be created.
+     */
+    public static Path createTempDirectory() throws IOException {
+        return Files.createTempDirectory("ssc-bench-");
+    }
+
+    /**
+     * Creates a file of the given size filled with pseudo-random bytes.
+     *
+     * @param dir  The directory to create the file in.
+     * @param name The name of the file.
+     * @param size The size of the file, in bytes.
+     * @param seed The seed of the pseudo-random content.
+     * @return The path of the new file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static Path createRandomFile(Path dir, String name, long size, long seed) throws IOException {
+        Path file = dir.resolve(name);
+        Random random = new Random(seed);
+        byte[] chunk = new byte[CHUNK_SIZE];
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Creates a tree of files spread over subdirectories of at most 100 files each. A share of the
+     * files are copies of earlier files; the others have unique pseudo-random content. Half of the
+     * unique files share their size with another file, so every stage of the pipeline has work to do.
+     *
+     * @param dir            The root of the tree; it is created if needed.
+     * @param fileCount      The number of files to create.
+     * @param fileSize       The size of the files, in bytes; unique files vary slightly around it.
+     * @param duplicateShare The share of files, between 0 and 1, that duplicate an earlier file.
+     * @param seed           The seed of the pseudo-random content.
+     * @return The root of the tree.
+     * @throws IOException If a file cannot be written.
+     */
+    public static Path createDuplicateTree(Path dir, int fileCount, long fileSize, double duplicateShare, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        Path previous = null;
+
+        for (int i = 0; i < fileCount; i++) {
+            Path subdir = Files.createDirectories(dir.resolve("d" + (i / 100)));
+            String name = "f" + i + ".bin";
+            if (previous != null && random.nextDouble() < duplicateShare) {
+                Files.copy(previous, subdir.resolve(name));
+            } else {
+                long size = random.nextBoolean() ? fileSize : fileSize + i;
+                previous = createRandomFile(subdir, name, size, random.nextLong());
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * Deletes a directory and everything below it.
+     *
+     * @param dir The directory to delete.
+     * @throws IOException If a file cannot be deleted.
+     */
+    public static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
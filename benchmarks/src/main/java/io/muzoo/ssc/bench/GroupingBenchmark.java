@@ -0,0 +1,142 @@
+package io.muzoo.ssc.bench;
+
+import io.muzoo.ssc.FileVisitorService;
+import io.muzoo.ssc.ScanOptions;
+import io.muzoo.ssc.algos.AlgoFactory;
+import io.muzoo.ssc.pipeline.GroupingTable;
+import io.muzoo.ssc.pipeline.ParallelWalker;
+import org.apache.commons.codec.binary.Hex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GroupingBenchmark class measures how FileVisitorService groups files, at two levels:
+ * - scan: a full single-threaded scan of a generated tree, from the walk to the duplicate groups,
+ *   so regressions anywhere in the pipeline show up.
+ * - scanSpilled: the same scan in memory-bounded mode, with a budget small enough that every
+ *   stage spills sorted runs to disk, to compare its throughput with the in-memory scan.
+ * - walk / walkParallel: the walk alone, with the visitor counting files, on the calling thread
+ *   and with WALK_THREADS threads listing directories. On a local disk with a warm page cache this
+ *   shows the overhead of the parallel walk; set -jvmArgs -Djava.io.tmpdir=<dir> to place the tree on
+ *   a network filesystem and measure the latency it hides.
+ * - groupingTable / stringMap: grouping in-memory digests by key alone, once with the
+ *   GroupingTable used by the pipeline and once with the HashMap of hex Strings it replaced.
+ *
+ * Example Usage:
+ * java -jar target/benchmarks.jar GroupingBenchmark -p fileCount=10000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GroupingBenchmark {
+    private static final int DIGEST_LENGTH = 16;
+    private static final long FILE_SIZE = 16 * 1024;
+    private static final long SPILL_BUDGET = 64 * 1024;
+    private static final int WALK_THREADS = 8;
+
+    @Param({"1000", "10000"})
+    public int fileCount;
+
+    @Param({"md5"})
+    public String algorithm;
+
+    private Path dir;
+    private byte[][] digests;
+    private List<Path> paths;
+
+    @Setup(Level.Trial)
+    public void createFixtures() throws IOException {
+        dir = BenchmarkFixtures.createTempDirectory();
+        BenchmarkFixtures.createDuplicateTree(dir.resolve("tree"), fileCount, FILE_SIZE, 0.25, 42);
+
+        SplittableRandom random = new SplittableRandom(42);
+        digests = new byte[fileCount * 100][];
+        paths = new ArrayList<>(digests.length);
+        for (int i = 0; i < digests.length; i++) {
+            digests[i] = new byte[DIGEST_LENGTH];
+            random.nextBytes(digests[i]);
+            if (i > 0 && random.nextInt(4) == 0) {
+                digests[i] = digests[random.nextInt(i)];
+            }
+            paths.add(Paths.get("/data/d" + (i / 100), "f" + i + ".bin"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFixtures() throws IOException {
+        BenchmarkFixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public Map<String, List<Path>> scan() throws IOException {
+        ScanOptions options = new ScanOptions();
+        FileVisitorService visitor = new FileVisitorService(AlgoFactory.createAlgo(algorithm, options), options);
+        visitor.visitDirectory(dir.resolve("tree").toString());
+        return visitor.getHashToFileMap();
+    }
+
+    @Benchmark
+    public Map<String, List<Path>> scanSpilled() throws IOException {
+        ScanOptions options = new ScanOptions().setMemoryBudget(SPILL_BUDGET).setSpillDirectory(dir);
+        try (FileVisitorService visitor = new FileVisitorService(AlgoFactory.createAlgo(algorithm, options), options)) {
+            visitor.visitDirectory(dir.resolve("tree").toString());
+            return visitor.getHashToFileMap();
+        }
+    }
+
+    @Benchmark
+    public long walk() throws IOException {
+        return countFiles(new ParallelWalker(1, false));
+    }
+
+    @Benchmark
+    public long walkParallel() throws IOException {
+        return countFiles(new ParallelWalker(WALK_THREADS, false));
+    }
+
+    @Benchmark
+    public GroupingTable groupingTable() {
+        GroupingTable table = new GroupingTable(DIGEST_LENGTH, digests.length);
+        for (int i = 0; i < digests.length; i++) {
+            table.add(digests[i], i);
+        }
+        return table;
+    }
+
+    @Benchmark
+    public Map<String, List<Path>> stringMap() {
+        Map<String, List<Path>> map = new HashMap<>();
+        for (int i = 0; i < digests.length; i++) {
+            map.computeIfAbsent(Hex.encodeHexString(digests[i]),
+                    key -> new ArrayList<>()).add(paths.get(i));
+        }
+        return map;
+    }
+
+    private long countFiles(ParallelWalker walker) throws IOException {
+        long[] count = new long[1];
+        walker.walk(dir.resolve("tree"), new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                count[0]++;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return count[0];
+    }
+}
@@ -0,0 +1,121 @@
+package io.muzoo.ssc.bench;
+
+import io.muzoo.ssc.pipeline.ExternalSorter;
+import io.muzoo.ssc.pipeline.GroupingTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The GroupingFootprint class measures the retained heap of grouping a synthetic tree of files
+ * by a 256-bit digest, once the way the scan used to (a HashMap from 64-character hex String to
+ * a List of Paths), once with a GroupingTable of binary keys and int file indices, and once
+ * with the ExternalSorter of the memory-bounded scan (spill), whose footprint is capped by its
+ * budget of SPILL_BUDGET bytes whatever the number of files.
+ *
+ * No files are created: digests are random and every file gets a synthetic path. The path
+ * registry is built for both modes and excluded from the measurement, since the scan keeps it
+ * either way. Each mode runs in its own JVM so that the two measurements cannot disturb each other.
+ * Every file gets its own digest, which is the worst case for both structures.
+ *
+ * Example Usage:
+ * java -Xmx4g -cp target/benchmarks.jar io.muzoo.ssc.bench.GroupingFootprint map 10000000
+ * java -Xmx4g -cp target/benchmarks.jar io.muzoo.ssc.bench.GroupingFootprint table 10000000
+ * java -Xmx4g -cp target/benchmarks.jar io.muzoo.ssc.bench.GroupingFootprint spill 10000000
+ */
+public class GroupingFootprint {
+    private static final int DIGEST_LENGTH = 32;
+    private static final long SPILL_BUDGET = 64L * 1024 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !(args[0].equals("map") || args[0].equals("table") || args[0].equals("spill"))) {
+            System.err.println("Usage: GroupingFootprint <map|table|spill> <file count>");
+            System.exit(1);
+        }
+        int fileCount = Integer.parseInt(args[1]);
+
+        List<Path> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            files.add(Paths.get("/data/dir" + (i / 1000), "file" + i + ".bin"));
+        }
+
+        long before = usedHeap();
+        Object grouping;
+        if (args[0].equals("spill")) {
+            Path tempDirectory = Files.createTempDirectory("footprint");
+            grouping = groupBySorting(files, tempDirectory);
+        } else {
+            grouping = args[0].equals("map") ? groupInMap(files) : groupInTable(files);
+        }
+        long after = usedHeap();
+
+        System.out.printf("%s: %,d files, %,d bytes retained, %.1f bytes per file%n",
+                args[0], fileCount, after - before, (after - before) / (double) fileCount);
+        System.out.println(grouping.hashCode() == 0 ? "" : "done");
+    }
+
+    private static Map<String, List<Path>> groupInMap(List<Path> files) {
+        SplittableRandom random = new SplittableRandom(42);
+        byte[] digest = new byte[DIGEST_LENGTH];
+        Map<String, List<Path>> hashToFileMap = new HashMap<>();
+        for (Path file : files) {
+            random.nextBytes(digest);
+            hashToFileMap.computeIfAbsent(toHex(digest), k -> new ArrayList<>()).add(file);
+        }
+        return hashToFileMap;
+    }
+
+    private static GroupingTable groupInTable(List<Path> files) {
+        SplittableRandom random = new SplittableRandom(42);
+        byte[] digest = new byte[DIGEST_LENGTH];
+        GroupingTable table = new GroupingTable(DIGEST_LENGTH, 0);
+        for (int fileId = 0; fileId < files.size(); fileId++) {
+            random.nextBytes(digest);
+            table.add(digest, fileId);
+        }
+        return table;
+    }
+
+    /**
+     * Sorts the records with an ExternalSorter and reads them back, returning the open cursor
+     * so that what the merge keeps in memory is part of the measurement. The run files are
+     * left in the temp directory, which the measurement does not depend on.
+     */
+    private static ExternalSorter.Cursor groupBySorting(List<Path> files, Path tempDirectory) throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        byte[] digest = new byte[DIGEST_LENGTH];
+        ExternalSorter sorter = new ExternalSorter(DIGEST_LENGTH, SPILL_BUDGET, tempDirectory);
+        for (int fileId = 0; fileId < files.size(); fileId++) {
+            random.nextBytes(digest);
+            sorter.add(files.size(), digest, fileId);
+        }
+        ExternalSorter.Cursor cursor = sorter.sorted();
+        cursor.next();
+        return cursor;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
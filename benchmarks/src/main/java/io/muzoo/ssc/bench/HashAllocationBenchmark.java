@@ -0,0 +1,105 @@
+package io.muzoo.ssc.bench;
+
+import io.muzoo.ssc.algos.AlgoFactory;
+import io.muzoo.ssc.algos.Algorithms;
+import io.muzoo.ssc.algos.ChannelHasher;
+import io.muzoo.ssc.algos.Murmur3Digest;
+import io.muzoo.ssc.algos.PartialContentHasher;
+import io.muzoo.ssc.algos.XXHash64Digest;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HashAllocationBenchmark class measures what hashing a small file allocates, which is what
+ * dominates a scan of millions of small files. Every invocation hashes the next of FILE_COUNT
+ * files of FILE_SIZE bytes, so the scores are per file:
+ * - `freshDigest`: creates a new MessageDigest for every file, the way the algorithms used to.
+ * - `reusedDigest`: hashes through the Algorithms implementation, which reuses the digest and
+ *   read buffer of the calling thread.
+ * - `sample`: the partial-content sample hash, with its per-thread digest and block buffer.
+ *
+ * Run it with the GC profiler and read `gc.alloc.rate.norm`, the bytes allocated per file.
+ *
+ * Example Usage:
+ * java -jar target/benchmarks.jar HashAllocationBenchmark -prof gc -p algorithm=md5
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HashAllocationBenchmark {
+    private static final int FILE_COUNT = 1000;
+    private static final long FILE_SIZE = 4096;
+
+    @Param({"md5", "sha256", "xxh64", "murmur3"})
+    public String algorithm;
+
+    private Algorithms algo;
+    private ChannelHasher channelHasher;
+    private PartialContentHasher sampler;
+    private Path dir;
+    private List<Path> files;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        algo = AlgoFactory.createHashAlgo(algorithm);
+        channelHasher = new ChannelHasher();
+        sampler = new PartialContentHasher(1024, true);
+        dir = BenchmarkFixtures.createTempDirectory();
+        files = new ArrayList<>(FILE_COUNT);
+        for (int i = 0; i < FILE_COUNT; i++) {
+            files.add(BenchmarkFixtures.createRandomFile(dir, "f" + i + ".bin", FILE_SIZE, i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        BenchmarkFixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public byte[] freshDigest() throws IOException {
+        return channelHasher.digest(nextFile(), newDigest());
+    }
+
+    @Benchmark
+    public byte[] reusedDigest() throws IOException {
+        return algo.computeDigest(nextFile());
+    }
+
+    @Benchmark
+    public byte[] sample() throws IOException {
+        return sampler.computeSampleHash(nextFile(), FILE_SIZE);
+    }
+
+    private Path nextFile() {
+        Path file = files.get(next);
+        next = (next + 1) % FILE_COUNT;
+        return file;
+    }
+
+    private MessageDigest newDigest() {
+        switch (algorithm) {
+            case "md5":
+                return DigestUtils.getMd5Digest();
+            case "sha256":
+                return DigestUtils.getSha256Digest();
+            case "xxh64":
+                return new XXHash64Digest();
+            case "murmur3":
+                return new Murmur3Digest();
+            default:
+                throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+        }
+    }
+}
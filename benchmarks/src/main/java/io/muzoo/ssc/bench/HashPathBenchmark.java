@@ -0,0 +1,93 @@
+package io.muzoo.ssc.bench;
+
+import io.muzoo.ssc.algos.ChannelHasher;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HashPathBenchmark class measures the ways of feeding a file into a MessageDigest: the
+ * former InputStream path of DigestUtils, the FileChannel path with pooled direct buffers,
+ * asynchronous reads of READ_AHEAD blocks ahead of the digest, and memory-mapped windows.
+ * Comparing the channel and mapped scores per file size shows the crossover point to use for
+ * `--mmap-threshold` on the storage the benchmark runs on; comparing channel and readAhead
+ * shows whether `--read-ahead` pays off there. Files in the page cache gain little from it.
+ *
+ * The digest is "MD5" by default; run with `-p digest=SHA-256` to measure SHA-256 instead.
+ * Point `java.io.tmpdir` at the storage to measure, e.g. `-jvmArgs -Djava.io.tmpdir=/mnt/nas/tmp`.
+ *
+ * Example Usage:
+ * java -jar target/benchmarks.jar HashPathBenchmark -p fileSize=16777216,268435456
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HashPathBenchmark {
+    private static final int READ_AHEAD = 4;
+
+    @Param({"1048576", "16777216", "67108864", "268435456", "1073741824"})
+    public long fileSize;
+
+    @Param({"MD5"})
+    public String digest;
+
+    private Path dir;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        dir = BenchmarkFixtures.createTempDirectory();
+        file = BenchmarkFixtures.createRandomFile(dir, "data.bin", fileSize, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        BenchmarkFixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public byte[] inputStream() throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return DigestUtils.digest(DigestUtils.getDigest(digest), in);
+        }
+    }
+
+    @Benchmark
+    public byte[] channel() throws IOException {
+        MessageDigest md = DigestUtils.getDigest(digest);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChannelHasher.updateWithChannel(channel, md);
+        }
+        return md.digest();
+    }
+
+    @Benchmark
+    public byte[] readAhead() throws IOException {
+        MessageDigest md = DigestUtils.getDigest(digest);
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ)) {
+            ChannelHasher.updateWithReadAhead(channel, md, READ_AHEAD);
+        }
+        return md.digest();
+    }
+
+    @Benchmark
+    public byte[] mapped() throws IOException {
+        MessageDigest md = DigestUtils.getDigest(digest);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChannelHasher.updateMapped(channel, md);
+        }
+        return md.digest();
+    }
+}
@@ -0,0 +1,100 @@
+package io.muzoo.ssc.bench;
+
+import io.muzoo.ssc.pipeline.CompactPathStore;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The PathFootprint class measures the retained heap of the file registry of a scan over a
+ * synthetic tree, once the way the scan used to keep it (a List of Paths) and once with the
+ * CompactPathStore of directory nodes and interned names.
+ *
+ * The tree has DIRECTORY_FANOUT subdirectories per level, FILES_PER_DIRECTORY files per leaf
+ * directory and names that repeat across directories, like the file names of source trees,
+ * photo folders or backups do. Each mode runs in its own JVM so that the two measurements
+ * cannot disturb each other.
+ *
+ * Example Usage:
+ * java -Xmx4g -cp target/benchmarks.jar io.muzoo.ssc.bench.PathFootprint list 10000000
+ * java -Xmx4g -cp target/benchmarks.jar io.muzoo.ssc.bench.PathFootprint compact 10000000
+ */
+public class PathFootprint {
+    private static final int DIRECTORY_FANOUT = 10;
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final Path ROOT = Paths.get("/data/archive");
+
+    public static void main(String[] args) {
+        if (args.length != 2 || !(args[0].equals("list") || args[0].equals("compact"))) {
+            System.err.println("Usage: PathFootprint <list|compact> <file count>");
+            System.exit(1);
+        }
+        int fileCount = Integer.parseInt(args[1]);
+
+        long before = usedHeap();
+        Object registry = args[0].equals("list") ? registerInList(fileCount) : registerInStore(fileCount);
+        long after = usedHeap();
+
+        System.out.printf("%s: %,d files, %,d bytes retained, %.1f bytes per file%n",
+                args[0], fileCount, after - before, (after - before) / (double) fileCount);
+        System.out.println(registry.hashCode() == 0 ? "" : "done");
+    }
+
+    private static List<Path> registerInList(int fileCount) {
+        List<Path> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            files.add(leafDirectory(i / FILES_PER_DIRECTORY).resolve(fileName(i)));
+        }
+        return files;
+    }
+
+    /**
+     * Registers the same tree as registerInList, adding each directory once before its files,
+     * the way the walk does.
+     */
+    private static CompactPathStore registerInStore(int fileCount) {
+        CompactPathStore store = new CompactPathStore();
+        int root = store.addDirectory(-1, ROOT);
+        int year = -1;
+        int month = -1;
+        int day = -1;
+        for (int i = 0; i < fileCount; i++) {
+            if (i % FILES_PER_DIRECTORY == 0) {
+                int directory = i / FILES_PER_DIRECTORY;
+                Path path = leafDirectory(directory);
+                if (directory % (DIRECTORY_FANOUT * DIRECTORY_FANOUT) == 0) {
+                    year = store.addDirectory(root, path.getParent().getParent());
+                }
+                if (directory % DIRECTORY_FANOUT == 0) {
+                    month = store.addDirectory(year, path.getParent());
+                }
+                day = store.addDirectory(month, path);
+            }
+            store.addFile(day, Paths.get(fileName(i)));
+        }
+        return store;
+    }
+
+    /**
+     * Returns the leaf directory with the given number, three levels below the root.
+     */
+    private static Path leafDirectory(int directory) {
+        return ROOT.resolve("year" + (directory / (DIRECTORY_FANOUT * DIRECTORY_FANOUT)))
+                .resolve("month" + (directory / DIRECTORY_FANOUT % DIRECTORY_FANOUT))
+                .resolve("day" + (directory % DIRECTORY_FANOUT));
+    }
+
+    private static String fileName(int i) {
+        return "IMG_" + (i % FILES_PER_DIRECTORY) + ".jpg";
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
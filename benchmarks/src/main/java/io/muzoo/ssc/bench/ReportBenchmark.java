@@ -0,0 +1,60 @@
+package io.muzoo.ssc.bench;
+
+import io.muzoo.ssc.DuplicateReport;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ReportBenchmark class measures DuplicateReport on a synthetic set of duplicate groups,
+ * both as a summary (counts only) and as a detailed listing of every group.
+ * No files are needed: the report only formats the paths it is given.
+ *
+ * Example Usage:
+ * java -jar target/benchmarks.jar ReportBenchmark -p groupCount=100000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+
+    @Param({"1000", "100000"})
+    public int groupCount;
+
+    @Param({"3"})
+    public int groupSize;
+
+    private DuplicateReport report;
+
+    @Setup(Level.Trial)
+    public void createGroups() {
+        Map<String, List<Path>> duplicates = new LinkedHashMap<>();
+        for (int group = 0; group < groupCount; group++) {
+            List<Path> paths = new ArrayList<>(groupSize);
+            for (int i = 0; i < groupSize; i++) {
+                paths.add(Paths.get("/data/d" + i, "group" + group, "file" + i + ".bin"));
+            }
+            duplicates.put(String.format("%032x", group), paths);
+        }
+        report = new DuplicateReport(duplicates);
+    }
+
+    @Benchmark
+    public String summary() {
+        return report.generateReport(true);
+    }
+
+    @Benchmark
+    public String detailed() {
+        return report.generateReport(false);
+    }
+}
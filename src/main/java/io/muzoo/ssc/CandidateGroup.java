@@ -0,0 +1,31 @@
+package io.muzoo.ssc;
+
+/**
+ * The CandidateGroup class holds files of the same size that no pipeline stage has told
+ * apart yet. Each stage of FileVisitorService consumes candidate groups and splits them
+ * into smaller ones, dropping files that turn out to be unique. Files are referred to by
+ * their index in the file registry of the scan.
+ */
+class CandidateGroup {
+    private final long size;
+    private final int[] fileIds;
+
+    /**
+     * Constructs a CandidateGroup.
+     *
+     * @param size    The size shared by every file of the group, in bytes.
+     * @param fileIds The indices of the files of the group.
+     */
+    CandidateGroup(long size, int[] fileIds) {
+        this.size = size;
+        this.fileIds = fileIds;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    int[] getFileIds() {
+        return fileIds;
+    }
+}
@@ -0,0 +1,196 @@
+package io.muzoo.ssc;
+
+import io.muzoo.ssc.pipeline.CompactPathStore;
+import io.muzoo.ssc.pipeline.ExternalSorter;
+import io.muzoo.ssc.pipeline.GroupingTable;
+import io.muzoo.ssc.reference.ReferenceIndexWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ContentIndex class answers "is this content already stored?" for a scanned tree: it maps
+ * the digest of every file to the files with that content, and keeps the size of every file.
+ * It is built once by `FileVisitorService.indexDirectory` and then only read, so lookups may
+ * run from many threads at once.
+ *
+ * Memory layout:
+ * - files: the CompactPathStore of the walk; a Path is only built for the files a lookup returns.
+ * - sizes: the size of every file, indexed by file id.
+ * - bySize, byDigest: GroupingTables from size and from digest to file ids.
+ * - devices, inodes: the file key of every file, indexed by file id; 0 for a file without one.
+ * - unindexedFiles, unindexedBytes: the files of a unique size left out of the index of a shard.
+ *
+ * Features:
+ * - A lookup by size alone tells whether any stored file could match, without hashing anything.
+ * - A lookup by size and digest only returns files of that size, which guards against a
+ *   collision of the digest with a file of another size.
+ * - `export` writes the index to a reference index file, so later scans can be checked against
+ *   it without rescanning the tree or holding the index in memory. Exported indexes of shards of
+ *   a scan can be merged into its duplicate groups (see IndexMerger), hardlinks included.
+ *
+ * Example Usage:
+ * ContentIndex index = visitor.indexDirectory("/srv/corpus", false);
+ * if (index.hasSize(upload.length) && index.find(upload.length, digest).isEmpty()) {
+ *     store(upload);
+ * }
+ */
+public class ContentIndex {
+    private static final long EXPORT_SORT_BUDGET = 64L << 20;
+
+    private final String algorithm;
+    private final CompactPathStore files;
+    private final long[] sizes;
+    private final GroupingTable bySize;
+    private final GroupingTable byDigest;
+    private final long[] devices;
+    private final long[] inodes;
+    private final long unindexedFiles;
+    private final long unindexedBytes;
+
+    /**
+     * Constructs a ContentIndex.
+     *
+     * @param algorithm The name of the hash of the digests (e.g., "MD5").
+     * @param files     The files of the scan.
+     * @param sizes     The size of every file of the scan, indexed by file id.
+     * @param bySize    The files of the scan grouped by size.
+     * @param byDigest  The hashed files of the scan grouped by digest.
+     * @param devices   The device of every file of the scan, indexed by file id, or 0 if unknown.
+     * @param inodes    The inode of every file of the scan, indexed by file id, or 0 if unknown.
+     * @param unindexedFiles The number of files left out of the index for their unique size.
+     * @param unindexedBytes The total size of the files left out.
+     */
+    ContentIndex(String algorithm, CompactPathStore files, long[] sizes, GroupingTable bySize,
+                 GroupingTable byDigest, long[] devices, long[] inodes, long unindexedFiles, long unindexedBytes) {
+        this.algorithm = algorithm;
+        this.files = files;
+        this.sizes = sizes;
+        this.bySize = bySize;
+        this.byDigest = byDigest;
+        this.devices = devices;
+        this.inodes = inodes;
+        this.unindexedFiles = unindexedFiles;
+        this.unindexedBytes = unindexedBytes;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getDigestLength() {
+        return byDigest.getKeyWidth();
+    }
+
+    public int getFileCount() {
+        return files.getFileCount();
+    }
+
+    /**
+     * Returns the number of files that have a digest in the index; files that could not be
+     * read during the scan have none.
+     *
+     * @return The number of hashed files.
+     */
+    public int getHashedFileCount() {
+        return byDigest.getEntryCount();
+    }
+
+    public int getDistinctContentCount() {
+        return byDigest.getGroupCount();
+    }
+
+    /**
+     * Tells whether any stored file has the given size.
+     *
+     * @param size The size in bytes.
+     * @return `true` if at least one file of the scan has that size.
+     */
+    public boolean hasSize(long size) {
+        return bySize.find(size).length > 0;
+    }
+
+    /**
+     * Returns the stored files with the given digest.
+     *
+     * @param digest The digest to look up.
+     * @return The paths of the files with that digest, or an empty list if there are none or the
+     *         digest does not have the length of the digests of the index.
+     */
+    public List<Path> find(byte[] digest) {
+        if (digest.length != byDigest.getKeyWidth()) {
+            return List.of();
+        }
+        return toPaths(byDigest.find(digest), -1);
+    }
+
+    /**
+     * Returns the stored files with the given size and digest.
+     *
+     * @param size   The size in bytes.
+     * @param digest The digest to look up.
+     * @return The paths of the files with that size and digest, or an empty list if there are none.
+     */
+    public List<Path> find(long size, byte[] digest) {
+        if (digest.length != byDigest.getKeyWidth() || !hasSize(size)) {
+            return List.of();
+        }
+        return toPaths(byDigest.find(digest), size);
+    }
+
+    /**
+     * Writes the size, digest, file key and path of every hashed file to a reference index file,
+     * sorted by size and digest with an ExternalSorter that spills next to the target if needed.
+     * Every path of a hardlinked file is written with the same file key, so that merged indexes
+     * report hardlinks as hardlink groups, not as duplicates. Files left out of the index are
+     * only counted in the header, so that a merge still counts every file of the scan.
+     *
+     * @param target The reference index file to write; replaced if it exists.
+     * @return The number of entries written.
+     * @throws IOException If an I/O error occurs while sorting or writing.
+     */
+    public long export(Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        try (ExternalSorter sorter = new ExternalSorter(getDigestLength(), EXPORT_SORT_BUDGET, directory);
+             ReferenceIndexWriter writer = new ReferenceIndexWriter(target, algorithm, getDigestLength())) {
+            try {
+                byDigest.forEachGroup((digest, fileIds) -> {
+                    for (int fileId : fileIds) {
+                        try {
+                            sorter.add(sizes[fileId], digest, fileId);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            try (ExternalSorter.Cursor cursor = sorter.sorted()) {
+                while (cursor.next()) {
+                    int fileId = cursor.getFileId();
+                    writer.add(cursor.getSize(), cursor.getDigest(), devices[fileId], inodes[fileId], files.getFile(fileId));
+                }
+            }
+            writer.setUnindexed(unindexedFiles, unindexedBytes);
+            writer.finish();
+            return writer.getEntryCount();
+        }
+    }
+
+    /**
+     * Builds the paths of the given files, keeping only those of the given size unless it is negative.
+     */
+    private List<Path> toPaths(int[] fileIds, long size) {
+        List<Path> paths = new ArrayList<>(fileIds.length);
+        for (int fileId : fileIds) {
+            if (size < 0 || sizes[fileId] == size) {
+                paths.add(files.getFile(fileId));
+            }
+        }
+        return paths;
+    }
+}
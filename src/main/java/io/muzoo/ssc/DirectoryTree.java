@@ -0,0 +1,231 @@
+package io.muzoo.ssc;
+
+import io.muzoo.ssc.pipeline.CompactPathStore;
+import io.muzoo.ssc.pipeline.GroupingTable;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The DirectoryTree class finds directories with identical content in the directory structure
+ * recorded by the walk of FileVisitorService, once the duplicate files are known. Every
+ * directory gets a Merkle digest computed bottom-up from the sorted names of its children and
+ * their content: a file contributes the duplicate group it belongs to, a subdirectory its own
+ * digest. No file is read again.
+ *
+ * A file that belongs to no duplicate group has content found nowhere else in the scan, so a
+ * directory holding it (directly or below) cannot have a duplicate and gets no digest at all.
+ *
+ * Responsibilities:
+ * - Read directories with their parent and files with their directory from the CompactPathStore of the walk.
+ * - Compute the Merkle digests bottom-up and group directories by digest.
+ * - Keep only the highest duplicated directories, so a duplicated tree is reported once.
+ *
+ * Features:
+ * - Directories without any file below them are never reported.
+ * - The store assigns directory ids in pre-order, so a parent always has a smaller id than its
+ *   children and visiting the ids backwards visits every child before its parent.
+ *
+ * Example Usage:
+ * DirectoryTree tree = new DirectoryTree(paths);
+ * List<FolderGroup> folders = tree.findDuplicateFolders(groupOfFile, sizeOfGroup);
+ */
+class DirectoryTree {
+    private static final byte FILE_ENTRY = 'F';
+    private static final byte DIRECTORY_ENTRY = 'D';
+
+    private final CompactPathStore paths;
+
+    private int[] coveringDirectory;
+    private int[] reportedGroup;
+    private List<FolderGroup> reportedGroups;
+
+    /**
+     * Constructs a DirectoryTree over the directories and files registered by a walk.
+     *
+     * @param paths The directories and files of the walk.
+     */
+    DirectoryTree(CompactPathStore paths) {
+        this.paths = paths;
+    }
+
+    /**
+     * Computes the Merkle digest of every directory and returns the highest groups of identical
+     * directories: a group is left out when the parents of all its directories are duplicated as well,
+     * since the group of the parents already covers it.
+     *
+     * @param groupOfFile For each file id, the index of its duplicate group, or -1 if it has none.
+     * @param fileSize    For each file id with a duplicate group, the size of the file.
+     * @return The highest groups of identical directories, in walk order.
+     */
+    List<FolderGroup> findDuplicateFolders(int[] groupOfFile, IntToLongFunction fileSize) {
+        int dirCount = paths.getDirectoryCount();
+        int[][] childDirs = bucket(paths::getParent, dirCount, dirCount);
+        int[][] childFiles = bucket(paths::getFileDirectory, paths.getFileCount(), dirCount);
+
+        byte[][] digests = new byte[dirCount][];
+        long[] sizes = new long[dirCount];
+        boolean[] hasFiles = new boolean[dirCount];
+        MessageDigest md = DigestUtils.getSha256Digest();
+
+        for (int dir = dirCount - 1; dir >= 0; dir--) {
+            digests[dir] = merkleDigest(childDirs[dir], childFiles[dir], groupOfFile, digests, md);
+            if (digests[dir] == null) {
+                continue;
+            }
+            hasFiles[dir] = childFiles[dir].length > 0;
+            sizes[dir] = 0;
+            for (int file : childFiles[dir]) {
+                sizes[dir] += fileSize.applyAsLong(file);
+            }
+            for (int child : childDirs[dir]) {
+                sizes[dir] += sizes[child];
+                hasFiles[dir] |= hasFiles[child];
+            }
+        }
+
+        GroupingTable byDigest = new GroupingTable(md.getDigestLength(), dirCount);
+        for (int dir = 0; dir < dirCount; dir++) {
+            if (digests[dir] != null && hasFiles[dir]) {
+                byDigest.add(digests[dir], dir);
+            }
+        }
+
+        boolean[] duplicated = new boolean[dirCount];
+        List<FolderGroup> groups = new ArrayList<>();
+        byDigest.forEachGroup((digest, dirIds) -> {
+            if (dirIds.length > 1) {
+                groups.add(new FolderGroup(sizes[dirIds[0]], digest, dirIds));
+                for (int dir : dirIds) {
+                    duplicated[dir] = true;
+                }
+            }
+        });
+
+        groups.removeIf(group -> Arrays.stream(group.getDirIds())
+                .allMatch(dir -> paths.getParent(dir) >= 0 && duplicated[paths.getParent(dir)]));
+
+        reportedGroups = groups;
+        reportedGroup = new int[dirCount];
+        Arrays.fill(reportedGroup, -1);
+        for (int g = 0; g < groups.size(); g++) {
+            for (int dir : groups.get(g).getDirIds()) {
+                reportedGroup[dir] = g;
+            }
+        }
+        coveringDirectory = new int[dirCount];
+        for (int dir = 0; dir < dirCount; dir++) {
+            int parent = paths.getParent(dir);
+            int above = parent >= 0 ? coveringDirectory[parent] : -1;
+            coveringDirectory[dir] = reportedGroup[dir] >= 0 ? dir : above;
+        }
+        return groups;
+    }
+
+    /**
+     * Tells whether a group of duplicate files is fully explained by a reported folder group,
+     * once `findDuplicateFolders` has run: each file lies below a different directory of the same
+     * folder group, and every directory of that group holds one of the files. For each file the
+     * nearest reported directory above it is the one that counts.
+     *
+     * @param fileIds The ids of the files of the group.
+     * @return `true` if listing the file group would only repeat the folder group.
+     */
+    boolean isImpliedByFolders(int[] fileIds) {
+        if (coveringDirectory == null) {
+            return false;
+        }
+        int group = -1;
+        int[] tops = new int[fileIds.length];
+        for (int i = 0; i < fileIds.length; i++) {
+            int dir = paths.getFileDirectory(fileIds[i]);
+            tops[i] = dir >= 0 ? coveringDirectory[dir] : -1;
+            if (tops[i] < 0 || (group >= 0 && reportedGroup[tops[i]] != group)) {
+                return false;
+            }
+            group = reportedGroup[tops[i]];
+        }
+        return Arrays.stream(tops).distinct().count() == fileIds.length
+                && reportedGroups.get(group).getDirIds().length == fileIds.length;
+    }
+
+    /**
+     * Computes the digest of a directory from its children sorted by name, or returns `null`
+     * if any child is unique.
+     */
+    private byte[] merkleDigest(int[] dirs, int[] files, int[] groupOfFile, byte[][] digests, MessageDigest md) {
+        List<Entry> entries = new ArrayList<>(dirs.length + files.length);
+        for (int file : files) {
+            if (groupOfFile[file] < 0) {
+                return null;
+            }
+            byte[] token = ByteBuffer.allocate(Integer.BYTES).putInt(groupOfFile[file]).array();
+            entries.add(new Entry(paths.getFileName(file), FILE_ENTRY, token));
+        }
+        for (int child : dirs) {
+            if (digests[child] == null) {
+                return null;
+            }
+            entries.add(new Entry(paths.getDirectoryName(child), DIRECTORY_ENTRY, digests[child]));
+        }
+        entries.sort(Comparator.comparing(entry -> entry.name));
+
+        md.reset();
+        for (Entry entry : entries) {
+            md.update(entry.name.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(entry.kind);
+            md.update(entry.content);
+        }
+        return md.digest();
+    }
+
+    /**
+     * Groups ids by their owner, e.g. files by directory: returns for each owner the ids it owns,
+     * in ascending order. Ids without owner (-1) are left out.
+     */
+    private static int[][] bucket(IntUnaryOperator ownerOf, int count, int ownerCount) {
+        int[] owner = new int[count];
+        int[] sizes = new int[ownerCount];
+        for (int id = 0; id < count; id++) {
+            owner[id] = ownerOf.applyAsInt(id);
+            if (owner[id] >= 0) {
+                sizes[owner[id]]++;
+            }
+        }
+        int[][] buckets = new int[ownerCount][];
+        for (int o = 0; o < ownerCount; o++) {
+            buckets[o] = new int[sizes[o]];
+            sizes[o] = 0;
+        }
+        for (int id = 0; id < count; id++) {
+            if (owner[id] >= 0) {
+                buckets[owner[id]][sizes[owner[id]]++] = id;
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * A child of a directory as it enters the Merkle digest: its name, its kind and its content.
+     */
+    private static final class Entry {
+        private final String name;
+        private final byte kind;
+        private final byte[] content;
+
+        private Entry(String name, byte kind, byte[] content) {
+            this.name = name;
+            this.kind = kind;
+            this.content = content;
+        }
+    }
+}
@@ -2,55 +2,87 @@ package io.muzoo.ssc;
 
 import io.muzoo.ssc.algos.AlgoFactory;
 import io.muzoo.ssc.algos.Algorithms;
+import io.muzoo.ssc.algos.DetectionAlgorithm;
+import io.muzoo.ssc.algos.MessageDigestAlgo;
+import io.muzoo.ssc.daemon.LookupServer;
+import io.muzoo.ssc.pipeline.WalkFilter;
+import io.muzoo.ssc.pipeline.WorkerPool;
+import io.muzoo.ssc.reference.IndexMerger;
+import io.muzoo.ssc.report.GroupType;
+import io.muzoo.ssc.stats.FileStatistics;
+import io.muzoo.ssc.watch.DirectoryWatcher;
+import io.muzoo.ssc.watch.DuplicateIndex;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Consumer;
 
 /**
- * The DuplicateFinder class is responsible for orchestrating the process of finding duplicate files
- * in a specified directory. It uses a specified hashing algorithm to identify duplicates and provides
- * options for counting and printing duplicate files.
+ * The DuplicateFinder class is the entry point for embedding the duplicate finder in another
+ * program. It finds the duplicate files (and, if requested, folders) in a directory with the
+ * chosen hashing algorithm and returns them as a ScanResult, or hands each group over as soon
+ * as it is final while the scan goes on. It prints nothing; the command line in `Main` is a
+ * client of this class like any other.
  *
  * Responsibilities:
  * - Validate the folder path and ensure it exists.
  * - Create and use a hashing algorithm through the AlgoFactory.
- * - Traverse the directory to calculate file statistics and detect duplicates.
- * - Provide runtime performance statistics, including elapsed time.
+ * - Run the scan through the `FileVisitorService` and measure how long it takes.
+ * - Deliver the groups in report order: collected, to a listener, or to a Flow.Subscriber.
+ * - Keep the duplicates up to date as files change, in watch mode.
+ * - Index the folder by content and serve lookups against it, in daemon mode.
+ * - Export the content of the folder to a reference index file, which later scans with the
+ *   reference option are checked against.
+ * - Merge the indexes exported by the shards of a scan into its duplicate groups.
  *
  * Features:
  * - Supports multiple hashing algorithms (e.g., SHA-256, MD5, and byte-by-byte comparison).
- * - Allows configurable options to count and print duplicate files.
- * - Uses the `FileVisitorService` class for directory traversal and file processing.
+ * - Listeners and subscribers apply backpressure: the scan waits for a slow consumer instead
+ *   of buffering groups without bound.
+ * - Every scan is independent, so one DuplicateFinder can scan its folder several times.
  *
  * Example Usage:
- * DuplicateFinder finder = new DuplicateFinder(
- *     "/path/to/folder",
- *     "sha256",
- *     true,
- *     true
- * );
- * finder.findDuplicates();
+ * DuplicateFinder finder = new DuplicateFinder("/path/to/folder", "sha256", new ScanOptions().setThreads(8));
+ * ScanResult result = finder.scan();                       // collect every group
+ * finder.scan(group -> queue.put(group));                  // act on groups while the scan goes on
+ * finder.scan(subscriber);                                 // publish to a Flow.Subscriber
+ * ContentIndex index = finder.index();                     // look up content in-process
+ * finder.exportIndex(Paths.get("archive.sscref"));         // build a reference index
+ * ScanResult merged = DuplicateFinder.merge(partialIndexes); // combine the shards of a scan
  */
 public class DuplicateFinder {
     private final String folderPath;
-    private final Algorithms hashAlgo;
-    private final boolean countDuplicates;
-    private final boolean printDuplicates;
+    private final DetectionAlgorithm hashAlgo;
+    private final ScanOptions scanOptions;
 
     /**
-     * Constructs a DuplicateFinder with the specified parameters.
+     * Constructs a DuplicateFinder with the default scan options.
      *
-     * @param folderPath      The path to the folder where duplicate detection should be performed.
-     * @param algorithm       The name of the hashing algorithm to use (e.g., "sha256", "md5", "bbb").
-     * @param countDuplicates A flag indicating whether to count the total number of duplicates.
-     * @param printDuplicates A flag indicating whether to print the paths of duplicate files.
-     * @throws IllegalArgumentException If the folder path is null, empty, or does not exist.
+     * @param folderPath The path to the folder where duplicate detection should be performed.
+     * @param algorithm  The name of the hashing algorithm to use (e.g., "sha256", "md5", "bbb").
+     * @throws IllegalArgumentException If the folder path is null, empty, or does not exist,
+     *                                  or the algorithm is not supported.
      */
-    public DuplicateFinder(String folderPath,
-                           String algorithm,
-                           boolean countDuplicates,
-                           boolean printDuplicates) {
+    public DuplicateFinder(String folderPath, String algorithm) {
+        this(folderPath, algorithm, new ScanOptions());
+    }
+
+    /**
+     * Constructs a DuplicateFinder with the specified scan options.
+     *
+     * @param folderPath  The path to the folder where duplicate detection should be performed.
+     * @param algorithm   The name of the hashing algorithm to use (e.g., "sha256", "md5", "bbb").
+     * @param scanOptions The tuning options of the scan (e.g., the partial-content sample size).
+     * @throws IllegalArgumentException If the folder path is null, empty, or does not exist,
+     *                                  or the algorithm is not supported.
+     */
+    public DuplicateFinder(String folderPath, String algorithm, ScanOptions scanOptions) {
         if (folderPath == null || folderPath.isEmpty()) {
             throw new IllegalArgumentException("Folder path cannot be null or empty.");
         }
@@ -60,43 +92,209 @@ public class DuplicateFinder {
         }
 
         this.folderPath = folderPath;
-        this.hashAlgo = AlgoFactory.createAlgo(algorithm);
-        this.countDuplicates = countDuplicates;
-        this.printDuplicates = printDuplicates;
+        this.hashAlgo = AlgoFactory.createAlgo(algorithm, scanOptions);
+        this.scanOptions = scanOptions;
+    }
+
+    public ScanOptions getScanOptions() {
+        return scanOptions;
     }
 
     /**
-     * Initiates the process of finding duplicate files in the specified folder.
+     * Scans the folder once and returns every group found. The watch option is ignored.
      *
-     * Steps:
-     * - Validates the folder path and hashing algorithm.
-     * - Uses the FileVisitorService to traverse the directory and detect duplicates.
-     * - Prints file statistics (e.g., total files, folders, size) and runtime performance.
+     * @return The result of the scan, listing every group.
+     * @throws IOException If an I/O error occurs during directory traversal or file processing.
+     */
+    public ScanResult scan() throws IOException {
+        return scan(null, true);
+    }
+
+    /**
+     * Scans the folder once and hands every group to the listener as soon as it is final,
+     * in report order. The groups are not kept, so the result only counts them.
+     *
+     * @param listener The listener receiving the groups on the calling thread.
+     * @return The result of the scan, without its groups.
+     * @throws IOException If an I/O error occurs during the scan, or the listener fails.
+     */
+    public ScanResult scan(DuplicateGroupListener listener) throws IOException {
+        return scan(listener, false);
+    }
+
+    /**
+     * Scans the folder once and publishes every group to the subscriber as soon as it is final,
+     * in report order. Groups are delivered through a SubmissionPublisher on the common pool;
+     * once the subscriber has a full buffer of groups it has not requested, the scan waits for it.
+     * The subscriber is completed when the scan ends, or receives the error that ended it.
+     * Cancelling the subscription drops the remaining groups but does not stop the scan.
      *
+     * @param subscriber The subscriber receiving the groups.
+     * @return The result of the scan, without its groups.
      * @throws IOException If an I/O error occurs during directory traversal or file processing.
      */
-    public void findDuplicates() throws IOException {
-        try {
-            System.out.println("Starting duplicate file search...");
-            long startTime = System.currentTimeMillis();
-
-            FileVisitorService visitor = new FileVisitorService(hashAlgo);
-            visitor.visitDirectory(folderPath);
-
-            if (visitor.getStatistics() != null) {
-                System.out.println(visitor.getStatistics().getFormattedStatistics());
-            } else {
-                System.out.println("No statistics available. Directory may be empty or inaccessible.");
+    public ScanResult scan(Flow.Subscriber<? super DuplicateGroup> subscriber) throws IOException {
+        try (SubmissionPublisher<DuplicateGroup> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(subscriber);
+            try {
+                return scan(publisher::submit, false);
+            } catch (IOException | RuntimeException e) {
+                publisher.closeExceptionally(e);
+                throw e;
             }
+        }
+    }
 
-            long endTime = System.currentTimeMillis();
-            long elapsedTime = endTime - startTime;
-            System.out.printf("Duplicate search completed in %d minutes, %d seconds, %d milliseconds.%n",
-                    elapsedTime / 60000, (elapsedTime / 1000) % 60, elapsedTime % 1000);
+    private ScanResult scan(DuplicateGroupListener listener, boolean keepGroups) throws IOException {
+        GroupCounter counter = new GroupCounter(listener, keepGroups);
+        long startTime = System.currentTimeMillis();
+        try (FileVisitorService visitor = new FileVisitorService(hashAlgo, scanOptions)) {
+            visitor.visitDirectory(folderPath, counter);
+            return new ScanResult(visitor.getStatistics(), counter.groups, counter.groupCounts, counter.memberCounts,
+                    System.currentTimeMillis() - startTime);
+        }
+    }
 
-        } catch (IOException e) {
-            System.err.println("Error while finding duplicates: " + e.getMessage());
-            throw e;
+    /**
+     * Scans the folder once and indexes every file by its full digest, so that content can be
+     * looked up against the folder afterwards. Needs a hashing algorithm, not "bbb".
+     *
+     * @return The index of the content of the folder.
+     * @throws IOException If an I/O error occurs during directory traversal or file processing.
+     * @throws IllegalStateException If the algorithm does not hash each file, or a memory budget is set.
+     */
+    public ContentIndex index() throws IOException {
+        try (FileVisitorService visitor = new FileVisitorService(hashAlgo, scanOptions)) {
+            return visitor.indexDirectory(folderPath, false);
+        }
+    }
+
+    /**
+     * Indexes the folder and starts serving lookups against the index over HTTP, on the loopback
+     * interface at the daemon port of the scan options, with one serving thread per scan thread.
+     * The server keeps the index in memory and runs until it is closed.
+     *
+     * @return The started server.
+     * @throws IOException If an I/O error occurs during the scan, or the port cannot be bound.
+     * @throws IllegalStateException If the algorithm does not hash each file, or a memory budget is set.
+     */
+    public LookupServer serve() throws IOException {
+        ContentIndex index = index();
+        LookupServer server = new LookupServer(index, (MessageDigestAlgo) hashAlgo, scanOptions.getDaemonPort(),
+                scanOptions.getThreads());
+        server.start();
+        return server;
+    }
+
+    /**
+     * Indexes the folder and writes the size, digest and path of every file to a reference index
+     * file, sorted so that it can be searched in place. A scan whose options name that file as
+     * their reference index then reports the files it already holds. The index of a shard of the
+     * file sizes is only merged with the other shards, so it leaves out, unread, the files of a
+     * size no other path has.
+     *
+     * @param target The reference index file to write; replaced if it exists.
+     * @return The number of files written.
+     * @throws IOException If an I/O error occurs during the scan or while writing the index.
+     * @throws IllegalStateException If the algorithm does not hash each file, or a memory budget is set.
+     */
+    public long exportIndex(Path target) throws IOException {
+        try (FileVisitorService visitor = new FileVisitorService(hashAlgo, scanOptions)) {
+            return visitor.indexDirectory(folderPath, scanOptions.getShardCount() > 1).export(target);
+        }
+    }
+
+    /**
+     * Merges the indexes exported by the shards of a scan, each a subset of the roots or a shard
+     * of the file sizes, into the duplicate groups of the whole scan. No file is read: the groups
+     * are found from the sizes and digests of the indexes alone.
+     *
+     * @param partialIndexes The reference index files exported by the shards, built with one algorithm.
+     * @return The result of the merge, listing every group.
+     * @throws IOException If an index cannot be read.
+     * @throws IllegalArgumentException If no index is given, or the indexes were built with different algorithms.
+     */
+    public static ScanResult merge(List<Path> partialIndexes) throws IOException {
+        return merge(partialIndexes, null, true);
+    }
+
+    /**
+     * Merges the indexes exported by the shards of a scan like `merge(List)`, handing every group
+     * to the listener as soon as it is found. The groups are not kept, so the result only counts them.
+     *
+     * @param partialIndexes The reference index files exported by the shards, built with one algorithm.
+     * @param listener       The listener receiving the groups on the calling thread.
+     * @return The result of the merge, without its groups.
+     * @throws IOException If an index cannot be read, or the listener fails.
+     * @throws IllegalArgumentException If no index is given, or the indexes were built with different algorithms.
+     */
+    public static ScanResult merge(List<Path> partialIndexes, DuplicateGroupListener listener) throws IOException {
+        return merge(partialIndexes, listener, false);
+    }
+
+    private static ScanResult merge(List<Path> partialIndexes, DuplicateGroupListener listener, boolean keepGroups)
+            throws IOException {
+        GroupCounter counter = new GroupCounter(listener, keepGroups);
+        FileStatistics statistics = new FileStatistics();
+        long startTime = System.currentTimeMillis();
+        try (IndexMerger merger = IndexMerger.open(partialIndexes)) {
+            merger.merge(statistics, counter);
+        }
+        return new ScanResult(statistics, counter.groups, counter.groupCounts, counter.memberCounts,
+                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Scans the folder once and then keeps watching it, handing the index of the current
+     * duplicates to the listener after the initial scan and after every batch of changes.
+     * Only files whose size or modification time changed are hashed again. Runs until the
+     * calling thread is interrupted.
+     *
+     * @param listener Receives the index of the current duplicates.
+     * @throws IOException If an I/O error occurs while registering or scanning the folder.
+     * @throws IllegalStateException If the algorithm does not hash each file.
+     */
+    public void watch(Consumer<DuplicateIndex> listener) throws IOException {
+        Path root = Paths.get(folderPath);
+        WalkFilter filter = scanOptions.createWalkFilter(root);
+        if (!(hashAlgo instanceof Algorithms)) {
+            throw new IllegalStateException("Watch mode needs an algorithm that hashes each file, not "
+                    + hashAlgo.getName());
+        }
+        DuplicateIndex index = new DuplicateIndex((Algorithms) hashAlgo,
+                new WorkerPool(scanOptions.getThreads(), scanOptions.isVirtualThreads()), filter);
+
+        try (DirectoryWatcher watcher = new DirectoryWatcher(root, index, scanOptions.getWatchDebounce(),
+                filter::acceptsDirectory)) {
+            watcher.run(listener);
+        }
+    }
+
+    /**
+     * Counts the groups of a scan per type, keeps them if asked to and passes them on.
+     */
+    private static final class GroupCounter implements DuplicateGroupListener {
+        private final DuplicateGroupListener next;
+        private final List<DuplicateGroup> groups = new ArrayList<>();
+        private final boolean keepGroups;
+        private final long[] groupCounts = new long[GroupType.values().length];
+        private final long[] memberCounts = new long[GroupType.values().length];
+
+        private GroupCounter(DuplicateGroupListener next, boolean keepGroups) {
+            this.next = next;
+            this.keepGroups = keepGroups;
+        }
+
+        @Override
+        public void onGroup(DuplicateGroup group) throws IOException {
+            groupCounts[group.getType().ordinal()]++;
+            memberCounts[group.getType().ordinal()] += group.getPaths().size();
+            if (keepGroups) {
+                groups.add(group);
+            }
+            if (next != null) {
+                next.onGroup(group);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,81 @@
+package io.muzoo.ssc;
+
+import io.muzoo.ssc.report.GroupType;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The DuplicateGroup class is a single group of a duplicate scan as handed to the callers of
+ * the library: identical files, identical folders, hardlinks to one physical file or a file
+ * already in a reference index, with the key and paths a report would show for it.
+ *
+ * Features:
+ * - Immutable; the list of paths cannot be modified.
+ * - Holds at least two members; the first one is the one a report lists first.
+ *
+ * Example Usage:
+ * finder.scan(group -> {
+ *     if (group.getType() == GroupType.FILE) {
+ *         System.out.println(group.getPaths() + " waste " + group.getReclaimableSize() + " bytes");
+ *     }
+ * });
+ */
+public final class DuplicateGroup {
+    private final GroupType type;
+    private final String key;
+    private final long size;
+    private final List<Path> paths;
+
+    /**
+     * Constructs a DuplicateGroup.
+     *
+     * @param type  The type of the group.
+     * @param key   The key of the group (e.g., the hexadecimal digest of its files).
+     * @param size  The size of each member in bytes; for a folder group, the combined size of the
+     *              files below each folder.
+     * @param paths The paths of the members of the group.
+     */
+    public DuplicateGroup(GroupType type, String key, long size, List<Path> paths) {
+        this.type = type;
+        this.key = key;
+        this.size = size;
+        this.paths = Collections.unmodifiableList(paths);
+    }
+
+    public GroupType getType() {
+        return type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public List<Path> getPaths() {
+        return paths;
+    }
+
+    /**
+     * Returns the storage freed by keeping a single member of the group. Hardlinks share
+     * their storage, so a hardlink group frees nothing; a reference group frees its first
+     * member, the file of the scanned tree.
+     *
+     * @return The reclaimable size in bytes.
+     */
+    public long getReclaimableSize() {
+        if (type == GroupType.HARDLINK) {
+            return 0;
+        }
+        return type == GroupType.REFERENCE ? size : (paths.size() - 1) * size;
+    }
+
+    @Override
+    public String toString() {
+        return type.getTitle() + " " + key + " (size: " + paths.size() + "): " + paths;
+    }
+}
@@ -0,0 +1,24 @@
+package io.muzoo.ssc;
+
+import java.io.IOException;
+
+/**
+ * The DuplicateGroupListener interface receives the groups of a duplicate scan one at a time,
+ * as soon as each of them is final, while the scan goes on.
+ *
+ * The listener is called on the thread running the scan, and the scan waits until it returns;
+ * a slow listener therefore slows the scan down instead of letting groups pile up in memory.
+ *
+ * Example Usage:
+ * ScanResult result = finder.scan(group -> ingestService.deduplicate(group.getPaths()));
+ */
+@FunctionalInterface
+public interface DuplicateGroupListener {
+    /**
+     * Receives a single group of the scan.
+     *
+     * @param group The group; it holds at least two members.
+     * @throws IOException If the group cannot be handled; the scan stops with this exception.
+     */
+    void onGroup(DuplicateGroup group) throws IOException;
+}
@@ -1,7 +1,13 @@
 package io.muzoo.ssc;
 
+import io.muzoo.ssc.report.ReportFormat;
+import io.muzoo.ssc.report.ReportWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.file.Path;
-import java.text.DecimalFormat;
 import java.util.List;
 import java.util.Map;
 
@@ -19,16 +25,20 @@ import java.util.Map;
  * Features:
  * - Formats numbers with thousands separators for better readability.
  * - Allows generating reports in summary mode (only counts) or detailed mode.
- * - Efficiently processes duplicates using streams and functional programming.
+ * - Streams the report to a Writer in text, NDJSON, CSV or JSON through a ReportWriter.
+ * - Counts groups and files in a single pass over the duplicates.
  *
  * Example Usage:
  * DuplicateReport report = new DuplicateReport(duplicatesMap);
  * System.out.println(report.generateReport(false)); // Detailed report
  * System.out.println(report.generateReport(true));  // Summary-only report
+ * report.writeReport(new OutputStreamWriter(System.out), ReportFormat.NDJSON, false);
  */
 
 public class DuplicateReport {
     private final Map<String, List<Path>> duplicates;
+    private final long duplicateGroupCount;
+    private final long totalDuplicateFiles;
 
     /**
      * Constructs a DuplicateReport instance with a map of duplicates.
@@ -38,6 +48,17 @@ public class DuplicateReport {
      */
     public DuplicateReport(Map<String, List<Path>> duplicates) {
         this.duplicates = duplicates;
+
+        long groups = 0;
+        long files = 0;
+        for (List<Path> paths : duplicates.values()) {
+            if (paths.size() > 1) {
+                groups++;
+                files += paths.size();
+            }
+        }
+        this.duplicateGroupCount = groups;
+        this.totalDuplicateFiles = files;
     }
 
     /**
@@ -49,63 +70,50 @@ public class DuplicateReport {
      * @return A string containing the formatted report.
      */
     public String generateReport(boolean countOnly) {
-        StringBuilder report = new StringBuilder();
-        DecimalFormat df = new DecimalFormat("#,###");
-
-        long duplicateGroups = getDuplicateGroupCount();
-        long totalDuplicateFiles = getTotalDuplicateFiles();
-
-        report.append("\nDuplicate Statistics:\n")
-                .append(" - Total Duplicate Groups: ").append(df.format(duplicateGroups)).append("\n")
-                .append(" - Total Duplicate Files: ").append(df.format(totalDuplicateFiles)).append("\n");
-
-        if (!countOnly) {
-            report.append("\nDuplicate File Groups:\n");
-            appendDetailedDuplicateInfo(report);
+        StringWriter report = new StringWriter();
+        try {
+            writeReport(report, ReportFormat.TEXT, countOnly);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
         return report.toString();
     }
 
     /**
-     * Appends detailed information about each duplicate file group to the report.
-     * Each group of duplicate files is identified by its hash, and all file paths in
-     * the group are listed.
+     * Writes the report to the specified writer, group by group, without building it in memory.
+     * The writer is flushed but not closed.
      *
-     * @param report A StringBuilder object to which the detailed information will be appended.
+     * @param out       The writer receiving the report.
+     * @param format    The format of the report.
+     * @param countOnly If `true`, only the totals are written.
+     * @throws IOException If an I/O error occurs while writing.
      */
-    private void appendDetailedDuplicateInfo(StringBuilder report) {
-        duplicates.forEach((hash, paths) -> {
-            if (paths.size() > 1) {
-                report.append("================================================================\n")
-                        .append("Duplicate group (size: ").append(paths.size()).append("):\n");
-                paths.forEach(path -> report.append(" - ").append(path).append("\n"));
-            }
-        });
+    public void writeReport(Writer out, ReportFormat format, boolean countOnly) throws IOException {
+        ReportWriter writer = ReportWriter.create(format, out, countOnly);
+        for (Map.Entry<String, List<Path>> group : duplicates.entrySet()) {
+            writer.writeGroup(group.getKey(), -1, group.getValue());
+        }
+        writer.finish();
     }
 
     /**
-     * Calculates the total number of duplicate groups.
+     * Returns the total number of duplicate groups.
      * A duplicate group is defined as a set of files that share the same hash
      * and have a size greater than 1.
      *
      * @return The total number of duplicate groups.
      */
     public long getDuplicateGroupCount() {
-        return duplicates.values().stream()
-                .filter(paths -> paths.size() > 1)
-                .count();
+        return duplicateGroupCount;
     }
 
     /**
-     * Calculates the total number of duplicate files across all groups.
+     * Returns the total number of duplicate files across all groups.
      * Only files in groups with more than one file are counted.
      *
      * @return The total number of duplicate files.
      */
     public long getTotalDuplicateFiles() {
-        return duplicates.values().stream()
-                .filter(paths -> paths.size() > 1)
-                .mapToLong(List::size)
-                .sum();
+        return totalDuplicateFiles;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package io.muzoo.ssc;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * The FileGroup class is a final group of files with identical content found by
+ * FileVisitorService. It keeps the binary digest of its files and refers to them by their
+ * index in the file registry; the hexadecimal key and the paths are only produced when a
+ * report asks for them.
+ */
+class FileGroup {
+    private final long size;
+    private final byte[] digest;
+    private final int variant;
+    private final int[] fileIds;
+
+    /**
+     * Constructs a FileGroup.
+     *
+     * @param size    The size of each file of the group, in bytes.
+     * @param digest  The digest shared by the files, or `null` if the group was found by byte comparison.
+     * @param variant Distinguishes groups that share a digest (hash collisions split by `--confirm`)
+     *                or a size (classes found by byte comparison); 0 otherwise.
+     * @param fileIds The indices of the files of the group.
+     */
+    FileGroup(long size, byte[] digest, int variant, int[] fileIds) {
+        this.size = size;
+        this.digest = digest;
+        this.variant = variant;
+        this.fileIds = fileIds;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    byte[] getDigest() {
+        return digest;
+    }
+
+    int[] getFileIds() {
+        return fileIds;
+    }
+
+    /**
+     * Returns the key identifying the group in reports: the hexadecimal digest, suffixed by
+     * the variant when a collision was split, or the size and class index for byte comparison.
+     *
+     * @return The key of the group.
+     */
+    String getKey() {
+        if (digest == null) {
+            return "bbb-" + size + "-" + variant;
+        }
+        String hex = Hex.encodeHexString(digest);
+        return variant == 0 ? hex : hex + "#" + variant;
+    }
+}
@@ -1,13 +1,38 @@
 package io.muzoo.ssc;
 
 import io.muzoo.ssc.algos.Algorithms;
+import io.muzoo.ssc.algos.BBBAlgo;
+import io.muzoo.ssc.algos.ContentComparator;
+import io.muzoo.ssc.algos.DetectionAlgorithm;
+import io.muzoo.ssc.algos.MessageDigestAlgo;
+import io.muzoo.ssc.algos.PartialContentHasher;
+import io.muzoo.ssc.cache.HashCache;
+import io.muzoo.ssc.pipeline.BloomFilter;
+import io.muzoo.ssc.pipeline.CompactPathStore;
+import io.muzoo.ssc.pipeline.FileKeys;
+import io.muzoo.ssc.pipeline.GroupingTable;
+import io.muzoo.ssc.pipeline.ParallelWalker;
+import io.muzoo.ssc.pipeline.WalkFilter;
+import io.muzoo.ssc.pipeline.WorkerPool;
+import io.muzoo.ssc.reference.ReferenceIndex;
+import io.muzoo.ssc.report.GroupType;
+import io.muzoo.ssc.report.ReportWriter;
 import io.muzoo.ssc.stats.FileStatistics;
+import io.muzoo.ssc.stats.StageStatistics;
+import org.apache.commons.codec.binary.Hex;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,36 +40,156 @@ import java.util.Map;
  * The FileVisitorService class traverses a directory structure using the FileVisitor API.
  * It computes file hashes to identify duplicates and collects file and folder statistics.
  *
+ * Duplicate detection runs as a staged pipeline so that as few bytes as possible are read:
+ * - Stage "size": the walk groups files by the size reported in their BasicFileAttributes.
+ *   Files with a unique size cannot have a duplicate and are dropped without being read.
+ * - Stage "partial-hash": same-size files are split by a hash over their first, last and
+ *   optionally middle block, so files that differ early are never read in full.
+ * - Stage "full-hash": only files that survived every earlier stage are hashed in full.
+ * - Stage "confirm": optional (--confirm); files sharing a full hash are compared byte by byte,
+ *   so a collision of a fast non-cryptographic hash can never produce a false duplicate.
+ * - Stage "byte-compare": replaces both hashing stages when the algorithm is a ContentComparator
+ *   (bbb); each size group is compared byte by byte, so results are exact and no hash is computed.
+ *
  * Responsibilities:
  * - Counts the total number of files and folders in the directory.
  * - Calculates the total size of all files.
- * - Computes a hash for each file to detect duplicates.
- * - Stores duplicate file paths in a map for later retrieval.
+ * - Computes a hash for each file that could have a duplicate.
+ * - Stores the groups of duplicate files for later retrieval.
+ *
+ * Hardlinks: the file key (device and inode) of every file whose size collides with another is
+ * read once the size groups are known, and kept in two long arrays indexed by file id. Paths
+ * sharing a file key are links to one physical file, so within each size group only the first of
+ * them is hashed and compared; the others are reported as a hardlink group instead of as duplicates.
+ * Duplicate groups therefore only hold distinct physical files, and the reclaimable size counts
+ * physical storage.
+ * When the walk follows symbolic links, paths sharing a file key and a real path are the same
+ * directory entry reached through links: only one of them is kept, and none is a hardlink.
+ *
+ * Cache: when ScanOptions names a cache file, the full-hash stage reuses the digest of every
+ * file whose size, modification time and file key are unchanged since the previous scan, and
+ * writes the updated cache back at the end of the scan.
+ *
+ * Duplicate folders: when ScanOptions asks for them, the directory tree recorded by the walk is
+ * used once the duplicate files are known: a Merkle digest is computed for every directory from its
+ * children, so whole identical trees are found without reading any file again (see DirectoryTree).
+ * A file group whose files all lie in the directories of a reported folder group is not listed
+ * again in the report.
+ *
+ * Memory-bounded mode: when ScanOptions sets a memory budget, the scan is run by a SpilledScan
+ * instead, which groups files by sorting records on disk, so its memory does not grow with the
+ * number of files. The service then has to be closed to delete the spilled files.
+ *
+ * Reference mode: when ScanOptions names a reference index, the tree is checked against the
+ * index instead of against itself. Files of a size no reference file has are dropped unread;
+ * the others are hashed in full and looked up in the memory-mapped index, and every file found
+ * there is reported as a reference group with its reference copies (see `checkAgainstReference`).
+ *
+ * Memory: every file is registered once and referred to by its int index from then on.
+ * The CompactPathStore keeps it as a directory id and an interned name, so the directory prefix
+ * is shared by all files of a directory and a Path is only built to read or report the file.
+ * Files are grouped in primitive GroupingTables keyed by size or binary digest, so no String,
+ * boxed key or list is created per file; hexadecimal keys are only built for the final
+ * duplicate groups when a report asks for them. Files of a unique size are kept out of the
+ * size table by a Bloom-filter prefilter (see `groupBySize`), so they cost their size only.
+ *
+ * The hashing stages run on a WorkerPool: with more than one thread, files are hashed
+ * concurrently while the groups come out exactly as in a single-threaded run.
+ *
+ * Publishing: a DuplicateGroupListener passed to `visitDirectory` receives every group as soon
+ * as it is final, in the order of `writeDuplicateGroups`. The full-hash and byte-compare stages
+ * run over batches of about PUBLISH_BATCH_FILES files, so the groups of the first batches reach
+ * the listener while later batches are still being read. Folder groups are only known once every
+ * file is, so with duplicate folders, and in memory-bounded mode, groups are published at the end.
  *
  * Dependencies:
  * - Algorithms: Defines the hashing strategy (e.g., bbb, md5, sha256).
- * - FileStatistics: Collects statistics about files and folders.
+ * - WorkerPool: Runs the hashing stages on one or more threads.
+ * - FileStatistics: Collects statistics about files, folders and pipeline stages.
  *
  * Example Usage:
  * FileVisitorService visitor = new FileVisitorService(new BBBAlgo());
  * visitor.visitDirectory("/path/to/folder");
  */
 
-public class FileVisitorService {
-    private final Algorithms hashStrategy;
+public class FileVisitorService implements Closeable {
+    static final String SIZE_STAGE = "size";
+    static final String PARTIAL_HASH_STAGE = "partial-hash";
+    static final String BLOCK_SAMPLE_STAGE = "block-sample";
+    static final String FULL_HASH_STAGE = "full-hash";
+    static final String BYTE_COMPARE_STAGE = "byte-compare";
+    static final String CONFIRM_STAGE = "confirm";
+
+    private static final int PUBLISH_BATCH_FILES = 4096;
+
+    private final DetectionAlgorithm hashStrategy;
+    private final ScanOptions options;
+    private final WorkerPool workerPool;
+    private final ContentComparator confirmer;
     private final FileStatistics statistics;
-    private final Map<String, List<Path>> hashToFileMap;
+    private final CompactPathStore files;
+    private long[] fileDevices = new long[0];
+    private long[] fileInodes = new long[0];
+    private final List<FileGroup> duplicateGroups;
+    private final List<CandidateGroup> hardlinkGroups;
+    private final DirectoryTree directoryTree;
+    private final List<DuplicateGroup> referenceGroups;
+    private List<FolderGroup> duplicateFolders;
+    private SpilledScan spilledScan;
+    private DuplicateGroupListener listener;
+
+    /**
+     * Constructor for FileVisitorService using the default scan options.
+     *
+     * @param hashStrategy The algorithm telling duplicates apart: a hash (e.g., md5, sha256) or byte comparison.
+     */
+    public FileVisitorService(DetectionAlgorithm hashStrategy) {
+        this(hashStrategy, new ScanOptions());
+    }
 
     /**
      * Constructor for FileVisitorService.
-     * Initializes the hashing strategy, statistics tracker, and duplicate file map.
+     * Initializes the hashing strategy, scan options, statistics tracker, and duplicate groups.
      *
-     * @param hashStrategy The hashing algorithm to use for computing file hashes (e.g., md5, sha256).
+     * @param hashStrategy The algorithm telling duplicates apart: a hash (e.g., md5, sha256) or byte comparison.
+     * @param options      The tuning options of the scan (e.g., the partial-content sample size, threads).
+     * @throws IllegalArgumentException If a memory budget is combined with byte comparison, duplicate folders
+     *                                  or block sampling, followed links with duplicate folders, or a
+     *                                  reference index with byte comparison, duplicate folders or a memory budget.
      */
-    public FileVisitorService(Algorithms hashStrategy) {
+    public FileVisitorService(DetectionAlgorithm hashStrategy, ScanOptions options) {
+        if (options.getMemoryBudget() > 0 && !(hashStrategy instanceof Algorithms)) {
+            throw new IllegalArgumentException("The memory-bounded scan needs an algorithm that hashes each file, not "
+                    + hashStrategy.getName());
+        }
+        if (options.getMemoryBudget() > 0 && options.isDuplicateFolders()) {
+            throw new IllegalArgumentException("The memory-bounded scan cannot detect duplicate folders");
+        }
+        if (options.getMemoryBudget() > 0 && options.getSampleBlocks() > 0) {
+            throw new IllegalArgumentException("The memory-bounded scan has no block-sample stage");
+        }
+        if (options.isFollowLinks() && options.isDuplicateFolders()) {
+            throw new IllegalArgumentException("Duplicate folders cannot be detected while following links");
+        }
+        if (options.getReferenceIndex() != null && !(hashStrategy instanceof MessageDigestAlgo)) {
+            throw new IllegalArgumentException("A reference index is searched by digest, which "
+                    + hashStrategy.getName() + " does not compute");
+        }
+        if (options.getReferenceIndex() != null && (options.isDuplicateFolders() || options.getMemoryBudget() > 0)) {
+            throw new IllegalArgumentException("A reference index cannot be combined with duplicate folders "
+                    + "or a memory budget");
+        }
         this.hashStrategy = hashStrategy;
+        this.options = options;
+        this.workerPool = new WorkerPool(options.getThreads(), options.isVirtualThreads());
+        this.confirmer = new BBBAlgo();
         this.statistics = new FileStatistics();
-        this.hashToFileMap = new HashMap<>();
+        this.files = new CompactPathStore();
+        this.duplicateGroups = new ArrayList<>();
+        this.hardlinkGroups = new ArrayList<>();
+        this.referenceGroups = new ArrayList<>();
+        this.directoryTree = options.isDuplicateFolders() ? new DirectoryTree(files) : null;
+        this.duplicateFolders = new ArrayList<>();
     }
 
     /**
@@ -55,38 +200,867 @@ public class FileVisitorService {
      * @throws IOException If an I/O error occurs while accessing files or directories.
      */
     public void visitDirectory(String folderPath) throws IOException {
-        Files.walkFileTree(Paths.get(folderPath), new SimpleFileVisitor<>() {
+        visitDirectory(folderPath, null);
+    }
+
+    /**
+     * Traverses the specified directory like `visitDirectory(String)` and hands every group to the
+     * listener as soon as it is final, in the order in which `writeDuplicateGroups` lists them.
+     *
+     * @param folderPath The path to the directory to traverse.
+     * @param listener   The listener receiving the groups, or `null` to only keep them.
+     * @throws IOException If an I/O error occurs while accessing files or directories, or the listener fails.
+     */
+    public void visitDirectory(String folderPath, DuplicateGroupListener listener) throws IOException {
+        Path root = Paths.get(folderPath);
+        if (options.getMemoryBudget() > 0) {
+            spilledScan = new SpilledScan((Algorithms) hashStrategy, options, workerPool, confirmer, statistics);
+            spilledScan.scan(root);
+            if (listener != null) {
+                forEachDuplicateGroup(listener);
+            }
+            return;
+        }
+        if (options.getReferenceIndex() != null) {
+            this.listener = listener;
+            try {
+                checkAgainstReference(root);
+            } finally {
+                this.listener = null;
+            }
+            return;
+        }
+
+        // File groups are final as soon as a stage finds them, unless folder groups may still replace them.
+        this.listener = directoryTree == null ? listener : null;
+        try {
+            runStages(root);
+        } finally {
+            this.listener = null;
+        }
+
+        if (listener == null) {
+            return;
+        }
+        if (directoryTree == null) {
+            for (CandidateGroup group : hardlinkGroups) {
+                listener.onGroup(toHardlinkGroup(group));
+            }
+        } else {
+            forEachDuplicateGroup(listener);
+        }
+    }
+
+    /**
+     * Runs the stages of the in-memory pipeline over the directory.
+     *
+     * @param root The directory to scan.
+     * @throws IOException If the root cannot be read, or the listener fails.
+     */
+    private void runStages(Path root) throws IOException {
+        GroupingTable sizeTable = groupBySize(walkDirectory(root), options.getPrefilterFalsePositiveRate() > 0);
+        List<CandidateGroup> candidates = eliminateUniqueSizes(sizeTable);
+
+        if (hashStrategy instanceof ContentComparator) {
+            compareCandidates(candidates, (ContentComparator) hashStrategy);
+        } else {
+            HashCache cache = options.getCacheFile() == null ? null : HashCache.load(options.getCacheFile());
+            candidates = splitBySample(candidates);
+            hashCandidates(candidates, cache);
+            if (cache != null) {
+                saveCache(cache, root);
+            }
+        }
+
+        if (directoryTree != null) {
+            findDuplicateFolders();
+        }
+    }
+
+    /**
+     * Checks every file of the directory against the reference index of the ScanOptions. The
+     * index is searched in place, so its entries never reach the heap:
+     * - Stage "size": a file of a size no reference file has cannot be in the reference and is
+     *   dropped unread; sizes are looked up by binary search over the sorted records.
+     * - Stage "full-hash": every other file is hashed in full, or taken from the hash cache, and
+     *   its size and digest are looked up. A file found is kept as a reference group.
+     * Files are hashed in batches of PUBLISH_BATCH_FILES, and the groups of a batch reach the
+     * listener in walk order while the next batch is read.
+     *
+     * @param root The directory to check.
+     * @throws IOException If the root or the index cannot be read, or the listener fails.
+     * @throws IllegalArgumentException If the index was built with another algorithm.
+     */
+    private void checkAgainstReference(Path root) throws IOException {
+        try (ReferenceIndex reference = ReferenceIndex.open(options.getReferenceIndex())) {
+            if (!reference.getAlgorithm().equals(hashStrategy.getName())) {
+                throw new IllegalArgumentException("The reference index " + reference.getLocation() + " was built with "
+                        + reference.getAlgorithm() + ", not " + hashStrategy.getName());
+            }
+            long[] sizes = walkDirectory(root);
+            StageStatistics sizeStage = statistics.getStage(SIZE_STAGE);
+            sizeStage.incrementFilesIn(sizes.length);
+            int[] candidates = new int[16];
+            int candidateCount = 0;
+            for (int fileId = 0; fileId < sizes.length; fileId++) {
+                if (reference.hasSize(sizes[fileId])) {
+                    if (candidateCount == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = fileId;
+                } else {
+                    sizeStage.incrementEliminated(1, sizes[fileId]);
+                }
+            }
+
+            HashCache cache = options.getCacheFile() == null ? null : HashCache.load(options.getCacheFile());
+            StageStatistics stage = statistics.getStage(FULL_HASH_STAGE);
+            WorkerPool.Task<SizedFile, byte[]> hasher = fullHasher(cache, stage);
+            for (int start = 0; start < candidateCount; start += PUBLISH_BATCH_FILES) {
+                int end = Math.min(candidateCount, start + PUBLISH_BATCH_FILES);
+                List<SizedFile> batchFiles = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    batchFiles.add(new SizedFile(files.getFile(candidates[i]), sizes[candidates[i]]));
+                }
+                stage.incrementFilesIn(batchFiles.size());
+                List<byte[]> digests = workerPool.map(batchFiles, hasher);
+                for (int i = 0; i < batchFiles.size(); i++) {
+                    SizedFile file = batchFiles.get(i);
+                    List<Path> copies = digests.get(i) == null ? List.of() : reference.find(file.getSize(), digests.get(i));
+                    if (copies.isEmpty()) {
+                        stage.incrementEliminated(1, file.getSize());
+                    } else {
+                        addReferenceGroup(file, Hex.encodeHexString(digests.get(i)), copies);
+                    }
+                }
+            }
+            if (cache != null) {
+                saveCache(cache, root);
+            }
+        }
+    }
+
+    /**
+     * Keeps a file found in the reference index, followed by its reference copies, and counts it
+     * as a duplicate whose whole size can be reclaimed.
+     *
+     * @throws IOException If the listener fails.
+     */
+    private void addReferenceGroup(SizedFile file, String key, List<Path> copies) throws IOException {
+        List<Path> paths = new ArrayList<>(copies.size() + 1);
+        paths.add(file.getPath());
+        paths.addAll(copies);
+        DuplicateGroup group = new DuplicateGroup(GroupType.REFERENCE, key, file.getSize(), paths);
+        statistics.incrementDuplicateFileCount(1);
+        statistics.incrementReclaimableSize(file.getSize());
+        referenceGroups.add(group);
+        if (listener != null) {
+            listener.onGroup(group);
+        }
+    }
+
+    /**
+     * Walks the specified directory and hashes every file in full, unique sizes included, to
+     * build an index from content to files, e.g. to check incoming files against the tree.
+     * Hardlinks are hashed once and indexed under each of their paths. The device and inode of
+     * every file are kept, so that an exported index still tells links apart. Files found
+     * unchanged in the hash cache are not read. No duplicate groups are kept.
+     *
+     * With `sharedSizesOnly`, files of a size no other path has are left out unread and only
+     * counted, the way a duplicate scan drops them. This is the index of a shard of the file
+     * sizes, which holds every file of its sizes, so such a file cannot match one of another shard.
+     *
+     * @param folderPath      The path to the directory to index.
+     * @param sharedSizesOnly Whether only the files of sizes shared by several paths are indexed.
+     * @return The index of the content of the directory.
+     * @throws IOException If the root cannot be read, or the scan is interrupted.
+     * @throws IllegalStateException If the algorithm does not hash each file, or a memory budget is set.
+     */
+    public ContentIndex indexDirectory(String folderPath, boolean sharedSizesOnly) throws IOException {
+        if (!(hashStrategy instanceof MessageDigestAlgo) || options.getMemoryBudget() > 0) {
+            throw new IllegalStateException("The content index needs an in-memory scan with an algorithm that "
+                    + "hashes each file, not " + hashStrategy.getName());
+        }
+        Path root = Paths.get(folderPath);
+        long[] sizes = walkDirectory(root);
+        // Unless only shared sizes are indexed, every size must stay answerable, so unique sizes are not filtered out.
+        GroupingTable sizeTable = groupBySize(sizes, sharedSizesOnly && options.getPrefilterFalsePositiveRate() > 0);
+
+        // Links are not hashed, and with shared sizes only, neither is a file until its size is shared.
+        BitSet skippedIds = new BitSet(sizes.length);
+        if (sharedSizesOnly) {
+            skippedIds.set(0, sizes.length);
+        }
+        StageStatistics sizeStage = statistics.getStage(SIZE_STAGE);
+        long[] fileKey = new long[2];
+        sizeTable.forEachGroup((key, fileIds) -> {
+            if (fileIds.length > 1) {
+                collapseHardlinks(GroupingTable.toLong(key), fileIds);
+                for (int fileId : fileIds) {
+                    skippedIds.clear(fileId);
+                }
+            } else if (sharedSizesOnly) {
+                sizeStage.incrementFilesIn(1);
+                sizeStage.incrementEliminated(1, sizes[fileIds[0]]);
+            } else {
+                readFileKey(fileIds[0], fileKey);
+            }
+        });
+        long skippedFiles = skippedIds.cardinality();
+        long skippedBytes = skippedIds.stream().mapToLong(fileId -> sizes[fileId]).sum();
+        for (CandidateGroup links : hardlinkGroups) {
+            int[] fileIds = links.getFileIds();
+            for (int i = 1; i < fileIds.length; i++) {
+                skippedIds.set(fileIds[i]);
+            }
+        }
+
+        // Only the first path of every physical file is hashed, in walk order and in batches.
+        HashCache cache = options.getCacheFile() == null ? null : HashCache.load(options.getCacheFile());
+        StageStatistics stage = statistics.getStage(FULL_HASH_STAGE);
+        WorkerPool.Task<SizedFile, byte[]> hasher = fullHasher(cache, stage);
+        byte[][] digestOfFile = new byte[files.getFileCount()][];
+        int[] batchIds = new int[PUBLISH_BATCH_FILES];
+        int next = skippedIds.nextClearBit(0);
+        while (next < digestOfFile.length) {
+            int count = 0;
+            List<SizedFile> batchFiles = new ArrayList<>(batchIds.length);
+            for (; next < digestOfFile.length && count < batchIds.length; next = skippedIds.nextClearBit(next + 1)) {
+                batchIds[count++] = next;
+                batchFiles.add(new SizedFile(files.getFile(next), sizes[next]));
+            }
+            stage.incrementFilesIn(count);
+            List<byte[]> digests = workerPool.map(batchFiles, hasher);
+            for (int i = 0; i < count; i++) {
+                digestOfFile[batchIds[i]] = digests.get(i);
+            }
+        }
+        if (cache != null) {
+            saveCache(cache, root);
+        }
+        for (CandidateGroup links : hardlinkGroups) {
+            int[] fileIds = links.getFileIds();
+            for (int i = 1; i < fileIds.length; i++) {
+                digestOfFile[fileIds[i]] = digestOfFile[fileIds[0]];
+            }
+        }
+
+        GroupingTable byDigest = new GroupingTable(((MessageDigestAlgo) hashStrategy).getDigestLength(), sizes.length);
+        for (int fileId = 0; fileId < digestOfFile.length; fileId++) {
+            if (digestOfFile[fileId] != null) {
+                byDigest.add(digestOfFile[fileId], fileId);
+            }
+        }
+        return new ContentIndex(hashStrategy.getName(), files, sizes, sizeTable, byDigest,
+                Arrays.copyOf(fileDevices, sizes.length), Arrays.copyOf(fileInodes, sizes.length),
+                skippedFiles, skippedBytes);
+    }
+
+    /**
+     * Groups the directories with identical content, using the duplicate groups found by the
+     * stages as the content of their files, and counts every folder beyond the first of each
+     * group as a duplicate folder. Hardlinks share the content of the physical file they link to.
+     */
+    private void findDuplicateFolders() {
+        int[] groupOfFile = new int[files.getFileCount()];
+        long[] sizeOfFile = new long[files.getFileCount()];
+        Arrays.fill(groupOfFile, -1);
+        for (int g = 0; g < duplicateGroups.size(); g++) {
+            FileGroup group = duplicateGroups.get(g);
+            for (int fileId : group.getFileIds()) {
+                groupOfFile[fileId] = g;
+                sizeOfFile[fileId] = group.getSize();
+            }
+        }
+        for (int h = 0; h < hardlinkGroups.size(); h++) {
+            CandidateGroup links = hardlinkGroups.get(h);
+            int physicalGroup = groupOfFile[links.getFileIds()[0]];
+            for (int fileId : links.getFileIds()) {
+                groupOfFile[fileId] = physicalGroup >= 0 ? physicalGroup : duplicateGroups.size() + h;
+                sizeOfFile[fileId] = links.getSize();
+            }
+        }
+
+        duplicateFolders = directoryTree.findDuplicateFolders(groupOfFile, fileId -> sizeOfFile[fileId]);
+        for (FolderGroup group : duplicateFolders) {
+            statistics.incrementDuplicateFolderCount(group.getDirIds().length - 1);
+        }
+    }
+
+    /**
+     * Drops the cached files of the scanned tree that no longer exist and writes the cache back.
+     * Files the WalkFilter of the scan leaves out keep their cached digests.
+     * A cache that cannot be written is reported without failing the scan.
+     *
+     * @param cache The hash cache used by the scan.
+     * @param root  The root of the scan.
+     */
+    private void saveCache(HashCache cache, Path root) {
+        cache.retainScanned(root, files.files(), options.createWalkFilter(root));
+        try {
+            cache.save();
+        } catch (IOException e) {
+            System.err.println("Error writing hash cache: " + cache.getLocation() + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Walks the directory tree, counting files and folders, registering every directory and file
+     * in the CompactPathStore and every file with its file key and size.
+     * No file content is read during the walk. The ParallelWalker lists directories on
+     * ScanOptions' walk threads but calls this visitor on the calling thread only, in walk order.
+     * Entries that cannot be read below the root are reported and skipped. Files and directories
+     * rejected by the WalkFilter of the ScanOptions are counted as skipped; a rejected directory is
+     * never listed, and a rejected file never reaches a hashing stage.
+     *
+     * @param root The directory to walk.
+     * @return The size of every file of the walk, indexed by file id.
+     * @throws IOException If the root cannot be read.
+     */
+    private long[] walkDirectory(Path root) throws IOException {
+        WalkFilter filter = options.createWalkFilter(root);
+        ParallelWalker walker = new ParallelWalker(options.getWalkThreads(), options.isFollowLinks(), filter::acceptsDirectory);
+        class WalkVisitor extends SimpleFileVisitor<Path> {
+            private int[] openDirectories = new int[16];
+            private int depth;
+            private long[] sizes = new long[16];
+
             @Override
             public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!filter.acceptsDirectory(dir)) {
+                    statistics.incrementSkippedFolderCount();
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
                 statistics.incrementFolderCount();
+                if (depth == openDirectories.length) {
+                    openDirectories = Arrays.copyOf(openDirectories, depth * 2);
+                }
+                openDirectories[depth] = files.addDirectory(currentDirectory(), dir);
+                depth++;
                 return FileVisitResult.CONTINUE;
             }
 
             @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                depth--;
+                if (exc != null) {
+                    System.err.println("Error processing file: " + dir + " - " + exc.getMessage());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (depth == 0) {
+                    throw exc;
+                }
+                System.err.println("Error processing file: " + file + " - " + exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!filter.acceptsFile(file, attrs)) {
+                    statistics.incrementSkippedFileCount();
+                    return FileVisitResult.CONTINUE;
+                }
                 statistics.incrementFileCount();
-                statistics.incrementTotalFileSize(Files.size(file));
+                statistics.incrementTotalFileSize(attrs.size());
+                int fileId = files.addFile(currentDirectory(), file);
+                if (fileId == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, fileId * 2);
+                }
+                sizes[fileId] = attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+
+            private int currentDirectory() {
+                return depth == 0 ? -1 : openDirectories[depth - 1];
+            }
+        }
+
+        WalkVisitor visitor = new WalkVisitor();
+        walker.walk(root, visitor);
+        return Arrays.copyOf(visitor.sizes, files.getFileCount());
+    }
+
+    /**
+     * Groups the files of the walk by size. Most files of a tree usually have a size no other
+     * file has, and would each cost a group of their own only to be dropped by the size stage.
+     * With the prefilter, a first pass over the sizes runs them through two Bloom filters, one of
+     * the sizes seen and one of the sizes seen again; a second pass, in walk order, only adds the
+     * files whose size may have been seen again. A file of a unique size is thus left out of the
+     * table, except with about the false-positive rate of the ScanOptions, in which case the size
+     * stage drops its single-file group as before. A size shared by several files always passes
+     * both filters, so no candidate is ever lost, and the table holds the same groups in the same
+     * order as without the prefilter, minus most single-file groups.
+     *
+     * The filters take at most the prefilter memory of the ScanOptions, about 2.4 bytes per file
+     * at a rate of 1%, against some 40 bytes per file for a single-file group.
+     *
+     * @param sizes     The size of every file of the walk, indexed by file id.
+     * @param prefilter Whether files of a unique size are left out of the table.
+     * @return The files of the walk grouped by size; files left out are counted as eliminated by the size stage.
+     */
+    private GroupingTable groupBySize(long[] sizes, boolean prefilter) {
+        GroupingTable sizeTable = new GroupingTable(Long.BYTES, 0);
+        if (!prefilter || sizes.length < 2) {
+            for (int fileId = 0; fileId < sizes.length; fileId++) {
+                sizeTable.add(sizes[fileId], fileId);
+            }
+            return sizeTable;
+        }
+
+        double rate = options.getPrefilterFalsePositiveRate();
+        long filterMemory = options.getPrefilterMemory() / 2;
+        BloomFilter seen = BloomFilter.forKeys(sizes.length, rate, filterMemory);
+        BloomFilter seenAgain = BloomFilter.forKeys(sizes.length, rate, filterMemory);
+        for (long size : sizes) {
+            if (seen.put(size)) {
+                seenAgain.put(size);
+            }
+        }
+
+        long filteredFiles = 0;
+        long filteredBytes = 0;
+        for (int fileId = 0; fileId < sizes.length; fileId++) {
+            if (seenAgain.mightContain(sizes[fileId])) {
+                sizeTable.add(sizes[fileId], fileId);
+            } else {
+                filteredFiles++;
+                filteredBytes += sizes[fileId];
+            }
+        }
+        StageStatistics stage = statistics.getStage(SIZE_STAGE);
+        stage.incrementFilesIn(filteredFiles);
+        stage.incrementEliminated(filteredFiles, filteredBytes);
+        return sizeTable;
+    }
 
-                try {
-                    String hash = hashStrategy.computerHash(file.toFile());
-                    List<Path> paths = hashToFileMap.computeIfAbsent(hash, k -> new ArrayList<>());
-                    paths.add(file);
+    /**
+     * Drops every size group that holds a single physical file, since a file with a unique size
+     * cannot have a duplicate. Hardlinks are collapsed first, so a group made of links to one
+     * file is dropped as well.
+     *
+     * @param sizeTable The files of the walk grouped by size.
+     * @return The remaining size groups, each holding at least two distinct physical files.
+     */
+    private List<CandidateGroup> eliminateUniqueSizes(GroupingTable sizeTable) {
+        StageStatistics stage = statistics.getStage(SIZE_STAGE);
+        List<CandidateGroup> candidates = new ArrayList<>();
 
-                    if (paths.size() > 1) {
-                        statistics.incrementDuplicateFileCount();
+        sizeTable.forEachGroup((key, fileIds) -> {
+            long size = GroupingTable.toLong(key);
+            stage.incrementFilesIn(fileIds.length);
+            int[] physicalIds = fileIds.length > 1 ? collapseHardlinks(size, fileIds) : fileIds;
+            if (physicalIds.length > 1) {
+                candidates.add(new CandidateGroup(size, physicalIds));
+            } else {
+                stage.incrementEliminated(1, size);
+            }
+        });
+        return candidates;
+    }
+
+    /**
+     * Keeps the first path of every physical file of a size group and records the other paths
+     * to the same file, found by their file key, as a hardlink group. Links always have the same
+     * size, so looking for them within a size group finds them all. The keys are read here, so
+     * files of a unique size never cost one; files without a file key are always kept.
+     *
+     * @param size    The size of the files of the group.
+     * @param fileIds The files of the size group, in walk order.
+     * @return The first path of every physical file, in walk order.
+     */
+    private int[] collapseHardlinks(long size, int[] fileIds) {
+        GroupingTable byFileKey = new GroupingTable(2 * Long.BYTES, fileIds.length);
+        ByteBuffer keyBuffer = ByteBuffer.allocate(2 * Long.BYTES);
+        long[] key = new long[2];
+        for (int fileId : fileIds) {
+            if (readFileKey(fileId, key)) {
+                keyBuffer.clear();
+                byFileKey.add(keyBuffer.putLong(key[0]).putLong(key[1]).array(), fileId);
+            }
+        }
+        if (byFileKey.getGroupCount() == byFileKey.getEntryCount()) {
+            return fileIds;
+        }
+
+        BitSet links = new BitSet();
+        byFileKey.forEachGroup((fileKey, linkIds) -> {
+            if (linkIds.length > 1) {
+                int[] entries = options.isFollowLinks() ? dropSymbolicLinks(linkIds) : linkIds;
+                if (entries.length > 1) {
+                    statistics.incrementHardlinkCount(entries.length - 1);
+                    hardlinkGroups.add(new CandidateGroup(size, entries));
+                }
+                for (int linkId : linkIds) {
+                    if (linkId != entries[0]) {
+                        links.set(linkId);
                     }
-                } catch (Exception e) {
-                    System.err.println("Error processing file: " + file + " - " + e.getMessage());
                 }
+            }
+        });
+        return Arrays.stream(fileIds).filter(fileId -> !links.get(fileId)).toArray();
+    }
 
-                return FileVisitResult.CONTINUE;
+    /**
+     * Keeps one path per directory entry of a physical file, when the walk follows symbolic
+     * links: paths with the same real path reach one entry, some through links, so they are
+     * neither hardlinks nor duplicates of each other and only one of them is kept. The path
+     * without links is preferred.
+     *
+     * @param linkIds The files sharing a file key, in walk order.
+     * @return The kept paths, with distinct real paths, in walk order.
+     */
+    private int[] dropSymbolicLinks(int[] linkIds) {
+        Map<Path, Integer> byRealPath = new HashMap<>();
+        for (int linkId : linkIds) {
+            Path file = files.getFile(linkId);
+            Path realPath = FileKeys.realPath(file);
+            Integer kept = byRealPath.get(realPath);
+            if (kept == null || (!FileKeys.isRealPath(files.getFile(kept), realPath) && FileKeys.isRealPath(file, realPath))) {
+                byRealPath.put(realPath, linkId);
             }
+        }
+        return byRealPath.values().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Reads the device and inode of a file into the key and into the file key arrays, which
+     * grow to the number of files of the walk. A file without a key keeps a device and inode of 0.
+     *
+     * @param fileId The file.
+     * @param key    Receives the device at index 0 and the inode at index 1.
+     * @return `false` if the file has no key.
+     */
+    private boolean readFileKey(int fileId, long[] key) {
+        if (fileDevices.length < files.getFileCount()) {
+            fileDevices = Arrays.copyOf(fileDevices, files.getFileCount());
+            fileInodes = Arrays.copyOf(fileInodes, files.getFileCount());
+        }
+        if (!FileKeys.read(files.getFile(fileId), options.isFollowLinks(), key)) {
+            return false;
+        }
+        fileDevices[fileId] = key[0];
+        fileInodes[fileId] = key[1];
+        return true;
+    }
+
+    /**
+     * Runs the sampling stages over the candidate groups: the partial-hash stage over the first,
+     * last and optionally middle block of each file, then, if ScanOptions asks for it, the
+     * block-sample stage over many blocks spread evenly across each file. The first stage is
+     * cheap and drops most files that differ; the second splits groups of very large files,
+     * such as disk images, that share their head and tail, before a single one is read in full.
+     *
+     * @param candidates Groups of at least two files of the same size.
+     * @return The groups that survive the stages, each holding at least two files.
+     * @throws InterruptedIOException If the scan is interrupted while waiting for the workers.
+     */
+    private List<CandidateGroup> splitBySample(List<CandidateGroup> candidates) throws InterruptedIOException {
+        if (options.getSampleSize() == 0) {
+            return candidates;
+        }
+
+        candidates = splitBySample(candidates,
+                new PartialContentHasher(options.getSampleSize(), options.isSampleMiddle()),
+                statistics.getStage(PARTIAL_HASH_STAGE), false);
+        if (options.getSampleBlocks() > 0) {
+            candidates = splitBySample(candidates,
+                    new PartialContentHasher(options.getSampleSize(), options.getSampleBlocks()),
+                    statistics.getStage(BLOCK_SAMPLE_STAGE), true);
+        }
+        return candidates;
+    }
+
+    /**
+     * Splits the candidate groups by a hash over a sample of each file. Files whose sample is
+     * unique within their group are dropped. Files no larger than the sample are passed through
+     * untouched, since sampling them would read as much as hashing them in full.
+     *
+     * @param candidates   Groups of at least two files of the same size.
+     * @param sampler      The sampler choosing the blocks of each file.
+     * @param stage        The stage doing the sampling.
+     * @param countAvoided Whether the part of a dropped file that was not sampled is counted as
+     *                     a read avoided by block sampling.
+     * @return The groups that survive the stage, each holding at least two files.
+     * @throws InterruptedIOException If the scan is interrupted while waiting for the workers.
+     */
+    private List<CandidateGroup> splitBySample(List<CandidateGroup> candidates, PartialContentHasher sampler,
+                                               StageStatistics stage, boolean countAvoided)
+            throws InterruptedIOException {
+        List<CandidateGroup> survivors = new ArrayList<>();
+        List<CandidateGroup> sampled = new ArrayList<>();
+
+        for (CandidateGroup group : candidates) {
+            if (group.getSize() <= sampler.getSampleCoverage()) {
+                survivors.add(group);
+            } else {
+                sampled.add(group);
+            }
+        }
+
+        List<List<FileGroup>> splits = splitByHash(sampled, stage, file -> {
+            byte[] sampleHash = sampler.computeSampleHash(file.getPath(), file.getSize());
+            stage.incrementBytesRead(sampler.sampledBytes(file.getSize()));
+            return sampleHash;
         });
+
+        for (List<FileGroup> split : splits) {
+            for (FileGroup group : split) {
+                if (group.getFileIds().length > 1) {
+                    survivors.add(new CandidateGroup(group.getSize(), group.getFileIds()));
+                } else {
+                    stage.incrementEliminated(1, group.getSize());
+                    if (countAvoided) {
+                        statistics.incrementBlockSampleAvoidedBytes(group.getSize() - sampler.sampledBytes(group.getSize()));
+                    }
+                }
+            }
+        }
+        return survivors;
+    }
+
+    /**
+     * Hashes every file of the candidate groups and groups the files by digest.
+     * Files whose digest turns out to be unique are recorded as eliminated by this stage.
+     * Files found unchanged in the hash cache are not read at all.
+     *
+     * @param candidates Groups of at least two files of the same size.
+     * @param cache      The hash cache, or `null` to hash every file.
+     * @throws IOException If the scan is interrupted while waiting for the workers, or the listener fails.
+     */
+    private void hashCandidates(List<CandidateGroup> candidates, HashCache cache) throws IOException {
+        StageStatistics stage = statistics.getStage(FULL_HASH_STAGE);
+        for (List<CandidateGroup> batch : batches(candidates)) {
+            hashBatch(batch, cache, stage);
+        }
+    }
+
+    /**
+     * Hashes the files of a batch of candidate groups, confirms the matches if requested and
+     * keeps the duplicate groups found.
+     *
+     * @param batch Groups of at least two files of the same size.
+     * @param cache The hash cache, or `null` to hash every file.
+     * @param stage The full-hash stage.
+     * @throws IOException If the scan is interrupted while waiting for the workers, or the listener fails.
+     */
+    private void hashBatch(List<CandidateGroup> batch, HashCache cache, StageStatistics stage) throws IOException {
+        List<List<FileGroup>> splits = splitByHash(batch, stage, fullHasher(cache, stage));
+
+        List<FileGroup> matches = new ArrayList<>();
+        for (List<FileGroup> split : splits) {
+            for (FileGroup group : split) {
+                if (options.isConfirm() && group.getFileIds().length > 1) {
+                    matches.add(group);
+                } else {
+                    addGroup(group, stage);
+                }
+            }
+        }
+
+        if (!matches.isEmpty()) {
+            confirmMatches(matches);
+        }
+    }
+
+    /**
+     * Returns the task computing the full digest of a file, from the hash cache if the file is
+     * unchanged since it was cached.
+     *
+     * @param cache The hash cache, or `null` to hash every file.
+     * @param stage The stage doing the hashing.
+     * @return The hashing task.
+     */
+    private WorkerPool.Task<SizedFile, byte[]> fullHasher(HashCache cache, StageStatistics stage) {
+        Algorithms hasher = (Algorithms) hashStrategy;
+        String algorithm = hasher.getName();
+        return file -> {
+            BasicFileAttributes attrs = null;
+            if (cache != null) {
+                attrs = Files.readAttributes(file.getPath(), BasicFileAttributes.class);
+                byte[] cached = cache.lookup(algorithm, file.getPath(), attrs);
+                if (cached != null) {
+                    stage.incrementCacheHits(1);
+                    return cached;
+                }
+            }
+
+            byte[] digest = hasher.computeDigest(file.getPath());
+            stage.incrementBytesRead(file.getSize());
+            if (cache != null) {
+                cache.store(algorithm, file.getPath(), attrs, digest);
+            }
+            return digest;
+        };
+    }
+
+    /**
+     * Compares the files of every digest match byte by byte, so a hash collision can never be
+     * reported as a duplicate. A match whose files turn out to differ is split into its classes
+     * of identical content, told apart by their variant.
+     *
+     * @param matches Groups of at least two files sharing a digest.
+     * @throws IOException If the scan is interrupted while waiting for the workers, or the listener fails.
+     */
+    private void confirmMatches(List<FileGroup> matches) throws IOException {
+        StageStatistics stage = statistics.getStage(CONFIRM_STAGE);
+
+        List<List<int[]>> partitions = workerPool.map(matches, group -> {
+            stage.incrementFilesIn(group.getFileIds().length);
+            return confirmer.partition(toPaths(group.getFileIds()), group.getSize(), stage::incrementBytesRead);
+        });
+
+        for (int i = 0; i < matches.size(); i++) {
+            FileGroup match = matches.get(i);
+            List<int[]> classes = partitions.get(i);
+            for (int c = 0; c < classes.size(); c++) {
+                int variant = classes.size() == 1 ? 0 : c + 1;
+                addGroup(new FileGroup(match.getSize(), match.getDigest(), variant,
+                        select(match.getFileIds(), classes.get(c))), stage);
+            }
+        }
+    }
+
+    /**
+     * Hashes every file of the candidate groups on the worker pool and splits each group by digest.
+     * The split of each group keeps the files in their original order, whatever the number of
+     * workers, so parallel and single-threaded runs produce identical groups.
+     * Files that cannot be hashed are reported and left out.
+     *
+     * @param groups The groups whose files are hashed.
+     * @param stage  The stage doing the hashing.
+     * @param hasher The hash function run for every file.
+     * @return For each group, in the order of the groups, its files split by digest.
+     * @throws InterruptedIOException If the scan is interrupted while waiting for the workers.
+     */
+    private List<List<FileGroup>> splitByHash(List<CandidateGroup> groups, StageStatistics stage,
+                                              WorkerPool.Task<SizedFile, byte[]> hasher)
+            throws InterruptedIOException {
+        List<SizedFile> sizedFiles = new ArrayList<>();
+        for (CandidateGroup group : groups) {
+            for (int fileId : group.getFileIds()) {
+                sizedFiles.add(new SizedFile(files.getFile(fileId), group.getSize()));
+            }
+        }
+        stage.incrementFilesIn(sizedFiles.size());
+
+        List<byte[]> digests = workerPool.map(sizedFiles, hasher);
+
+        List<List<FileGroup>> splits = new ArrayList<>(groups.size());
+        int index = 0;
+        for (CandidateGroup group : groups) {
+            GroupingTable byDigest = null;
+            for (int fileId : group.getFileIds()) {
+                byte[] digest = digests.get(index++);
+                if (digest != null) {
+                    if (byDigest == null) {
+                        byDigest = new GroupingTable(digest.length, group.getFileIds().length);
+                    }
+                    byDigest.add(digest, fileId);
+                }
+            }
+
+            List<FileGroup> split = new ArrayList<>();
+            if (byDigest != null) {
+                byDigest.forEachGroup((digest, fileIds) -> split.add(new FileGroup(group.getSize(), digest, 0, fileIds)));
+            }
+            splits.add(split);
+        }
+        return splits;
+    }
+
+    /**
+     * Compares the files of every candidate group byte by byte and groups identical files.
+     * Groups are compared concurrently on the worker pool; each equivalence class is told
+     * apart from the other classes of the same size by its variant.
+     *
+     * @param candidates Groups of at least two files of the same size.
+     * @param comparator The comparator that splits each group into classes of identical content.
+     * @throws IOException If the scan is interrupted while waiting for the workers, or the listener fails.
+     */
+    private void compareCandidates(List<CandidateGroup> candidates, ContentComparator comparator)
+            throws IOException {
+        StageStatistics stage = statistics.getStage(BYTE_COMPARE_STAGE);
+
+        for (List<CandidateGroup> batch : batches(candidates)) {
+            List<List<int[]>> partitions = workerPool.map(batch, group -> {
+                stage.incrementFilesIn(group.getFileIds().length);
+                return comparator.partition(toPaths(group.getFileIds()), group.getSize(), stage::incrementBytesRead);
+            });
+
+            for (int i = 0; i < batch.size(); i++) {
+                CandidateGroup group = batch.get(i);
+                List<int[]> classes = partitions.get(i);
+                for (int c = 0; c < classes.size(); c++) {
+                    addGroup(new FileGroup(group.getSize(), null, c, select(group.getFileIds(), classes.get(c))), stage);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cuts the candidate groups into consecutive batches of about PUBLISH_BATCH_FILES files each,
+     * without splitting a group, so the groups found in a batch are published before the next
+     * batch is read.
+     *
+     * @param candidates The candidate groups, in order.
+     * @return The batches, in order.
+     */
+    private static List<List<CandidateGroup>> batches(List<CandidateGroup> candidates) {
+        List<List<CandidateGroup>> batches = new ArrayList<>();
+        int start = 0;
+        int files = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            files += candidates.get(i).getFileIds().length;
+            if (files >= PUBLISH_BATCH_FILES || i == candidates.size() - 1) {
+                batches.add(candidates.subList(start, i + 1));
+                start = i + 1;
+                files = 0;
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * Keeps a group of identical files as a duplicate group, or records its single file as
+     * eliminated by the stage, and updates the statistics.
+     *
+     * @param group The group of files with identical content.
+     * @param stage The stage that produced the group.
+     * @throws IOException If the listener fails.
+     */
+    private void addGroup(FileGroup group, StageStatistics stage) throws IOException {
+        int count = group.getFileIds().length;
+        if (count == 1) {
+            stage.incrementEliminated(1, group.getSize());
+        } else {
+            statistics.incrementDuplicateFileCount(count - 1);
+            statistics.incrementReclaimableSize((count - 1) * group.getSize());
+            duplicateGroups.add(group);
+            if (listener != null) {
+                listener.onGroup(toFileGroup(group));
+            }
+        }
+    }
+
+    private List<Path> toPaths(int[] fileIds) {
+        List<Path> paths = new ArrayList<>(fileIds.length);
+        for (int fileId : fileIds) {
+            paths.add(files.getFile(fileId));
+        }
+        return paths;
+    }
+
+    private static int[] select(int[] fileIds, int[] positions) {
+        return Arrays.stream(positions).map(position -> fileIds[position]).toArray();
     }
 
     /**
      * Returns the collected statistics, including total file count,
-     * folder count, and total file size.
+     * folder count, total file size and per-stage elimination counts.
      *
      * @return An instance of FileStatistics containing the aggregated statistics.
      */
@@ -97,11 +1071,151 @@ public class FileVisitorService {
     /**
      * Returns a map of file hashes to lists of file paths,
      * which can be used to identify duplicate files.
+     * The map is built on each call from the compact duplicate groups of the scan and only holds
+     * groups of two or more files; unique files are never part of it.
      *
-     * @return A map where the key is the hash of a file,
+     * @return A map where the key is the hexadecimal hash of a group of files,
      *         and the value is a list of paths to files with the same hash.
      */
     public Map<String, List<Path>> getHashToFileMap() {
+        if (spilledScan != null) {
+            return readSpilledGroups(false);
+        }
+        Map<String, List<Path>> hashToFileMap = new LinkedHashMap<>();
+        duplicateGroups.forEach(group -> hashToFileMap.put(group.getKey(), toPaths(group.getFileIds())));
         return hashToFileMap;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns a map of file keys to lists of file paths, one entry per physical file that was
+     * found under more than one path. The first path of each entry is the one whose content took
+     * part in the duplicate search.
+     *
+     * @return A map where the key is the file key of a physical file (e.g., its device and inode),
+     *         and the value is a list of paths linking to that file.
+     */
+    public Map<String, List<Path>> getHardlinkMap() {
+        if (spilledScan != null) {
+            return readSpilledGroups(true);
+        }
+        Map<String, List<Path>> hardlinkMap = new LinkedHashMap<>();
+        hardlinkGroups.forEach(group -> hardlinkMap.put(hardlinkKey(group), toPaths(group.getFileIds())));
+        return hardlinkMap;
+    }
+
+    /**
+     * Returns a map of Merkle digests to lists of directory paths, one entry per group of
+     * directories with identical content. Only the highest identical directories are listed;
+     * the map is empty unless duplicate folders were requested in the ScanOptions.
+     *
+     * @return A map where the key is the hexadecimal Merkle digest of a group of directories,
+     *         and the value is a list of paths to directories with that digest.
+     */
+    public Map<String, List<Path>> getDuplicateFolderMap() {
+        Map<String, List<Path>> folderMap = new LinkedHashMap<>();
+        duplicateFolders.forEach(group -> folderMap.put(group.getKey(), toDirectoryPaths(group.getDirIds())));
+        return folderMap;
+    }
+
+    /**
+     * Hands every duplicate group to the specified writer, one at a time, so a report can be
+     * streamed without building the map of all groups first. Folder groups come first and
+     * hardlink groups, then reference groups, last; file and hardlink groups that merely repeat a
+     * folder group are left out.
+     *
+     * @param writer The report writer receiving the groups. It is not finished.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    public void writeDuplicateGroups(ReportWriter writer) throws IOException {
+        forEachDuplicateGroup(group -> writer.writeGroup(group.getType(), group.getKey(), group.getSize(), group.getPaths()));
+    }
+
+    /**
+     * Hands every duplicate group of a finished scan to the listener, one at a time, in the
+     * order of `writeDuplicateGroups`. The paths of a group are only built when it is handed over.
+     *
+     * @param listener The listener receiving the groups.
+     * @throws IOException If the spilled groups cannot be read, or the listener fails.
+     */
+    public void forEachDuplicateGroup(DuplicateGroupListener listener) throws IOException {
+        if (spilledScan != null) {
+            spilledScan.forEachDuplicateGroup((size, key, fileIds) ->
+                    listener.onGroup(new DuplicateGroup(GroupType.FILE, key, size, spilledScan.toPaths(fileIds))));
+            spilledScan.forEachHardlinkGroup((size, key, fileIds) ->
+                    listener.onGroup(new DuplicateGroup(GroupType.HARDLINK, key, size, spilledScan.toPaths(fileIds))));
+            return;
+        }
+        for (FolderGroup group : duplicateFolders) {
+            listener.onGroup(new DuplicateGroup(GroupType.FOLDER, group.getKey(), group.getSize(),
+                    toDirectoryPaths(group.getDirIds())));
+        }
+        for (FileGroup group : duplicateGroups) {
+            if (!isImpliedByFolders(group.getFileIds())) {
+                listener.onGroup(toFileGroup(group));
+            }
+        }
+        for (CandidateGroup group : hardlinkGroups) {
+            if (!isImpliedByFolders(group.getFileIds())) {
+                listener.onGroup(toHardlinkGroup(group));
+            }
+        }
+        for (DuplicateGroup group : referenceGroups) {
+            listener.onGroup(group);
+        }
+    }
+
+    /**
+     * Deletes the files spilled to disk by a memory-bounded scan. Does nothing for an in-memory scan.
+     *
+     * @throws IOException If a spilled file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (spilledScan != null) {
+            spilledScan.close();
+        }
+    }
+
+    /**
+     * Reads the duplicate or hardlink groups of a memory-bounded scan back from disk into a map.
+     */
+    private Map<String, List<Path>> readSpilledGroups(boolean hardlinks) {
+        Map<String, List<Path>> groups = new LinkedHashMap<>();
+        GroupFile.GroupVisitor collector = (size, key, fileIds) -> groups.put(key, spilledScan.toPaths(fileIds));
+        try {
+            if (hardlinks) {
+                spilledScan.forEachHardlinkGroup(collector);
+            } else {
+                spilledScan.forEachDuplicateGroup(collector);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return groups;
+    }
+
+    private boolean isImpliedByFolders(int[] fileIds) {
+        return directoryTree != null && directoryTree.isImpliedByFolders(fileIds);
+    }
+
+    private DuplicateGroup toFileGroup(FileGroup group) {
+        return new DuplicateGroup(GroupType.FILE, group.getKey(), group.getSize(), toPaths(group.getFileIds()));
+    }
+
+    private DuplicateGroup toHardlinkGroup(CandidateGroup group) {
+        return new DuplicateGroup(GroupType.HARDLINK, hardlinkKey(group), group.getSize(), toPaths(group.getFileIds()));
+    }
+
+    private String hardlinkKey(CandidateGroup group) {
+        int fileId = group.getFileIds()[0];
+        return FileKeys.format(fileDevices[fileId], fileInodes[fileId]);
+    }
+
+    private List<Path> toDirectoryPaths(int[] dirIds) {
+        List<Path> paths = new ArrayList<>(dirIds.length);
+        for (int dirId : dirIds) {
+            paths.add(files.getDirectory(dirId));
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,44 @@
+package io.muzoo.ssc;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * The FolderGroup class is a group of directories with identical content found by
+ * DirectoryTree: same names, same structure and same file contents all the way down.
+ * Directories are referred to by their id in the DirectoryTree of the scan.
+ */
+class FolderGroup {
+    private final long size;
+    private final byte[] digest;
+    private final int[] dirIds;
+
+    /**
+     * Constructs a FolderGroup.
+     *
+     * @param size   The combined size of the files below each directory of the group, in bytes.
+     * @param digest The Merkle digest shared by the directories.
+     * @param dirIds The ids of the directories of the group.
+     */
+    FolderGroup(long size, byte[] digest, int[] dirIds) {
+        this.size = size;
+        this.digest = digest;
+        this.dirIds = dirIds;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    int[] getDirIds() {
+        return dirIds;
+    }
+
+    /**
+     * Returns the key identifying the group in reports: the hexadecimal Merkle digest.
+     *
+     * @return The key of the group.
+     */
+    String getKey() {
+        return Hex.encodeHexString(digest);
+    }
+}
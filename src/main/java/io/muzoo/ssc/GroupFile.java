@@ -0,0 +1,103 @@
+package io.muzoo.ssc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The GroupFile class keeps groups of file ids on disk for the memory-bounded scan. Members are
+ * appended one at a time, so a group of any size can be written without holding it; only reading
+ * a group back materializes its ids.
+ *
+ * File layout: for every group, its size (long), its key (UTF) and the ids of its members (int),
+ * closed by -1.
+ *
+ * Example Usage:
+ * GroupFile groups = new GroupFile(tempDirectory.resolve("groups.bin"));
+ * groups.startGroup(4096, "5d41402abc4b2a76b9719d911017c592");
+ * groups.addMember(3);
+ * groups.addMember(7);
+ * groups.endGroup();
+ * groups.forEachGroup((size, key, fileIds) -> System.out.println(key + ": " + fileIds.length));
+ */
+class GroupFile implements Closeable {
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final int END_OF_GROUP = -1;
+
+    private final Path file;
+    private final DataOutputStream out;
+
+    /**
+     * The GroupVisitor interface receives the groups of a GroupFile, one at a time.
+     */
+    @FunctionalInterface
+    interface GroupVisitor {
+        void accept(long size, String key, int[] fileIds) throws IOException;
+    }
+
+    GroupFile(Path file) throws IOException {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE));
+    }
+
+    void startGroup(long size, String key) throws IOException {
+        out.writeLong(size);
+        out.writeUTF(key);
+    }
+
+    void addMember(int fileId) throws IOException {
+        out.writeInt(fileId);
+    }
+
+    void endGroup() throws IOException {
+        out.writeInt(END_OF_GROUP);
+    }
+
+    /**
+     * Reads every group written so far, in the order in which they were written.
+     *
+     * @param visitor The visitor receiving the groups.
+     * @throws IOException If the file cannot be read.
+     */
+    void forEachGroup(GroupVisitor visitor) throws IOException {
+        out.flush();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE))) {
+            while (true) {
+                long size;
+                try {
+                    size = in.readLong();
+                } catch (EOFException e) {
+                    return;
+                }
+                String key = in.readUTF();
+                int[] fileIds = new int[16];
+                int count = 0;
+                for (int fileId = in.readInt(); fileId != END_OF_GROUP; fileId = in.readInt()) {
+                    if (count == fileIds.length) {
+                        fileIds = Arrays.copyOf(fileIds, count * 2);
+                    }
+                    fileIds[count++] = fileId;
+                }
+                visitor.accept(size, key, Arrays.copyOf(fileIds, count));
+            }
+        }
+    }
+
+    /**
+     * Closes and deletes the file.
+     *
+     * @throws IOException If the file cannot be closed or deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -4,11 +4,26 @@ import io.muzoo.ssc.cli.AlgorithmValidator;
 import io.muzoo.ssc.cli.CommandLineConfig;
 import io.muzoo.ssc.cli.CommandLineHandler;
 import io.muzoo.ssc.cli.FilePathValidator;
+import io.muzoo.ssc.daemon.LookupServer;
+import io.muzoo.ssc.report.ReportFormat;
+import io.muzoo.ssc.report.ReportWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.List;
 
 /**
  * The Main class serves as the entry point for the Duplicate File Finder application.
- * 
- * file detection workflow using the `DuplicateFinder` class.
+ * It parses the command line and drives the `DuplicateFinder` API: the report is streamed
+ * group by group as the scan publishes the groups, and the statistics are printed once the
+ * scan is done.
  */
 public class Main {
     public static void main(String[] args) {
@@ -25,13 +40,8 @@ public class Main {
             System.out.println("Print Duplicates: " + hardcodedPrintDuplicates);
 
             try {
-                DuplicateFinder finder = new DuplicateFinder(
-                        hardcodedFolderPath,
-                        hardcodedAlgorithm,
-                        hardcodedCountDuplicates,
-                        hardcodedPrintDuplicates
-                );
-                finder.findDuplicates();
+                run(new CommandLineConfig(hardcodedFolderPath, hardcodedAlgorithm,
+                        hardcodedCountDuplicates, hardcodedPrintDuplicates));
             } catch (Exception e) {
                 System.err.println("Error: " + e.getMessage());
             }
@@ -40,17 +50,163 @@ public class Main {
             try {
                 CommandLineConfig config = cmdHandler.parse(args);
                 if (config != null) {
-                    DuplicateFinder finder = new DuplicateFinder(
-                            config.getFolderPath(),
-                            config.getAlgorithm(),
-                            config.isCountDuplicates(),
-                            config.isPrintDuplicates()
-                    );
-                    finder.findDuplicates();
+                    run(config);
                 }
             } catch (Exception e) {
                 System.err.println("Error: " + e.getMessage());
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs a scan, watch mode, daemon mode, an index export or a merge of shards, as configured on
+     * the command line.
+     *
+     * @param config The parsed command line.
+     * @throws IOException If an I/O error occurs during the scan or while writing the report.
+     */
+    private static void run(CommandLineConfig config) throws IOException {
+        ScanOptions scanOptions = config.getScanOptions();
+        Scan scan;
+        String startMessage;
+        if (!scanOptions.getMergeIndexes().isEmpty()) {
+            scan = listener -> DuplicateFinder.merge(scanOptions.getMergeIndexes(), listener);
+            startMessage = "Merging " + scanOptions.getMergeIndexes().size() + " partial indexes...";
+        } else {
+            DuplicateFinder finder = new DuplicateFinder(config.getFolderPath(), config.getAlgorithm(), scanOptions);
+            if (scanOptions.isWatch()) {
+                watch(finder, config);
+                return;
+            }
+            if (scanOptions.isDaemon()) {
+                serve(finder, config);
+                return;
+            }
+            if (scanOptions.getExportIndex() != null) {
+                exportIndex(finder, config);
+                return;
+            }
+            scan = finder::scan;
+            startMessage = "Starting duplicate file search...";
+        }
+
+        // A machine-readable report on standard output must not be mixed with progress messages.
+        PrintStream console = scanOptions.getReportFormat() != ReportFormat.TEXT && scanOptions.getReportOutput() == null
+                ? System.err
+                : System.out;
+
+        try {
+            console.println(startMessage);
+            ScanResult result = scanWithReport(scan, config);
+            console.println(result.getStatistics().getFormattedStatistics());
+
+            long elapsedTime = result.getElapsedMillis();
+            console.printf("Duplicate search completed in %d minutes, %d seconds, %d milliseconds.%n",
+                    elapsedTime / 60000, (elapsedTime / 1000) % 60, elapsedTime % 1000);
+        } catch (IOException e) {
+            System.err.println("Error while finding duplicates: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Scans while streaming the duplicate report, group by group as the scan publishes them, to
+     * standard output or to the report file. A text report on standard output is only written when
+     * counting or printing was requested. Text reports list the groups only when printing was
+     * requested; machine-readable formats always list every group.
+     *
+     * @param scan   The scan, or merge, to run.
+     * @param config The parsed command line.
+     * @return The result of the scan.
+     * @throws IOException If an I/O error occurs during the scan or while writing the report.
+     */
+    private static ScanResult scanWithReport(Scan scan, CommandLineConfig config) throws IOException {
+        ScanOptions scanOptions = config.getScanOptions();
+        ReportFormat format = scanOptions.getReportFormat();
+        Path output = scanOptions.getReportOutput();
+        boolean text = format == ReportFormat.TEXT;
+        if (text && output == null && !config.isCountDuplicates() && !config.isPrintDuplicates()) {
+            return scan.run(group -> {
+            });
+        }
+
+        boolean countOnly = text && !config.isPrintDuplicates();
+        if (output == null) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            return writeReport(scan, ReportWriter.create(format, out, countOnly));
+        }
+        try (ReportWriter writer = ReportWriter.create(format, Files.newBufferedWriter(output), countOnly)) {
+            return writeReport(scan, writer);
+        }
+    }
+
+    private static ScanResult writeReport(Scan scan, ReportWriter writer) throws IOException {
+        ScanResult result = scan.run(group ->
+                writer.writeGroup(group.getType(), group.getKey(), group.getSize(), group.getPaths()));
+        writer.finish();
+        return result;
+    }
+
+    /**
+     * Indexes the folder and serves lookups against it until the process is stopped.
+     *
+     * @param finder The finder to index with.
+     * @param config The parsed command line.
+     * @throws IOException If an I/O error occurs during the scan, or the port cannot be bound.
+     */
+    private static void serve(DuplicateFinder finder, CommandLineConfig config) throws IOException {
+        System.out.println("Indexing " + config.getFolderPath() + "...");
+        LookupServer server = finder.serve();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Serving lookups on http://127.0.0.1:" + server.getPort());
+    }
+
+    /**
+     * Indexes the folder and writes it to the reference index file of the scan options.
+     *
+     * @param finder The finder to index with.
+     * @param config The parsed command line.
+     * @throws IOException If an I/O error occurs during the scan or while writing the index.
+     */
+    private static void exportIndex(DuplicateFinder finder, CommandLineConfig config) throws IOException {
+        Path target = config.getScanOptions().getExportIndex();
+        System.out.println("Indexing " + config.getFolderPath() + "...");
+        long entries = finder.exportIndex(target);
+        System.out.println("Wrote " + new DecimalFormat("#,##0").format(entries) + " files to reference index " + target);
+    }
+
+    /**
+     * Watches the folder, printing an updated summary (and, if printing was requested, the
+     * duplicate groups) after the initial scan and after every batch of changes.
+     *
+     * @param finder The finder to watch with.
+     * @param config The parsed command line.
+     * @throws IOException If an I/O error occurs while registering or scanning the folder.
+     */
+    private static void watch(DuplicateFinder finder, CommandLineConfig config) throws IOException {
+        System.out.println("Watching " + config.getFolderPath() + " for changes...");
+        DecimalFormat df = new DecimalFormat("#,##0");
+        finder.watch(current -> {
+            int groups = 0;
+            long duplicates = 0;
+            for (List<Path> paths : current.getDuplicateGroups().values()) {
+                groups++;
+                duplicates += paths.size() - 1;
+                if (config.isPrintDuplicates()) {
+                    System.out.println(paths);
+                }
+            }
+            System.out.printf("%s files, %s duplicate files in %s groups, %s files hashed so far%n",
+                    df.format(current.getFileCount()), df.format(duplicates), df.format(groups),
+                    df.format(current.getHashedFileCount()));
+        });
+    }
+
+    /**
+     * A run that hands its groups to a listener: a scan of the folder, or a merge of shards.
+     */
+    @FunctionalInterface
+    private interface Scan {
+        ScanResult run(DuplicateGroupListener listener) throws IOException;
+    }
+}
@@ -0,0 +1,689 @@
+package io.muzoo.ssc;
+
+import io.muzoo.ssc.algos.ChannelHasher;
+import io.muzoo.ssc.pipeline.WalkFilter;
+import io.muzoo.ssc.report.ReportFormat;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The ScanOptions class holds the tuning options of a duplicate scan that go beyond
+ * the folder, the algorithm and the output flags. Every option has a sensible default,
+ * so a freshly constructed ScanOptions describes the standard scan.
+ *
+ * Options:
+ * - sampleSize: Size in bytes of each block hashed by the partial-content stage.
+ *   A value of 0 disables the stage.
+ * - sampleMiddle: Whether the partial-content stage also hashes a block from the middle of the file.
+ * - sampleBlocks: Number of evenly spaced blocks of sampleSize bytes hashed by the block-sample stage,
+ *   which splits groups of large files after the partial-content stage. 0 (the default) disables the stage.
+ * - threads: Number of worker threads hashing files concurrently (1 hashes on the calling thread).
+ * - virtualThreads: Whether the worker threads are virtual threads (JDK 21 and newer).
+ * - walkThreads: Number of threads listing directories concurrently during the walk (1 walks on the calling thread).
+ * - followLinks: Whether the walk follows symbolic links; links to a directory above them are skipped as loops.
+ * - minSize, maxSize: Size bounds in bytes of the files kept by the walk; other files are skipped unread.
+ * - includeGlobs, excludeGlobs: Globs a kept file must match one of (if any are given) and none of.
+ * - excludedDirectories: Names of directories the walk never enters, e.g. `.git` or `node_modules`.
+ * - mappedThreshold: Files of at least this size are hashed through memory-mapped windows
+ *   instead of channel reads.
+ * - readAhead: Number of blocks of a file read asynchronously while the current block is digested;
+ *   0 (the default) reads synchronously. Applies to files that are not memory-mapped.
+ * - confirm: Whether files with matching hashes are compared byte by byte before they are
+ *   reported as duplicates, so a hash collision can never produce a false duplicate.
+ * - cacheFile: File in which digests are kept between scans, so unchanged files are not hashed again.
+ *   `null` (the default) disables the cache.
+ * - duplicateFolders: Whether directories with identical content are detected and reported as folder groups.
+ * - prefilterFalsePositiveRate: The false-positive rate of the Bloom filters that keep files of a unique
+ *   size out of the size table; 0 disables the prefilter. Defaults to 1%.
+ * - prefilterMemory: The most memory in bytes the prefilter may take; with less than its rate needs,
+ *   more files of a unique size get into the size table. Defaults to 64 MiB.
+ * - memoryBudget: Heap in bytes the grouping of a scan may use; once it is used up, records are spilled
+ *   to sorted run files and merged back. 0 (the default) groups everything in memory.
+ * - spillDirectory: Directory for the run files of a memory-bounded scan; `null` (the default) uses java.io.tmpdir.
+ * - watch: Whether the scan keeps running after the initial scan and updates the duplicates on file changes.
+ * - reportFormat: The format of the duplicate report (text, NDJSON, CSV or JSON).
+ * - reportOutput: File the duplicate report is written to; `null` (the default) writes it to standard output.
+ * - watchDebounce: How long, in milliseconds, the tree must be quiet before a batch of changes is applied.
+ * - daemon: Whether the scan indexes the content of the folder and then serves lookups against it.
+ * - daemonPort: The loopback port the lookups are served on; 0 picks a free port.
+ * - exportIndex: File the content of the folder is written to as a reference index, instead of
+ *   being reported; `null` (the default) scans for duplicates.
+ * - referenceIndex: Reference index the files of the folder are checked against; only files already
+ *   in the reference are reported. `null` (the default) scans for duplicates within the folder.
+ * - shardIndex, shardCount: The shard of the file sizes the walk keeps; files of one size are always in the
+ *   same shard, so each shard can be scanned by its own process. A count of 1 (the default) keeps every file.
+ * - mergeIndexes: Reference indexes exported by the shards of a scan, merged into its duplicate groups
+ *   without reading any file; empty (the default) scans the folder.
+ *
+ * Example Usage:
+ * ScanOptions options = new ScanOptions()
+ *         .setSampleSize(16 * 1024)
+ *         .setSampleMiddle(true)
+ *         .setThreads(8);
+ * FileVisitorService visitor = new FileVisitorService(algo, options);
+ */
+public class ScanOptions {
+    public static final int DEFAULT_SAMPLE_SIZE = 4096;
+    public static final long DEFAULT_WATCH_DEBOUNCE = 500;
+    public static final int DEFAULT_DAEMON_PORT = 8377;
+    public static final double DEFAULT_PREFILTER_FALSE_POSITIVE_RATE = 0.01;
+    public static final long DEFAULT_PREFILTER_MEMORY = 64L * 1024 * 1024;
+
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+    private boolean sampleMiddle;
+    private int sampleBlocks;
+    private int threads = 1;
+    private boolean virtualThreads;
+    private int walkThreads = 1;
+    private boolean followLinks;
+    private long minSize;
+    private long maxSize = Long.MAX_VALUE;
+    private List<String> includeGlobs = List.of();
+    private List<String> excludeGlobs = List.of();
+    private Set<String> excludedDirectories = Set.of();
+    private long mappedThreshold = ChannelHasher.DEFAULT_MAPPED_THRESHOLD;
+    private int readAhead;
+    private boolean confirm;
+    private Path cacheFile;
+    private boolean duplicateFolders;
+    private double prefilterFalsePositiveRate = DEFAULT_PREFILTER_FALSE_POSITIVE_RATE;
+    private long prefilterMemory = DEFAULT_PREFILTER_MEMORY;
+    private long memoryBudget;
+    private Path spillDirectory;
+    private boolean watch;
+    private long watchDebounce = DEFAULT_WATCH_DEBOUNCE;
+    private boolean daemon;
+    private int daemonPort = DEFAULT_DAEMON_PORT;
+    private Path exportIndex;
+    private Path referenceIndex;
+    private int shardIndex;
+    private int shardCount = 1;
+    private List<Path> mergeIndexes = List.of();
+    private ReportFormat reportFormat = ReportFormat.TEXT;
+    private Path reportOutput;
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Sets the size of each block hashed by the partial-content stage.
+     *
+     * @param sampleSize The block size in bytes, or 0 to disable the partial-content stage.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the sample size is negative.
+     */
+    public ScanOptions setSampleSize(int sampleSize) {
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("Sample size cannot be negative: " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+        return this;
+    }
+
+    public boolean isSampleMiddle() {
+        return sampleMiddle;
+    }
+
+    /**
+     * Sets whether the partial-content stage also hashes a block from the middle of the file.
+     *
+     * @param sampleMiddle `true` to hash the first, middle and last block, `false` for first and last only.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setSampleMiddle(boolean sampleMiddle) {
+        this.sampleMiddle = sampleMiddle;
+        return this;
+    }
+
+    public int getSampleBlocks() {
+        return sampleBlocks;
+    }
+
+    /**
+     * Sets the number of evenly spaced blocks the block-sample stage hashes from every file
+     * that is larger than all of them together, before any file is read in full.
+     *
+     * @param sampleBlocks The number of blocks, or 0 to disable the block-sample stage.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the number of blocks is negative or 1.
+     */
+    public ScanOptions setSampleBlocks(int sampleBlocks) {
+        if (sampleBlocks < 0 || sampleBlocks == 1) {
+            throw new IllegalArgumentException("Sample blocks must be 0 or at least 2: " + sampleBlocks);
+        }
+        this.sampleBlocks = sampleBlocks;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of worker threads that hash files concurrently.
+     *
+     * @param threads The number of worker threads; 1 hashes every file on the calling thread.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the number of threads is not positive.
+     */
+    public ScanOptions setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Sets whether the worker threads are virtual threads. Virtual threads need JDK 21 or newer;
+     * on older JDKs platform threads are used instead.
+     *
+     * @param virtualThreads `true` to hash on virtual threads, `false` for platform threads.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public int getWalkThreads() {
+        return walkThreads;
+    }
+
+    /**
+     * Sets the number of threads that list directories concurrently during the walk. On
+     * filesystems with a high latency per call, such as network shares, listing directories in
+     * parallel can shorten the walk far more than hashing threads shorten the rest of the scan.
+     * The results do not depend on the number of threads.
+     *
+     * @param walkThreads The number of walk threads; 1 walks the tree on the calling thread.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the number of threads is not positive.
+     */
+    public ScanOptions setWalkThreads(int walkThreads) {
+        if (walkThreads <= 0) {
+            throw new IllegalArgumentException("Number of walk threads must be positive: " + walkThreads);
+        }
+        this.walkThreads = walkThreads;
+        return this;
+    }
+
+    public boolean isFollowLinks() {
+        return followLinks;
+    }
+
+    /**
+     * Sets whether the walk follows symbolic links. A link to a directory above it would make the
+     * walk loop forever, so it is reported and skipped instead. Paths reaching the same file through
+     * links share its file key and are reported like hardlinks, never as duplicates of each other.
+     *
+     * @param followLinks `true` to follow links, `false` to visit every link as a file of its own.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setFollowLinks(boolean followLinks) {
+        this.followLinks = followLinks;
+        return this;
+    }
+
+    public long getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Sets the smallest size of the files kept by the walk. Smaller files are skipped without
+     * being read, e.g. 1 skips empty lock and marker files.
+     *
+     * @param minSize The minimum size in bytes; 0 keeps every file.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public ScanOptions setMinSize(long minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Minimum size cannot be negative: " + minSize);
+        }
+        this.minSize = minSize;
+        return this;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the largest size of the files kept by the walk. Larger files are skipped without being read.
+     *
+     * @param maxSize The maximum size in bytes; Long.MAX_VALUE keeps every file.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public ScanOptions setMaxSize(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Maximum size cannot be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public List<String> getIncludeGlobs() {
+        return includeGlobs;
+    }
+
+    /**
+     * Sets the globs of which a file must match at least one to be kept by the walk. A glob with
+     * a '/' is matched against the path relative to the scanned folder, any other glob against the
+     * file name.
+     *
+     * @param includeGlobs The globs, e.g. `*.jpg`; an empty list keeps every file.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If a glob is invalid.
+     */
+    public ScanOptions setIncludeGlobs(List<String> includeGlobs) {
+        this.includeGlobs = validateGlobs(includeGlobs);
+        return this;
+    }
+
+    public List<String> getExcludeGlobs() {
+        return excludeGlobs;
+    }
+
+    /**
+     * Sets the globs of which a file must match none to be kept by the walk. Globs are matched
+     * like the include globs.
+     *
+     * @param excludeGlobs The globs, e.g. `*.tmp`; an empty list excludes no file.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If a glob is invalid.
+     */
+    public ScanOptions setExcludeGlobs(List<String> excludeGlobs) {
+        this.excludeGlobs = validateGlobs(excludeGlobs);
+        return this;
+    }
+
+    public Set<String> getExcludedDirectories() {
+        return excludedDirectories;
+    }
+
+    /**
+     * Sets the names of the directories the walk never enters. Their subtrees are not listed at all.
+     *
+     * @param excludedDirectories The directory names, e.g. `.git` and `node_modules`.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setExcludedDirectories(Set<String> excludedDirectories) {
+        this.excludedDirectories = Set.copyOf(excludedDirectories);
+        return this;
+    }
+
+    /**
+     * Creates the WalkFilter described by the size bounds, globs and excluded directories.
+     *
+     * @param root The root of the walk.
+     * @return The filter of the walk.
+     * @throws IllegalArgumentException If the minimum size is larger than the maximum size.
+     */
+    public WalkFilter createWalkFilter(Path root) {
+        return new WalkFilter(root, minSize, maxSize, includeGlobs, excludeGlobs, excludedDirectories,
+                shardIndex, shardCount);
+    }
+
+    public long getMappedThreshold() {
+        return mappedThreshold;
+    }
+
+    /**
+     * Sets the file size from which files are hashed through memory-mapped windows
+     * instead of channel reads.
+     *
+     * @param mappedThreshold The threshold in bytes.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the threshold is negative.
+     */
+    public ScanOptions setMappedThreshold(long mappedThreshold) {
+        if (mappedThreshold < 0) {
+            throw new IllegalArgumentException("Mapped threshold cannot be negative: " + mappedThreshold);
+        }
+        this.mappedThreshold = mappedThreshold;
+        return this;
+    }
+
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Sets how many blocks of a file are read asynchronously while the current block is digested,
+     * so reading and hashing a large file overlap.
+     *
+     * @param readAhead The read-ahead depth in blocks; 0 reads synchronously.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the depth is negative.
+     */
+    public ScanOptions setReadAhead(int readAhead) {
+        if (readAhead < 0) {
+            throw new IllegalArgumentException("Read-ahead depth cannot be negative: " + readAhead);
+        }
+        this.readAhead = readAhead;
+        return this;
+    }
+
+    public boolean isConfirm() {
+        return confirm;
+    }
+
+    /**
+     * Sets whether files with matching hashes are compared byte by byte before they are
+     * reported as duplicates.
+     *
+     * @param confirm `true` to confirm every hash match by comparing the file contents.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setConfirm(boolean confirm) {
+        this.confirm = confirm;
+        return this;
+    }
+
+    public Path getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Sets the file in which digests are kept between scans. A file whose size, modification time
+     * and file key are unchanged since the previous scan reuses its cached digest instead of being read.
+     *
+     * @param cacheFile The cache file, or `null` to scan without a cache.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setCacheFile(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        return this;
+    }
+
+    public boolean isDuplicateFolders() {
+        return duplicateFolders;
+    }
+
+    /**
+     * Sets whether directories with identical content are detected. Identical directories are
+     * reported as one folder group instead of one file group per file they contain.
+     *
+     * @param duplicateFolders `true` to detect duplicate folders, `false` to report files only.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setDuplicateFolders(boolean duplicateFolders) {
+        this.duplicateFolders = duplicateFolders;
+        return this;
+    }
+
+    public double getPrefilterFalsePositiveRate() {
+        return prefilterFalsePositiveRate;
+    }
+
+    /**
+     * Sets the false-positive rate of the prefilter, i.e. about the share of the files of a unique
+     * size that still get a group in the size table.
+     *
+     * @param prefilterFalsePositiveRate The rate, below 1, or 0 to put every file in the size table.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the rate is negative or not below 1.
+     */
+    public ScanOptions setPrefilterFalsePositiveRate(double prefilterFalsePositiveRate) {
+        if (!(prefilterFalsePositiveRate >= 0 && prefilterFalsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False-positive rate must be at least 0 and below 1: "
+                    + prefilterFalsePositiveRate);
+        }
+        this.prefilterFalsePositiveRate = prefilterFalsePositiveRate;
+        return this;
+    }
+
+    public long getPrefilterMemory() {
+        return prefilterMemory;
+    }
+
+    /**
+     * Sets the most memory the prefilter may take; a tree too large for it still scans correctly,
+     * with a higher false-positive rate.
+     *
+     * @param prefilterMemory The memory in bytes.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the memory is less than 16 bytes.
+     */
+    public ScanOptions setPrefilterMemory(long prefilterMemory) {
+        if (prefilterMemory < 16) {
+            throw new IllegalArgumentException("Prefilter memory must be at least 16 bytes: " + prefilterMemory);
+        }
+        this.prefilterMemory = prefilterMemory;
+        return this;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the heap the grouping of a scan may use. With a budget, files are grouped by sorting
+     * (size, digest, file id) records in runs of at most this size on disk and merging them, so the
+     * memory of the scan no longer grows with the number of files. Byte comparison (bbb), duplicate
+     * folders and the hash cache are not available in this mode.
+     *
+     * @param memoryBudget The budget in bytes, or 0 to group every file in memory.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the budget is negative.
+     */
+    public ScanOptions setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("Memory budget cannot be negative: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Sets the directory in which a memory-bounded scan writes its run files.
+     *
+     * @param spillDirectory The directory, or `null` to use java.io.tmpdir.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Sets whether the scan keeps watching the folder after the initial scan, updating the
+     * duplicates as files are created, modified and deleted.
+     *
+     * @param watch `true` to keep watching, `false` for a single scan.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setWatch(boolean watch) {
+        this.watch = watch;
+        return this;
+    }
+
+    public long getWatchDebounce() {
+        return watchDebounce;
+    }
+
+    /**
+     * Sets how long the watched tree must be quiet before a batch of changes is applied.
+     *
+     * @param watchDebounce The debounce period in milliseconds.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the debounce period is negative.
+     */
+    public ScanOptions setWatchDebounce(long watchDebounce) {
+        if (watchDebounce < 0) {
+            throw new IllegalArgumentException("Debounce period cannot be negative: " + watchDebounce);
+        }
+        this.watchDebounce = watchDebounce;
+        return this;
+    }
+
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    /**
+     * Sets whether the folder is indexed by content and then served to lookups, instead of
+     * being reported once.
+     *
+     * @param daemon `true` to serve lookups, `false` for a single scan.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setDaemon(boolean daemon) {
+        this.daemon = daemon;
+        return this;
+    }
+
+    public int getDaemonPort() {
+        return daemonPort;
+    }
+
+    /**
+     * Sets the loopback port lookups are served on in daemon mode.
+     *
+     * @param daemonPort The port, or 0 to pick a free port.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the port is outside 0 to 65535.
+     */
+    public ScanOptions setDaemonPort(int daemonPort) {
+        if (daemonPort < 0 || daemonPort > 65535) {
+            throw new IllegalArgumentException("Port must be between 0 and 65535: " + daemonPort);
+        }
+        this.daemonPort = daemonPort;
+        return this;
+    }
+
+    public Path getExportIndex() {
+        return exportIndex;
+    }
+
+    /**
+     * Sets the file the content of the folder is exported to as a reference index.
+     *
+     * @param exportIndex The index file, or `null` for a duplicate scan.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setExportIndex(Path exportIndex) {
+        this.exportIndex = exportIndex;
+        return this;
+    }
+
+    public Path getReferenceIndex() {
+        return referenceIndex;
+    }
+
+    /**
+     * Sets the reference index the files of the folder are checked against. Only the files
+     * whose size and digest are in the reference are reported, each with its reference copies.
+     *
+     * @param referenceIndex The index file, or `null` for a duplicate scan within the folder.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setReferenceIndex(Path referenceIndex) {
+        this.referenceIndex = referenceIndex;
+        return this;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Sets the shard of the file sizes the walk keeps. Every file size belongs to exactly one of
+     * the shards, so scanning each shard separately finds every group of duplicates once.
+     *
+     * @param shardIndex The shard to keep, from 0 to the shard count - 1.
+     * @param shardCount The number of shards, or 1 to keep every file.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the count is not positive or the index is not below it.
+     */
+    public ScanOptions setShard(int shardIndex, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Shard must be between 0 and " + (shardCount - 1) + ": " + shardIndex);
+        }
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        return this;
+    }
+
+    public List<Path> getMergeIndexes() {
+        return mergeIndexes;
+    }
+
+    /**
+     * Sets the partial indexes, exported by the shards of a scan, that are merged into the
+     * duplicate groups of the whole scan instead of scanning a folder.
+     *
+     * @param mergeIndexes The reference index files, or an empty list to scan the folder.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setMergeIndexes(List<Path> mergeIndexes) {
+        this.mergeIndexes = List.copyOf(mergeIndexes);
+        return this;
+    }
+
+    private static List<String> validateGlobs(List<String> globs) {
+        for (String glob : globs) {
+            FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        }
+        return List.copyOf(globs);
+    }
+
+    public ReportFormat getReportFormat() {
+        return reportFormat;
+    }
+
+    /**
+     * Sets the format of the duplicate report.
+     *
+     * @param reportFormat The report format.
+     * @return This ScanOptions, for chaining.
+     * @throws IllegalArgumentException If the format is null.
+     */
+    public ScanOptions setReportFormat(ReportFormat reportFormat) {
+        if (reportFormat == null) {
+            throw new IllegalArgumentException("Report format cannot be null");
+        }
+        this.reportFormat = reportFormat;
+        return this;
+    }
+
+    public Path getReportOutput() {
+        return reportOutput;
+    }
+
+    /**
+     * Sets the file the duplicate report is written to.
+     *
+     * @param reportOutput The report file, or `null` to write the report to standard output.
+     * @return This ScanOptions, for chaining.
+     */
+    public ScanOptions setReportOutput(Path reportOutput) {
+        this.reportOutput = reportOutput;
+        return this;
+    }
+}
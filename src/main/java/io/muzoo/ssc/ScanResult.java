@@ -0,0 +1,86 @@
+package io.muzoo.ssc;
+
+import io.muzoo.ssc.report.GroupType;
+import io.muzoo.ssc.stats.FileStatistics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The ScanResult class is the outcome of a single duplicate scan run through DuplicateFinder:
+ * the statistics of the scan, how many groups of each type it found and, if they were kept,
+ * the groups themselves.
+ *
+ * Features:
+ * - Groups are listed in report order: folder groups, then file groups, then hardlink groups.
+ * - A scan that handed its groups to a listener or subscriber keeps none; the counts are
+ *   available either way.
+ *
+ * Example Usage:
+ * ScanResult result = new DuplicateFinder("/path/to/folder", "md5").scan();
+ * for (DuplicateGroup group : result.getGroups(GroupType.FILE)) {
+ *     System.out.println(group.getPaths());
+ * }
+ * System.out.println(result.getStatistics().getReclaimableSize() + " bytes reclaimable");
+ */
+public class ScanResult {
+    private final FileStatistics statistics;
+    private final List<DuplicateGroup> groups;
+    private final long[] groupCounts;
+    private final long[] memberCounts;
+    private final long elapsedMillis;
+
+    /**
+     * Constructs a ScanResult.
+     *
+     * @param statistics    The statistics of the scan.
+     * @param groups        The groups of the scan, or an empty list if they were not kept.
+     * @param groupCounts   The number of groups per GroupType, indexed by ordinal.
+     * @param memberCounts  The number of members per GroupType, indexed by ordinal.
+     * @param elapsedMillis The duration of the scan in milliseconds.
+     */
+    ScanResult(FileStatistics statistics, List<DuplicateGroup> groups, long[] groupCounts, long[] memberCounts,
+               long elapsedMillis) {
+        this.statistics = statistics;
+        this.groups = Collections.unmodifiableList(groups);
+        this.groupCounts = groupCounts;
+        this.memberCounts = memberCounts;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public FileStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns every group of the scan in report order.
+     *
+     * @return The groups, or an empty list if the scan handed them to a listener instead.
+     */
+    public List<DuplicateGroup> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Returns the groups of one type in report order.
+     *
+     * @param type The type of the groups.
+     * @return The groups of that type, or an empty list if the scan handed them to a listener instead.
+     */
+    public List<DuplicateGroup> getGroups(GroupType type) {
+        return groups.stream().filter(group -> group.getType() == type).collect(Collectors.toList());
+    }
+
+    public long getGroupCount(GroupType type) {
+        return groupCounts[type.ordinal()];
+    }
+
+    public long getMemberCount(GroupType type) {
+        return memberCounts[type.ordinal()];
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
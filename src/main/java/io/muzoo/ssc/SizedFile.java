@@ -0,0 +1,36 @@
+package io.muzoo.ssc;
+
+import java.nio.file.Path;
+
+/**
+ * The SizedFile class pairs a file with the size seen for it during the directory walk.
+ * It is the unit of work handed to the worker pool by the hashing stages of FileVisitorService.
+ */
+class SizedFile {
+    private final Path path;
+    private final long size;
+
+    /**
+     * Constructs a SizedFile.
+     *
+     * @param path The path of the file.
+     * @param size The size of the file, in bytes.
+     */
+    SizedFile(Path path, long size) {
+        this.path = path;
+        this.size = size;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -0,0 +1,473 @@
+package io.muzoo.ssc;
+
+import io.muzoo.ssc.algos.Algorithms;
+import io.muzoo.ssc.algos.ContentComparator;
+import io.muzoo.ssc.algos.PartialContentHasher;
+import io.muzoo.ssc.pipeline.DiskPathStore;
+import io.muzoo.ssc.pipeline.ExternalSorter;
+import io.muzoo.ssc.pipeline.FileKeys;
+import io.muzoo.ssc.pipeline.ParallelWalker;
+import io.muzoo.ssc.pipeline.WalkFilter;
+import io.muzoo.ssc.pipeline.WorkerPool;
+import io.muzoo.ssc.stats.FileStatistics;
+import io.muzoo.ssc.stats.StageStatistics;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SpilledScan class runs the duplicate search of FileVisitorService within a fixed memory
+ * budget, for trees with more files than fit on the heap. It runs the same stages, but instead
+ * of grouping files in memory every stage writes (size, digest, file id) records to an
+ * ExternalSorter, which spills sorted runs to a temp directory and merges them back. Each stage
+ * then reads the records of the previous stage in sorted order, so every group is seen as a run
+ * of neighbouring records and no group has to be held to decide which files go on.
+ *
+ * Memory: paths live in a DiskPathStore and the duplicate and hardlink groups in GroupFiles, so
+ * the heap holds no per-file data at all. The budget is shared by the sorters that are in use
+ * at the same time; the only other memory is a batch of files being hashed and, with --confirm,
+ * the digest group being compared.
+ *
+ * Differences from the in-memory scan:
+ * - Groups come out ordered by size and digest instead of by first occurrence in the walk.
+ * - The hash cache is not used, since it keeps an entry per file on the heap.
+ * - Hardlinks are found among neighbouring records of the same size and file-key hash; a size
+ *   group made only of links to one file is dropped by the first hashing stage instead of the
+ *   size stage.
+ * - Byte comparison (bbb) and duplicate folders need whole groups in memory and are not supported.
+ *
+ * Example Usage:
+ * try (SpilledScan scan = new SpilledScan(algo, options, workerPool, new BBBAlgo(), statistics)) {
+ *     scan.scan(root);
+ *     scan.forEachDuplicateGroup((size, key, fileIds) -> System.out.println(key));
+ * }
+ */
+class SpilledScan implements Closeable {
+    private static final int HASH_BATCH_SIZE = 4096;
+    private static final int SORTERS_IN_USE = 3;
+
+    private final Algorithms hashStrategy;
+    private final ScanOptions options;
+    private final WorkerPool workerPool;
+    private final ContentComparator confirmer;
+    private final FileStatistics statistics;
+    private final long sorterBudget;
+
+    private Path tempDirectory;
+    private DiskPathStore paths;
+    private GroupFile duplicateGroups;
+    private GroupFile hardlinkGroups;
+    private long spilledBytes;
+
+    /**
+     * Constructs a SpilledScan.
+     *
+     * @param hashStrategy The hashing algorithm of the full-hash stage.
+     * @param options      The options of the scan, including the memory budget and spill directory.
+     * @param workerPool   The pool hashing the files.
+     * @param confirmer    The comparator confirming digest matches when --confirm is set.
+     * @param statistics   The statistics updated by the scan.
+     */
+    SpilledScan(Algorithms hashStrategy, ScanOptions options, WorkerPool workerPool,
+                ContentComparator confirmer, FileStatistics statistics) {
+        this.hashStrategy = hashStrategy;
+        this.options = options;
+        this.workerPool = workerPool;
+        this.confirmer = confirmer;
+        this.statistics = statistics;
+        this.sorterBudget = Math.max(1, options.getMemoryBudget() / SORTERS_IN_USE);
+    }
+
+    /**
+     * Walks the tree and runs every stage, leaving the duplicate and hardlink groups on disk.
+     *
+     * @param root The directory to scan.
+     * @throws IOException If an I/O error occurs while walking the tree or spilling records.
+     */
+    void scan(Path root) throws IOException {
+        Path spillDirectory = options.getSpillDirectory() != null
+                ? options.getSpillDirectory()
+                : Path.of(System.getProperty("java.io.tmpdir"));
+        tempDirectory = Files.createTempDirectory(spillDirectory, "ssc-spill-");
+        paths = new DiskPathStore(tempDirectory);
+        duplicateGroups = new GroupFile(tempDirectory.resolve("groups.bin"));
+        hardlinkGroups = new GroupFile(tempDirectory.resolve("hardlinks.bin"));
+
+        StageStatistics sizeStage = statistics.getStage(FileVisitorService.SIZE_STAGE);
+        PartialContentHasher sampler = options.getSampleSize() == 0
+                ? null
+                : new PartialContentHasher(options.getSampleSize(), options.isSampleMiddle());
+
+        try (ExternalSorter bySize = new ExternalSorter(Long.BYTES, sorterBudget, tempDirectory);
+             HashBatch sampled = sampler == null ? null : sampleBatch(sampler);
+             HashBatch hashed = fullHashBatch()) {
+            walk(root, bySize);
+            eliminateUniqueSizes(bySize, sizeStage, sampled, hashed, sampler);
+            spilledBytes += bySize.getSpilledBytes();
+            if (sampled != null) {
+                eliminateUniqueSamples(sampled, hashed);
+            }
+            groupByDigest(hashed);
+        } finally {
+            statistics.incrementSpilledBytes(spilledBytes);
+        }
+    }
+
+    void forEachDuplicateGroup(GroupFile.GroupVisitor visitor) throws IOException {
+        if (duplicateGroups != null) {
+            duplicateGroups.forEachGroup(visitor);
+        }
+    }
+
+    void forEachHardlinkGroup(GroupFile.GroupVisitor visitor) throws IOException {
+        if (hardlinkGroups != null) {
+            hardlinkGroups.forEachGroup(visitor);
+        }
+    }
+
+    List<Path> toPaths(int[] fileIds) throws IOException {
+        List<Path> result = new ArrayList<>(fileIds.length);
+        for (int fileId : fileIds) {
+            result.add(paths.get(fileId));
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the paths, the groups and the temp directory of the scan.
+     *
+     * @throws IOException If a file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (tempDirectory == null) {
+            return;
+        }
+        paths.close();
+        duplicateGroups.close();
+        hardlinkGroups.close();
+        Files.deleteIfExists(tempDirectory);
+        tempDirectory = null;
+    }
+
+    /**
+     * Walks the tree, storing every path on disk and sorting every file by its size and
+     * the hash of its file key. Entries that cannot be read below the root are reported and skipped;
+     * files and directories rejected by the WalkFilter are counted as skipped.
+     */
+    private void walk(Path root, ExternalSorter bySize) throws IOException {
+        WalkFilter filter = options.createWalkFilter(root);
+        ParallelWalker walker = new ParallelWalker(options.getWalkThreads(), options.isFollowLinks(), filter::acceptsDirectory);
+        walker.walk(root, new SimpleFileVisitor<>() {
+            private int depth;
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!filter.acceptsDirectory(dir)) {
+                    statistics.incrementSkippedFolderCount();
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                statistics.incrementFolderCount();
+                depth++;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                depth--;
+                if (exc != null) {
+                    System.err.println("Error processing file: " + dir + " - " + exc.getMessage());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (depth == 0) {
+                    throw exc;
+                }
+                System.err.println("Error processing file: " + file + " - " + exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!filter.acceptsFile(file, attrs)) {
+                    statistics.incrementSkippedFileCount();
+                    return FileVisitResult.CONTINUE;
+                }
+                statistics.incrementFileCount();
+                statistics.incrementTotalFileSize(attrs.size());
+                bySize.add(attrs.size(), fileKeyHash(attrs.fileKey()), paths.add(file));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Drops every file with a unique size, collapses hardlinks, and hands the remaining files
+     * to the partial-hash stage, or straight to the full-hash stage when they are no larger
+     * than the sample.
+     */
+    private void eliminateUniqueSizes(ExternalSorter bySize, StageStatistics stage, HashBatch sampled,
+                                      HashBatch hashed, PartialContentHasher sampler) throws IOException {
+        Object linkKey = null;
+        List<Integer> links = new ArrayList<>();
+
+        try (ExternalSorter.Cursor cursor = bySize.sorted()) {
+            while (cursor.next()) {
+                long size = cursor.getSize();
+                int fileId = cursor.getFileId();
+                stage.incrementFilesIn(1);
+                if (!cursor.sameSizeAsPrevious() && !cursor.sameSizeAsNext()) {
+                    stage.incrementEliminated(1, size);
+                    continue;
+                }
+
+                boolean sample = sampler != null && size > sampler.getSampleCoverage();
+                if (linkKey != null && cursor.sameDigestAsPrevious() && linkKey.equals(fileKey(fileId))) {
+                    links.add(fileId);
+                } else {
+                    Object key = !cursor.sameDigestAsPrevious() && cursor.sameDigestAsNext()
+                            && !Arrays.equals(cursor.getDigest(), new byte[Long.BYTES]) ? fileKey(fileId) : null;
+                    if (key != null) {
+                        // The path hashed for the links is only chosen once all of them are known.
+                        linkKey = key;
+                        links.clear();
+                        links.add(fileId);
+                    } else {
+                        (sample ? sampled : hashed).add(size, fileId);
+                    }
+                }
+
+                if (linkKey != null && !cursor.sameDigestAsNext()) {
+                    (sample ? sampled : hashed).add(size, writeHardlinks(size, linkKey, links));
+                    linkKey = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every file whose sample hash is unique within its size and hashes the others in full.
+     */
+    private void eliminateUniqueSamples(HashBatch sampled, HashBatch hashed) throws IOException {
+        StageStatistics stage = statistics.getStage(FileVisitorService.PARTIAL_HASH_STAGE);
+        try (ExternalSorter.Cursor cursor = sampled.sorted()) {
+            while (cursor != null && cursor.next()) {
+                if (!cursor.sameDigestAsPrevious() && !cursor.sameDigestAsNext()) {
+                    stage.incrementEliminated(1, cursor.getSize());
+                } else {
+                    hashed.add(cursor.getSize(), cursor.getFileId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every run of files sharing a size and full digest as a duplicate group, member by
+     * member, or hands it to the confirm stage first when --confirm is set.
+     */
+    private void groupByDigest(HashBatch hashed) throws IOException {
+        StageStatistics stage = statistics.getStage(FileVisitorService.FULL_HASH_STAGE);
+        List<Integer> match = new ArrayList<>();
+
+        try (ExternalSorter.Cursor cursor = hashed.sorted()) {
+            while (cursor != null && cursor.next()) {
+                long size = cursor.getSize();
+                int fileId = cursor.getFileId();
+                boolean first = !cursor.sameDigestAsPrevious();
+                boolean last = !cursor.sameDigestAsNext();
+                if (first && last) {
+                    stage.incrementEliminated(1, size);
+                } else if (options.isConfirm()) {
+                    if (first) {
+                        match.clear();
+                    }
+                    match.add(fileId);
+                    if (last) {
+                        confirmMatch(size, cursor.getDigest(), match.stream().mapToInt(Integer::intValue).toArray());
+                    }
+                } else {
+                    if (first) {
+                        duplicateGroups.startGroup(size, Hex.encodeHexString(cursor.getDigest()));
+                    } else {
+                        statistics.incrementDuplicateFileCount(1);
+                        statistics.incrementReclaimableSize(size);
+                    }
+                    duplicateGroups.addMember(fileId);
+                    if (last) {
+                        duplicateGroups.endGroup();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the files of a digest match byte by byte and writes each class of identical
+     * content as its own group, told apart by its variant.
+     */
+    private void confirmMatch(long size, byte[] digest, int[] fileIds) throws IOException {
+        StageStatistics stage = statistics.getStage(FileVisitorService.CONFIRM_STAGE);
+        stage.incrementFilesIn(fileIds.length);
+        List<int[]> classes = confirmer.partition(toPaths(fileIds), size, stage::incrementBytesRead);
+
+        for (int c = 0; c < classes.size(); c++) {
+            int[] members = Arrays.stream(classes.get(c)).map(position -> fileIds[position]).toArray();
+            if (members.length == 1) {
+                stage.incrementEliminated(1, size);
+                continue;
+            }
+            FileGroup group = new FileGroup(size, digest, classes.size() == 1 ? 0 : c + 1, members);
+            duplicateGroups.startGroup(size, group.getKey());
+            for (int member : members) {
+                duplicateGroups.addMember(member);
+            }
+            duplicateGroups.endGroup();
+            statistics.incrementDuplicateFileCount(members.length - 1);
+            statistics.incrementReclaimableSize((members.length - 1) * size);
+        }
+    }
+
+    /**
+     * Records the paths sharing a file key as a hardlink group, if there are at least two.
+     * When the walk follows symbolic links, paths reaching the same directory entry through
+     * links are one path: only one of them is kept, preferably the one without links.
+     *
+     * @return The path to hash for the physical file.
+     */
+    private int writeHardlinks(long size, Object linkKey, List<Integer> links) throws IOException {
+        if (options.isFollowLinks()) {
+            Map<Path, Integer> byRealPath = new HashMap<>();
+            for (int fileId : links) {
+                Path file = paths.get(fileId);
+                Path realPath = FileKeys.realPath(file);
+                Integer kept = byRealPath.get(realPath);
+                if (kept == null || (!FileKeys.isRealPath(paths.get(kept), realPath) && FileKeys.isRealPath(file, realPath))) {
+                    byRealPath.put(realPath, fileId);
+                }
+            }
+            links.retainAll(byRealPath.values());
+        }
+        if (links.size() < 2) {
+            return links.get(0);
+        }
+        statistics.incrementHardlinkCount(links.size() - 1);
+        hardlinkGroups.startGroup(size, linkKey.toString());
+        for (int fileId : links) {
+            hardlinkGroups.addMember(fileId);
+        }
+        hardlinkGroups.endGroup();
+        return links.get(0);
+    }
+
+    private Object fileKey(int fileId) {
+        try {
+            return Files.readAttributes(paths.get(fileId), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Hashes a file key to 8 bytes, so links to the same file sort next to each other.
+     * Files without a file key hash to zeros and are never treated as links.
+     */
+    private static byte[] fileKeyHash(Object fileKey) {
+        long hash = fileKey == null ? 0 : MurmurHash3.hash128x64(fileKey.toString().getBytes(StandardCharsets.UTF_8))[0];
+        return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+    }
+
+    private HashBatch sampleBatch(PartialContentHasher sampler) {
+        StageStatistics stage = statistics.getStage(FileVisitorService.PARTIAL_HASH_STAGE);
+        return new HashBatch(stage, file -> {
+            byte[] sampleHash = sampler.computeSampleHash(file.getPath(), file.getSize());
+            stage.incrementBytesRead(sampler.sampledBytes(file.getSize()));
+            return sampleHash;
+        });
+    }
+
+    private HashBatch fullHashBatch() {
+        StageStatistics stage = statistics.getStage(FileVisitorService.FULL_HASH_STAGE);
+        return new HashBatch(stage, file -> {
+            byte[] digest = hashStrategy.computeDigest(file.getPath());
+            stage.incrementBytesRead(file.getSize());
+            return digest;
+        });
+    }
+
+    /**
+     * The HashBatch class collects the files handed to a hashing stage, hashes them on the worker
+     * pool a batch at a time and sorts the results by size and digest. The sorter is created with
+     * the first digest, since the digest length is only known then.
+     */
+    private final class HashBatch implements Closeable {
+        private final StageStatistics stage;
+        private final WorkerPool.Task<SizedFile, byte[]> hasher;
+        private final List<SizedFile> files = new ArrayList<>(HASH_BATCH_SIZE);
+        private final int[] fileIds = new int[HASH_BATCH_SIZE];
+        private ExternalSorter sorter;
+
+        private HashBatch(StageStatistics stage, WorkerPool.Task<SizedFile, byte[]> hasher) {
+            this.stage = stage;
+            this.hasher = hasher;
+        }
+
+        void add(long size, int fileId) throws IOException {
+            fileIds[files.size()] = fileId;
+            files.add(new SizedFile(paths.get(fileId), size));
+            if (files.size() == HASH_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Hashes the remaining files and returns the sorted records, or `null` if no file was hashed.
+         */
+        ExternalSorter.Cursor sorted() throws IOException {
+            flush();
+            return sorter == null ? null : sorter.sorted();
+        }
+
+        private void flush() throws IOException {
+            if (files.isEmpty()) {
+                return;
+            }
+            stage.incrementFilesIn(files.size());
+            List<byte[]> digests = workerPool.map(files, hasher);
+            for (int i = 0; i < files.size(); i++) {
+                byte[] digest = digests.get(i);
+                if (digest != null) {
+                    if (sorter == null) {
+                        sorter = new ExternalSorter(digest.length, sorterBudget, tempDirectory);
+                    }
+                    sorter.add(files.get(i).getSize(), digest, fileIds[i]);
+                }
+            }
+            files.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (sorter != null) {
+                spilledBytes += sorter.getSpilledBytes();
+                sorter.close();
+            }
+        }
+    }
+}
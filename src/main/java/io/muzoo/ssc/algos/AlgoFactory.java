@@ -1,5 +1,7 @@
 package io.muzoo.ssc.algos;
 
+import io.muzoo.ssc.ScanOptions;
+
 import java.util.Map;
 import java.util.HashMap;
 
@@ -13,41 +15,79 @@ import java.util.HashMap;
  * - Maintain a mapping between algorithm names and their corresponding classes.
  * - Instantiate the appropriate algorithm class based on the user input.
  * - Handle unsupported algorithm names by throwing meaningful exceptions.
+ * - Apply the scan options that tune an algorithm (e.g., the memory-mapping threshold).
  *
  * Features:
- * - Supports multiple algorithms (e.g., "sha256", "md5", "bbb").
+ * - Supports multiple algorithms (e.g., "sha256", "md5", "bbb", "xxh64", "murmur3").
  * - Easily extensible by adding new algorithm mappings to the `algoMap`.
  *
  * Example Usage:
- * Algorithms algo = AlgoFactory.createAlgo("sha256");
+ * Algorithms algo = AlgoFactory.createHashAlgo("sha256");
  * String hash = algo.computerHash(new File("/path/to/file"));
+ * DetectionAlgorithm any = AlgoFactory.createAlgo("bbb");
  *
  */
 
 public class AlgoFactory {
     // A mapping of algorithm names to their corresponding classes
-    private static final Map<String, Class<? extends Algorithms>> algoMap = new HashMap<>();
+    private static final Map<String, Class<? extends DetectionAlgorithm>> algoMap = new HashMap<>();
 
     // Static initializer block to populate the map with supported algorithms
     static {
         algoMap.put("sha256", SHA256Algo.class);
         algoMap.put("md5", MD5Algo.class);
         algoMap.put("bbb", BBBAlgo.class);
+        algoMap.put("xxh64", XXH64Algo.class);
+        algoMap.put("murmur3", Murmur3Algo.class);
     }
 
 
     /**
-     * Creates an instance of the specified hashing algorithm.
+     * Creates an instance of the specified algorithm.
      *
-     * @param algoName The name of the hashing algorithm (e.g., "sha256", "md5", "bbb").
-     * @return An instance of the corresponding `Algorithms` implementation.
+     * @param algoName The name of the algorithm (e.g., "sha256", "md5", "bbb").
+     * @return An instance of the corresponding algorithm: one of the hashing `Algorithms`, or a
+     *         `ContentComparator` for "bbb".
      * @throws IllegalArgumentException If the specified algorithm is not supported.
      */
-    public static Algorithms createAlgo(String algoName) {
+    public static DetectionAlgorithm createAlgo(String algoName) {
         try {
             return algoMap.get(algoName.toLowerCase()).getDeclaredConstructor().newInstance();
         } catch (Exception e) {
             throw new IllegalArgumentException("Unsupported algorithm: " + algoName, e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates an instance of the specified algorithm, which must compute a hash per file.
+     *
+     * @param algoName The name of the hashing algorithm (e.g., "sha256", "md5").
+     * @return An instance of the corresponding `Algorithms` implementation.
+     * @throws IllegalArgumentException If the specified algorithm is not supported, or compares
+     *                                  files instead of hashing them (e.g., "bbb").
+     */
+    public static Algorithms createHashAlgo(String algoName) {
+        DetectionAlgorithm algo = createAlgo(algoName);
+        if (!(algo instanceof Algorithms)) {
+            throw new IllegalArgumentException(algoName + " compares files with each other and has no hash per file");
+        }
+        return (Algorithms) algo;
+    }
+
+    /**
+     * Creates an instance of the specified hashing algorithm, tuned by the given scan options.
+     *
+     * @param algoName The name of the algorithm (e.g., "sha256", "md5", "bbb").
+     * @param options  The scan options to apply to the algorithm.
+     * @return An instance of the corresponding algorithm.
+     * @throws IllegalArgumentException If the specified algorithm is not supported.
+     */
+    public static DetectionAlgorithm createAlgo(String algoName, ScanOptions options) {
+        DetectionAlgorithm algo = createAlgo(algoName);
+        if (algo instanceof MessageDigestAlgo) {
+            ((MessageDigestAlgo) algo).setMappedThreshold(options.getMappedThreshold());
+            ((MessageDigestAlgo) algo).setReadAhead(options.getReadAhead());
+        }
+        return algo;
+    }
+}
@@ -2,6 +2,8 @@ package io.muzoo.ssc.algos;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 
 /**
@@ -12,6 +14,8 @@ import java.io.IOException;
  *
  * Responsibilities:
  * - Compute a hash for a given file using a specific algorithm.
+ * - Compute the same hash as a compact binary digest, which is what the duplicate
+ *   detection pipeline groups by; hexadecimal strings are only needed for display.
  * - Handle any I/O exceptions that may occur during file processing.
  *
  * Use Cases:
@@ -22,7 +26,7 @@ import java.io.IOException;
  * Algorithms algo = new SHA256Algo();
  * String hash = algo.computerHash(new File("/path/to/file"));
  */
-public interface Algorithms {
+public interface Algorithms extends DetectionAlgorithm {
     /**
      * Computes a hash value for the specified file.
      *
@@ -31,6 +35,33 @@ public interface Algorithms {
      * @throws IOException If an I/O error occurs while reading the file.
      */
     String computerHash(File file) throws IOException;
+
+    /**
+     * Computes the hash of the specified file as a binary digest. Two files have equal
+     * digests exactly when their `computerHash` strings are equal.
+     *
+     * The default implementation encodes the string returned by `computerHash`;
+     * implementations backed by a binary hash override it to skip the string altogether.
+     *
+     * @param file The file for which the digest is to be computed.
+     * @return The digest bytes; all digests of one algorithm should have the same length.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    default byte[] computeDigest(File file) throws IOException {
+        return computerHash(file).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Computes the same digest as `computeDigest(File)` for a path. The pipeline hashes through
+     * this method, so implementations can skip the conversion to a File.
+     *
+     * @param file The file for which the digest is to be computed.
+     * @return The digest bytes.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    default byte[] computeDigest(Path file) throws IOException {
+        return computeDigest(file.toFile());
+    }
 }
 
 
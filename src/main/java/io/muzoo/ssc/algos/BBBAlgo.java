@@ -1,47 +1,372 @@
 package io.muzoo.ssc.algos;
 
-import org.apache.commons.io.FileUtils;
-import java.io.File;
+import io.muzoo.ssc.pipeline.GroupingTable;
+
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
 
 /**
- * The BBBAlgo class implements the Algorithms interface to perform a
- * byte-by-byte comparison of a file's contents. This algorithm determines
- * the consistency and basic characteristics of the file, such as its size.
+ * The BBBAlgo class performs an exact byte-by-byte comparison of a group of files of the
+ * same size. It reads every file of the group in lockstep, block by block, splitting the group
+ * into equivalence classes as soon as their bytes differ.
+ *
+ * Byte-by-byte comparison has no hash per file, since files are only meaningful in relation to
+ * each other, so BBBAlgo is a ContentComparator and not one of the hashing Algorithms.
  *
  * Responsibilities:
- * - Verify that the file exists and is not null.
- * - Compute a unique hash-like string based on the file's length and consistency.
+ * - Split a group of same-size files into classes of identical content without hashing.
+ * - Stop reading a file as soon as it is known to be unique within its group.
  *
  * Features:
- * - Uses Apache Commons IO to perform a content consistency check.
- * - Throws meaningful exceptions for null or non-existent files.
+ * - Reads each file at most once, sequentially, through a FileChannel.
+ * - Keeps at most `maxOpenFiles` channels open; the other files of a larger group are opened
+ *   again for every block, so a group never runs the process out of file descriptors.
+ * - Holds one buffer per distinct block content of a class, not one per file, each no larger
+ *   than the files. A class of more distinct blocks than fit in MAX_HELD_BYTES is split in two
+ *   stages, by a hash of the block and then by content within each hash (see `readAndSplit`).
+ * - Files that differ early drop out early instead of being read in full.
+ * - Files that cannot be read are reported and left out without affecting the rest of the group.
+ *   A file failing to open while channels are held is retried after closing them, so running
+ *   out of descriptors does not drop it.
  *
  * Example Usage:
  * BBBAlgo algo = new BBBAlgo();
- * String hash = algo.computerHash(new File("/path/to/file"));
- * System.out.println("BBB Hash: " + hash);
+ * List<int[]> classes = algo.partition(sameSizeFiles, size, bytes -> {});
+ * classes.forEach(c -> System.out.println("Identical: " + Arrays.toString(c)));
  */
-public class BBBAlgo implements Algorithms {
+public class BBBAlgo implements ContentComparator {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+    private static final long MAX_HELD_BYTES = 16L << 20;
+
+    private final int blockSize;
+    private final int maxOpenFiles;
+
+    /**
+     * Constructs a BBBAlgo that compares files in blocks of the default size.
+     */
+    public BBBAlgo() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructs a BBBAlgo that compares files in blocks of the specified size.
+     *
+     * @param blockSize The number of bytes read from each file per lockstep round.
+     * @throws IllegalArgumentException If the block size is not positive.
+     */
+    public BBBAlgo(int blockSize) {
+        this(blockSize, DEFAULT_MAX_OPEN_FILES);
+    }
+
+    /**
+     * Constructs a BBBAlgo that compares files in blocks of the specified size, keeping at most
+     * the specified number of files open at once.
+     *
+     * @param blockSize    The number of bytes read from each file per lockstep round.
+     * @param maxOpenFiles The number of channels kept open between rounds.
+     * @throws IllegalArgumentException If the block size is not positive, or the number of open files is negative.
+     */
+    public BBBAlgo(int blockSize, int maxOpenFiles) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        if (maxOpenFiles < 0) {
+            throw new IllegalArgumentException("Number of open files must not be negative: " + maxOpenFiles);
+        }
+        this.blockSize = blockSize;
+        this.maxOpenFiles = maxOpenFiles;
+    }
 
     /**
-     * Computes a hash-like string for the specified file. The hash is based on:
-     * - The file's length.
-     * - A consistency check using Apache Commons IO.
+     * Splits the specified files into classes of identical content by reading all of them in
+     * lockstep. A class is only read further while it still holds at least two files.
      *
-     * @param file The file for which the hash is to be computed.
-     * @return A string representing the file's length and consistency status.
-     * @throws IOException If the file is null, does not exist, or cannot be read.
+     * @param files     The files to compare; all of them must have the same size.
+     * @param size      The size shared by every file, in bytes.
+     * @param bytesRead Receives the number of bytes read from disk while comparing.
+     * @return The equivalence classes as positions in `files`, including single-file classes
+     *         for unique files.
      */
     @Override
-    public String computerHash(File file) throws IOException {
-        if (file == null || !file.exists()) {
-            throw new IOException("File does not exist or is null.");
+    public List<int[]> partition(List<Path> files, long size, LongConsumer bytesRead) {
+        OpenChannels channels = new OpenChannels(maxOpenFiles);
+        List<Member> members = new ArrayList<>(files.size());
+        for (int position = 0; position < files.size(); position++) {
+            members.add(new Member(position, files.get(position), channels));
         }
+        Blocks blocks = new Blocks((int) Math.max(1, Math.min(blockSize, size)));
+        int maxHeld = (int) Math.max(2, MAX_HELD_BYTES / blocks.capacity);
+        List<int[]> classes = new ArrayList<>();
 
-        long fileLength = file.length();
-        boolean isConsistent = FileUtils.contentEquals(file, file);
+        try {
+            List<List<Member>> active = new ArrayList<>();
+            active.add(members);
+            long position = 0;
 
-        return fileLength + "-" + isConsistent;
+            while (position < size && !active.isEmpty()) {
+                int length = (int) Math.min(blockSize, size - position);
+                List<List<Member>> next = new ArrayList<>();
+
+                for (List<Member> candidates : active) {
+                    for (List<Member> split : readAndSplit(candidates, position, length, blocks, maxHeld, bytesRead)) {
+                        if (split.size() > 1) {
+                            next.add(split);
+                        } else {
+                            split.get(0).close();
+                            classes.add(new int[]{split.get(0).position});
+                        }
+                    }
+                }
+                active = next;
+                position += length;
+            }
+
+            active.forEach(identical -> classes.add(toPositions(identical)));
+        } finally {
+            members.forEach(Member::close);
+        }
+        return classes;
+    }
+
+    /**
+     * Reads the next block of every file of a class and splits the class by the content of that block.
+     * Files that fail to read are reported, closed and dropped. Only the block of the first file
+     * of every split is kept, in a hash map from block content to split, so a file joins its
+     * split with a single lookup; the buffers are handed back once the class is split.
+     *
+     * At most `maxHeld` blocks are kept. Once that many splits exist, the block of a file that
+     * matches none of them is only hashed, and such files are grouped by the hash and compared
+     * again within each group, reading their block a second time. Files of identical content
+     * are so told apart exactly while the memory of a class of many distinct files stays bounded.
+     *
+     * @param candidates The files of a class that were identical up to the given position.
+     * @param position   The position of the block to read.
+     * @param length     The number of bytes to read from each file.
+     * @param blocks     The buffers to read into.
+     * @param maxHeld    The number of blocks that may be kept for comparison.
+     * @param bytesRead  Receives the number of bytes read.
+     * @return The classes of files that are still identical after the block.
+     */
+    private List<List<Member>> readAndSplit(List<Member> candidates, long position, int length,
+                                            Blocks blocks, int maxHeld, LongConsumer bytesRead) {
+        List<List<Member>> splits = new ArrayList<>();
+        Map<ByteBuffer, Integer> splitOfBlock = new HashMap<>();
+        List<Member> overflow = new ArrayList<>();
+        GroupingTable overflowByHash = null;
+        XXHash64Digest hash = null;
+        ByteBuffer buffer = null;
+
+        try {
+            for (Member member : candidates) {
+                if (buffer == null) {
+                    buffer = blocks.take();
+                }
+                if (!read(member, position, length, buffer, bytesRead)) {
+                    continue;
+                }
+
+                Integer split = splitOfBlock.get(buffer);
+                if (split != null) {
+                    splits.get(split).add(member);
+                } else if (splits.size() < maxHeld) {
+                    splitOfBlock.put(buffer, splits.size());
+                    splits.add(new ArrayList<>(List.of(member)));
+                    buffer = null;
+                } else {
+                    if (overflowByHash == null) {
+                        overflowByHash = new GroupingTable(Long.BYTES, candidates.size() - splits.size());
+                        hash = new XXHash64Digest();
+                    }
+                    hash.update(buffer.array(), 0, buffer.limit());
+                    overflowByHash.add(hash.getValue(), overflow.size());
+                    hash.reset();
+                    overflow.add(member);
+                }
+            }
+        } finally {
+            splitOfBlock.keySet().forEach(blocks::give);
+            if (buffer != null) {
+                blocks.give(buffer);
+            }
+        }
+
+        if (overflowByHash != null) {
+            overflowByHash.forEachGroup((key, indexes) -> {
+                List<Member> sameHash = new ArrayList<>(indexes.length);
+                for (int index : indexes) {
+                    sameHash.add(overflow.get(index));
+                }
+                if (sameHash.size() == 1) {
+                    splits.add(sameHash);
+                } else {
+                    // Files with equal hashes almost always match, so the split keeps about one block.
+                    splits.addAll(readAndSplit(sameHash, position, length, blocks, Integer.MAX_VALUE, bytesRead));
+                }
+            });
+        }
+        return splits;
+    }
+
+    /**
+     * Reads one block of a file into the buffer. A file that fails to read is reported and closed.
+     *
+     * @return `false` if the file could not be read.
+     */
+    private static boolean read(Member member, long position, int length, ByteBuffer buffer, LongConsumer bytesRead) {
+        try {
+            member.readBlock(position, length, buffer);
+            bytesRead.accept(length);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error processing file: " + member.path + " - " + e.getMessage());
+            member.close();
+            return false;
+        }
+    }
+
+    private static int[] toPositions(List<Member> members) {
+        return members.stream().mapToInt(member -> member.position).toArray();
+    }
+
+    /**
+     * A file taking part in a lockstep comparison. Its channel stays open between blocks while
+     * the comparison has room for it, and is opened for every block otherwise.
+     */
+    private static final class Member {
+        private final int position;
+        private final Path path;
+        private final OpenChannels channels;
+        private FileChannel channel;
+
+        private Member(int position, Path path, OpenChannels channels) {
+            this.position = position;
+            this.path = path;
+            this.channels = channels;
+        }
+
+        /**
+         * Reads exactly one block into the buffer, leaving the buffer ready to be compared.
+         *
+         * @throws IOException If an I/O error occurs, or the file ends before the block does.
+         */
+        private void readBlock(long position, int length, ByteBuffer buffer) throws IOException {
+            FileChannel reader = channel != null ? channel : open();
+            try {
+                buffer.clear().limit(length);
+                while (buffer.hasRemaining()) {
+                    if (reader.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("File changed size during comparison");
+                    }
+                }
+                buffer.flip();
+            } finally {
+                if (reader != channel) {
+                    reader.close();
+                }
+            }
+        }
+
+        /**
+         * Opens the file, keeping the channel open if the comparison has room for it. If the
+         * file cannot be opened while other channels are held (e.g., the process is out of file
+         * descriptors), those channels are closed and the file is opened once more.
+         */
+        private FileChannel open() throws IOException {
+            FileChannel opened;
+            try {
+                opened = FileChannel.open(path, StandardOpenOption.READ);
+            } catch (IOException e) {
+                if (!channels.releaseAll()) {
+                    throw e;
+                }
+                opened = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            if (channels.hold(this)) {
+                channel = opened;
+            }
+            return opened;
+        }
+
+        private void close() {
+            if (channel == null) {
+                return;
+            }
+            channels.release(this);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing file: " + path + " - " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * The files of one comparison whose channels are held open, up to a limit.
+     */
+    private static final class OpenChannels {
+        private final List<Member> holders = new ArrayList<>();
+        private int limit;
+
+        private OpenChannels(int limit) {
+            this.limit = limit;
+        }
+
+        private boolean hold(Member member) {
+            if (holders.size() >= limit) {
+                return false;
+            }
+            holders.add(member);
+            return true;
+        }
+
+        private void release(Member member) {
+            holders.remove(member);
+        }
+
+        /**
+         * Closes every held channel and stops holding channels for the rest of the comparison.
+         *
+         * @return `false` if no channel was held.
+         */
+        private boolean releaseAll() {
+            limit = 0;
+            if (holders.isEmpty()) {
+                return false;
+            }
+            new ArrayList<>(holders).forEach(Member::close);
+            return true;
+        }
+    }
+
+    /**
+     * The buffers of one comparison, all of the same capacity, reused from block to block.
+     */
+    private static final class Blocks {
+        private final int capacity;
+        private final Deque<ByteBuffer> spare = new ArrayDeque<>();
+
+        private Blocks(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private ByteBuffer take() {
+            return spare.isEmpty() ? ByteBuffer.allocate(capacity) : spare.pop();
+        }
+
+        private void give(ByteBuffer buffer) {
+            spare.push(buffer);
+        }
     }
-}
\ No newline at end of file
+}
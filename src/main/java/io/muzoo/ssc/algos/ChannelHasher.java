@@ -0,0 +1,244 @@
+package io.muzoo.ssc.algos;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * The ChannelHasher class feeds the content of a file into a MessageDigest through NIO
+ * instead of an InputStream. Files smaller than the mapped threshold are read through a
+ * FileChannel into pooled direct buffers; larger files are mapped into memory in windows
+ * and handed to the digest without an intermediate read.
+ *
+ * With a read-ahead depth, files of more than one buffer that are not mapped are read through
+ * an AsynchronousFileChannel instead: up to that many following blocks are being read while
+ * the current block is digested, so the thread no longer alternates between waiting for the
+ * disk and waiting for the digest.
+ *
+ * Responsibilities:
+ * - Choose between channel reads, read-ahead and memory-mapped windows based on the file size.
+ * - Recycle direct buffers between files and threads, so hashing does not allocate per file.
+ * - Open files with a shared set of options, sparing the per-call option set of `FileChannel.open`.
+ *
+ * Features:
+ * - The cutover threshold between both paths is configurable.
+ * - Both paths are also available directly, so they can be benchmarked against each other.
+ *
+ * Example Usage:
+ * ChannelHasher hasher = new ChannelHasher(256L * 1024 * 1024, 4);
+ * byte[] md5 = hasher.digest(Path.of("/path/to/file"), DigestUtils.getMd5Digest());
+ */
+public class ChannelHasher {
+    public static final long DEFAULT_MAPPED_THRESHOLD = 256L * 1024 * 1024;
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final long MAPPED_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    static final Set<OpenOption> READ_OPTIONS = Set.of(StandardOpenOption.READ);
+
+    private static final Queue<ByteBuffer> BUFFER_POOL = new ConcurrentLinkedQueue<>();
+
+    private final long mappedThreshold;
+    private final int readAhead;
+
+    /**
+     * Constructs a ChannelHasher with the default mapped threshold and without read-ahead.
+     */
+    public ChannelHasher() {
+        this(DEFAULT_MAPPED_THRESHOLD);
+    }
+
+    /**
+     * Constructs a ChannelHasher without read-ahead.
+     *
+     * @param mappedThreshold Files of at least this size, in bytes, are hashed through memory-mapped windows.
+     * @throws IllegalArgumentException If the threshold is negative.
+     */
+    public ChannelHasher(long mappedThreshold) {
+        this(mappedThreshold, 0);
+    }
+
+    /**
+     * Constructs a ChannelHasher.
+     *
+     * @param mappedThreshold Files of at least this size, in bytes, are hashed through memory-mapped windows.
+     * @param readAhead       The number of blocks read ahead of the digest; 0 reads synchronously.
+     * @throws IllegalArgumentException If the threshold or the read-ahead depth is negative.
+     */
+    public ChannelHasher(long mappedThreshold, int readAhead) {
+        if (mappedThreshold < 0) {
+            throw new IllegalArgumentException("Mapped threshold cannot be negative: " + mappedThreshold);
+        }
+        if (readAhead < 0) {
+            throw new IllegalArgumentException("Read-ahead depth cannot be negative: " + readAhead);
+        }
+        this.mappedThreshold = mappedThreshold;
+        this.readAhead = readAhead;
+    }
+
+    public long getMappedThreshold() {
+        return mappedThreshold;
+    }
+
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Feeds the whole content of the file into the digest and returns the result.
+     *
+     * @param file   The file to hash.
+     * @param digest A freshly created or reset digest.
+     * @return The digest of the file content.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    public byte[] digest(Path file, MessageDigest digest) throws IOException {
+        // The kind of channel depends on the size, so read-ahead looks the size up before opening the file once.
+        if (readAhead > 0) {
+            long size = Files.size(file);
+            if (size > BUFFER_SIZE && size < mappedThreshold) {
+                try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, READ_OPTIONS, null)) {
+                    updateWithReadAhead(channel, digest, readAhead);
+                }
+                return digest.digest();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, READ_OPTIONS)) {
+            if (channel.size() >= mappedThreshold) {
+                updateMapped(channel, digest);
+            } else {
+                updateWithChannel(channel, digest);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Feeds the content of the channel into the digest through a pooled direct buffer.
+     *
+     * @param channel The channel to read from its current position to its end.
+     * @param digest  The digest that receives the content.
+     * @throws IOException If an I/O error occurs while reading.
+     */
+    public static void updateWithChannel(FileChannel channel, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Feeds the content of the channel into the digest by mapping it in windows of
+     * {@link #MAPPED_WINDOW_SIZE} bytes. Mapped windows are released by the garbage collector.
+     *
+     * @param channel The channel to map.
+     * @param digest  The digest that receives the content.
+     * @throws IOException If an I/O error occurs while mapping.
+     */
+    public static void updateMapped(FileChannel channel, MessageDigest digest) throws IOException {
+        long size = channel.size();
+        for (long position = 0; position < size; position += MAPPED_WINDOW_SIZE) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAPPED_WINDOW_SIZE, size - position));
+            digest.update(window);
+        }
+    }
+
+    /**
+     * Feeds the content of the channel into the digest, keeping up to `readAhead` reads of the
+     * following blocks in flight while a block is digested. Blocks are digested in file order.
+     * The channel is read up to the size it has when this method starts.
+     *
+     * @param channel   The channel to read from its start.
+     * @param digest    The digest that receives the content.
+     * @param readAhead The number of blocks read ahead of the digest; at least 1.
+     * @throws IOException If an I/O error occurs while reading, or the thread is interrupted.
+     */
+    public static void updateWithReadAhead(AsynchronousFileChannel channel, MessageDigest digest, int readAhead)
+            throws IOException {
+        long size = channel.size();
+        ByteBuffer[] buffers = new ByteBuffer[readAhead + 1];
+        long[] positions = new long[buffers.length];
+        List<Future<Integer>> reads = new ArrayList<>(Collections.nCopies(buffers.length, null));
+
+        long next = 0;
+        for (int slot = 0; slot < buffers.length && next < size; slot++, next += BUFFER_SIZE) {
+            buffers[slot] = acquireBuffer();
+            positions[slot] = next;
+            reads.set(slot, channel.read(buffers[slot], next));
+        }
+
+        for (int slot = 0; reads.get(slot) != null; slot = (slot + 1) % buffers.length) {
+            ByteBuffer buffer = buffers[slot];
+            awaitBlock(channel, buffer, positions[slot], reads.get(slot), size);
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+            if (next < size) {
+                positions[slot] = next;
+                reads.set(slot, channel.read(buffer, next));
+                next += BUFFER_SIZE;
+            } else {
+                reads.set(slot, null);
+            }
+        }
+
+        // Buffers are only returned once no read can still write into them; after a failure they
+        // are left to the garbage collector.
+        for (ByteBuffer buffer : buffers) {
+            if (buffer != null) {
+                releaseBuffer(buffer);
+            }
+        }
+    }
+
+    /**
+     * Waits for the read of a block and completes the block if the read returned fewer bytes.
+     */
+    private static void awaitBlock(AsynchronousFileChannel channel, ByteBuffer buffer, long position,
+                                   Future<Integer> read, long size) throws IOException {
+        try {
+            int count = read.get();
+            while (count >= 0 && buffer.hasRemaining() && position + buffer.position() < size) {
+                count = channel.read(buffer, position + buffer.position()).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading ahead");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private static ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = BUFFER_POOL.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        BUFFER_POOL.offer(buffer);
+    }
+}
@@ -0,0 +1,34 @@
+package io.muzoo.ssc.algos;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * The ContentComparator interface defines the contract for algorithms that find duplicates
+ * by comparing the contents of files with each other instead of computing a hash per file.
+ * Such algorithms are exact: two files end up in the same class only if every byte matches.
+ * They have no hash per file, so they are not Algorithms and cannot be used where a digest is
+ * needed (e.g., watch mode, the content index or a reference index).
+ *
+ * Responsibilities:
+ * - Split a group of same-size files into equivalence classes of identical content.
+ * - Report how many bytes were read while comparing.
+ *
+ * Example Usage:
+ * ContentComparator comparator = new BBBAlgo();
+ * List<int[]> classes = comparator.partition(sameSizeFiles, size, bytes -> {});
+ */
+public interface ContentComparator extends DetectionAlgorithm {
+    /**
+     * Splits the specified files into classes of identical content.
+     * Files that cannot be read are reported and left out of the result.
+     *
+     * @param files     The files to compare; all of them must have the same size.
+     * @param size      The size shared by every file, in bytes.
+     * @param bytesRead Receives the number of bytes read from disk while comparing.
+     * @return The equivalence classes as positions in `files`, including single-file classes
+     *         for unique files. Positions within a class are in ascending order.
+     */
+    List<int[]> partition(List<Path> files, long size, LongConsumer bytesRead);
+}
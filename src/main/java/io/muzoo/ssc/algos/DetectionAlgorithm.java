@@ -0,0 +1,28 @@
+package io.muzoo.ssc.algos;
+
+/**
+ * The DetectionAlgorithm interface is the common type of every algorithm that can tell
+ * duplicate files apart, whichever way it does so. An algorithm either computes a hash per
+ * file (Algorithms), which every mode of the scan can use, or compares a group of files with
+ * each other (ContentComparator), which only a duplicate scan can use.
+ *
+ * Responsibilities:
+ * - Name the algorithm, so that results of different runs are only compared when they match.
+ *
+ * Example Usage:
+ * DetectionAlgorithm algo = AlgoFactory.createAlgo("bbb");
+ * if (algo instanceof Algorithms) {
+ *     byte[] digest = ((Algorithms) algo).computeDigest(path);
+ * }
+ */
+public interface DetectionAlgorithm {
+    /**
+     * Returns the name of the algorithm. Digests are only comparable, e.g. with cached digests
+     * of an earlier scan, when they were computed under the same name.
+     *
+     * @return The name of the algorithm; by default the simple name of the implementing class.
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -1,22 +1,21 @@
 package io.muzoo.ssc.algos;
 
 import org.apache.commons.codec.digest.DigestUtils;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
+
+import java.security.MessageDigest;
 
 /**
  * The MD5Algo class implements the Algorithms interface to compute
- * the MD5 hash of a given file. It uses Apache Commons Codec to perform
- * the hashing operation.
+ * the MD5 hash of a given file. It uses Apache Commons Codec to create
+ * the digest and reads the file through NIO (see MessageDigestAlgo).
  *
  * Responsibilities:
  * - Read the contents of a file.
  * - Generate an MD5 hash from the file's contents.
  *
  * Features:
- * - Ensures efficient hashing using a FileInputStream.
- * - Automatically closes the file input stream using try-with-resources.
+ * - Reads small files through a FileChannel with pooled direct buffers.
+ * - Maps very large files into memory in windows instead of copying them through the heap.
  *
  * Example Usage:
  * MD5Algo algo = new MD5Algo();
@@ -24,19 +23,15 @@ import java.io.IOException;
  * System.out.println("MD5 Hash: " + hash);
  */
 
-public class MD5Algo implements Algorithms {
+public class MD5Algo extends MessageDigestAlgo {
 
     /**
-     * Computes the MD5 hash of the specified file.
+     * Creates the MD5 digest of a worker thread, reused for every file it hashes.
      *
-     * @param file The file for which the hash is to be computed.
-     * @return A string representing the computed MD5 hash.
-     * @throws IOException If an I/O error occurs while reading the file.
+     * @return A new MD5 MessageDigest.
      */
     @Override
-    public String computerHash(File file) throws IOException {
-        try (FileInputStream fis = new FileInputStream(file)) {
-            return DigestUtils.md5Hex(fis);
-        }
+    protected MessageDigest newDigest() {
+        return DigestUtils.getMd5Digest();
     }
 }
@@ -0,0 +1,146 @@
+package io.muzoo.ssc.algos;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * The MessageDigestAlgo class is the common base of the algorithms that hash a file with
+ * a java.security.MessageDigest (e.g., MD5, SHA-256). The file content is fed to the digest
+ * through a ChannelHasher, which reads it with NIO channels or memory-mapped windows.
+ *
+ * Responsibilities:
+ * - Keep one digest per thread, created through {@link #newDigest()} and reset for every file.
+ * - Hash the file through NIO into raw digest bytes, encoded as hexadecimal only on request.
+ * - Hold the size threshold above which files are memory-mapped, and the read-ahead depth.
+ *
+ * A MessageDigest allocates its internal state and a 4 KiB transfer array when it is created,
+ * which used to be most of what hashing a small file allocated. Reusing the digest of the
+ * worker thread leaves the returned digest bytes as the only per-file allocation of the
+ * algorithm itself.
+ *
+ * Example Usage:
+ * MessageDigestAlgo algo = new SHA256Algo();
+ * algo.setMappedThreshold(64L * 1024 * 1024);
+ * String hash = algo.computerHash(new File("/path/to/file"));
+ */
+public abstract class MessageDigestAlgo implements Algorithms {
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(this::newDigest);
+    private ChannelHasher channelHasher = new ChannelHasher();
+
+    /**
+     * Creates the digest of a thread; it is reused for every file the thread hashes.
+     *
+     * @return A new MessageDigest instance.
+     */
+    protected abstract MessageDigest newDigest();
+
+    /**
+     * Sets the size from which files are hashed through memory-mapped windows
+     * instead of channel reads.
+     *
+     * @param mappedThreshold The threshold in bytes.
+     * @throws IllegalArgumentException If the threshold is negative.
+     */
+    public void setMappedThreshold(long mappedThreshold) {
+        this.channelHasher = new ChannelHasher(mappedThreshold, channelHasher.getReadAhead());
+    }
+
+    public long getMappedThreshold() {
+        return channelHasher.getMappedThreshold();
+    }
+
+    /**
+     * Sets how many blocks of a large file are read ahead while the current block is digested.
+     *
+     * @param readAhead The read-ahead depth in blocks; 0 reads synchronously.
+     * @throws IllegalArgumentException If the depth is negative.
+     */
+    public void setReadAhead(int readAhead) {
+        this.channelHasher = new ChannelHasher(channelHasher.getMappedThreshold(), readAhead);
+    }
+
+    public int getReadAhead() {
+        return channelHasher.getReadAhead();
+    }
+
+    /**
+     * Returns the name of the underlying digest algorithm (e.g., "MD5", "SHA-256").
+     *
+     * @return The algorithm name reported by the MessageDigest.
+     */
+    @Override
+    public String getName() {
+        return digests.get().getAlgorithm();
+    }
+
+    /**
+     * Returns the length of the digests computed by this algorithm.
+     *
+     * @return The digest length in bytes.
+     */
+    public int getDigestLength() {
+        return digests.get().getDigestLength();
+    }
+
+    /**
+     * Computes the hash of the specified file.
+     *
+     * @param file The file for which the hash is to be computed.
+     * @return A hexadecimal string representing the computed hash.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    @Override
+    public String computerHash(File file) throws IOException {
+        return Hex.encodeHexString(computeDigest(file));
+    }
+
+    /**
+     * Computes the hash of the specified file as raw digest bytes.
+     *
+     * @param file The file for which the digest is to be computed.
+     * @return The digest bytes.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    @Override
+    public byte[] computeDigest(File file) throws IOException {
+        return computeDigest(file.toPath());
+    }
+
+    /**
+     * Computes the hash of the specified file as raw digest bytes with the digest of the
+     * calling thread.
+     *
+     * @param file The file for which the digest is to be computed.
+     * @return The digest bytes.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    @Override
+    public byte[] computeDigest(Path file) throws IOException {
+        MessageDigest digest = digests.get();
+        digest.reset();
+        return channelHasher.digest(file, digest);
+    }
+
+    /**
+     * Computes the digest of everything read from the stream, e.g. a file being uploaded, with
+     * the digest of the calling thread. Equal to the digest of a file with the same content.
+     *
+     * @param in The stream to read to its end; it is not closed.
+     * @return The digest bytes.
+     * @throws IOException If an I/O error occurs while reading the stream.
+     */
+    public byte[] computeDigest(InputStream in) throws IOException {
+        MessageDigest digest = digests.get();
+        digest.reset();
+        byte[] buffer = new byte[ChannelHasher.BUFFER_SIZE];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,35 @@
+package io.muzoo.ssc.algos;
+
+import java.security.MessageDigest;
+
+/**
+ * The Murmur3Algo class implements the Algorithms interface to compute
+ * the 128-bit MurmurHash3 of a given file. It is a fast non-cryptographic hash
+ * for trusted data; combine it with `--confirm` when a hash collision must
+ * never be reported as a duplicate.
+ *
+ * Responsibilities:
+ * - Read the contents of a file.
+ * - Generate a MurmurHash3 x64 128-bit hash from the file's contents.
+ *
+ * Features:
+ * - Reads the file through the same NIO paths as MD5Algo and SHA256Algo.
+ * - 128-bit output, so accidental collisions stay negligible on very large trees.
+ *
+ * Example Usage:
+ * Murmur3Algo algo = new Murmur3Algo();
+ * String hash = algo.computerHash(new File("/path/to/file"));
+ * System.out.println("Murmur3 Hash: " + hash);
+ */
+public class Murmur3Algo extends MessageDigestAlgo {
+
+    /**
+     * Creates the MurmurHash3 digest of a worker thread, reused for every file it hashes.
+     *
+     * @return A new MurmurHash3 x64 128-bit MessageDigest.
+     */
+    @Override
+    protected MessageDigest newDigest() {
+        return new Murmur3Digest();
+    }
+}
@@ -0,0 +1,170 @@
+package io.muzoo.ssc.algos;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * The Murmur3Digest class is a streaming implementation of the 128-bit MurmurHash3 (x64 variant)
+ * as a java.security.MessageDigest, so it can be fed through the same NIO paths as MD5 and SHA-256.
+ * MurmurHash3 is a non-cryptographic hash meant for trusted data; its 128-bit output keeps
+ * accidental collisions negligible even across hundreds of millions of files.
+ *
+ * Features:
+ * - Processes the input in 16-byte blocks with two 64-bit accumulators.
+ * - Produces the same 16 bytes as the common reference implementations (h1 then h2, little-endian).
+ *
+ * Example Usage:
+ * MessageDigest murmur = new Murmur3Digest();
+ * murmur.update(bytes);
+ * String hex = Hex.encodeHexString(murmur.digest());
+ */
+public class Murmur3Digest extends MessageDigest {
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+    private static final int BLOCK = 16;
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final long seed;
+    private final byte[] pending = new byte[BLOCK];
+    private int pendingLength;
+    private long totalLength;
+    private long h1;
+    private long h2;
+
+    /**
+     * Constructs a MurmurHash3 x64 128-bit digest with seed 0.
+     */
+    public Murmur3Digest() {
+        this(0);
+    }
+
+    /**
+     * Constructs a MurmurHash3 x64 128-bit digest with the given seed.
+     *
+     * @param seed The seed of the hash.
+     */
+    public Murmur3Digest(long seed) {
+        super("Murmur3-128");
+        this.seed = seed;
+        engineReset();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 16;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        engineUpdate(new byte[]{input}, 0, 1);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int length) {
+        totalLength += length;
+        int end = offset + length;
+
+        if (pendingLength > 0) {
+            int fill = Math.min(BLOCK - pendingLength, length);
+            System.arraycopy(input, offset, pending, pendingLength, fill);
+            pendingLength += fill;
+            offset += fill;
+            if (pendingLength < BLOCK) {
+                return;
+            }
+            processBlock(pending, 0);
+            pendingLength = 0;
+        }
+
+        for (; offset + BLOCK <= end; offset += BLOCK) {
+            processBlock(input, offset);
+        }
+
+        pendingLength = end - offset;
+        System.arraycopy(input, offset, pending, 0, pendingLength);
+    }
+
+    private void processBlock(byte[] input, int offset) {
+        long k1 = (long) LONG_LE.get(input, offset);
+        long k2 = (long) LONG_LE.get(input, offset + 8);
+
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52DCE729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495AB5;
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = pendingLength - 1; i >= 8; i--) {
+            k2 = (k2 << 8) | (pending[i] & 0xFFL);
+        }
+        for (int i = Math.min(pendingLength, 8) - 1; i >= 0; i--) {
+            k1 = (k1 << 8) | (pending[i] & 0xFFL);
+        }
+
+        long a = h1;
+        long b = h2;
+        if (pendingLength > 8) {
+            b ^= mixK2(k2);
+        }
+        if (pendingLength > 0) {
+            a ^= mixK1(k1);
+        }
+
+        a ^= totalLength;
+        b ^= totalLength;
+        a += b;
+        b += a;
+        a = fmix(a);
+        b = fmix(b);
+        a += b;
+        b += a;
+        engineReset();
+
+        byte[] result = new byte[16];
+        LONG_LE.set(result, 0, a);
+        LONG_LE.set(result, 8, b);
+        return result;
+    }
+
+    @Override
+    protected void engineReset() {
+        h1 = seed;
+        h2 = seed;
+        totalLength = 0;
+        pendingLength = 0;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
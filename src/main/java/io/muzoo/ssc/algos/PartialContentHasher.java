@@ -0,0 +1,137 @@
+package io.muzoo.ssc.algos;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * The PartialContentHasher class hashes a small fixed sample of a file: a number of blocks
+ * evenly spaced from its first block to its last, e.g. the first and last block, or the first,
+ * middle and last. Files of the same size that differ in any sampled block cannot be
+ * duplicates, so the sample hash can split size groups before the full content of each file
+ * is read. Many blocks spread over a very large file (e.g., a disk image) tell apart files that
+ * only differ somewhere in the middle, at the cost of a seek per block.
+ *
+ * Responsibilities:
+ * - Read only the sampled blocks of a file, never its full content.
+ * - Compute an MD5 hash over the sampled blocks.
+ * - Report how many bytes a sample reads for a file of a given size.
+ * - Reuse one digest and one block buffer per thread, so sampling allocates only the result.
+ *
+ * Example Usage:
+ * PartialContentHasher hasher = new PartialContentHasher(4096, true);
+ * byte[] sampleHash = hasher.computeSampleHash(Path.of("/path/to/file"), 1_000_000);
+ * PartialContentHasher spread = new PartialContentHasher(64 * 1024, 256); // 16 MiB per file
+ */
+public class PartialContentHasher {
+    private final int blockSize;
+    private final int blockCount;
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(DigestUtils::getMd5Digest);
+    private final ThreadLocal<ByteBuffer> buffers;
+
+    /**
+     * Constructs a PartialContentHasher.
+     *
+     * @param blockSize     The size of each sampled block, in bytes.
+     * @param includeMiddle Whether a block from the middle of the file is sampled as well.
+     * @throws IllegalArgumentException If the block size is not positive.
+     */
+    public PartialContentHasher(int blockSize, boolean includeMiddle) {
+        this(blockSize, includeMiddle ? 3 : 2);
+    }
+
+    /**
+     * Constructs a PartialContentHasher sampling the given number of evenly spaced blocks,
+     * the first and the last block included.
+     *
+     * @param blockSize  The size of each sampled block, in bytes.
+     * @param blockCount The number of blocks sampled from every file.
+     * @throws IllegalArgumentException If the block size is not positive, or fewer than 2 blocks are sampled.
+     */
+    public PartialContentHasher(int blockSize, int blockCount) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        if (blockCount < 2) {
+            throw new IllegalArgumentException("At least 2 blocks must be sampled: " + blockCount);
+        }
+        this.blockSize = blockSize;
+        this.blockCount = blockCount;
+        this.buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(blockSize));
+    }
+
+    /**
+     * Returns the number of bytes a sample of a file with the given size reads.
+     *
+     * @param fileSize The size of the file, in bytes.
+     * @return The number of bytes read when sampling the file.
+     */
+    public long sampledBytes(long fileSize) {
+        return Math.min(fileSize, getSampleCoverage());
+    }
+
+    /**
+     * Returns the number of bytes covered by all sampled blocks together. Sampling a file
+     * that is not larger than this reads the whole file, so such files gain nothing from
+     * the partial-content stage.
+     *
+     * @return The combined size of all sampled blocks, in bytes.
+     */
+    public long getSampleCoverage() {
+        return (long) blockSize * blockCount;
+    }
+
+    /**
+     * Computes a hash over the sampled blocks of the specified file.
+     *
+     * @param file     The file to sample.
+     * @param fileSize The size of the file, in bytes, as seen during the directory walk.
+     * @return The MD5 digest of the sampled blocks.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    public byte[] computeSampleHash(Path file, long fileSize) throws IOException {
+        MessageDigest digest = digests.get();
+        ByteBuffer buffer = buffers.get();
+        digest.reset();
+
+        try (FileChannel channel = FileChannel.open(file, ChannelHasher.READ_OPTIONS)) {
+            readBlock(channel, 0, buffer, digest);
+            if (fileSize <= blockSize) {
+                return digest.digest();
+            }
+            long span = fileSize - blockSize;
+            for (int block = 1; block < blockCount; block++) {
+                // span * block / (blockCount - 1), without overflowing for very large files
+                long position = span / (blockCount - 1) * block + span % (blockCount - 1) * block / (blockCount - 1);
+                readBlock(channel, position, buffer, digest);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Reads up to one block starting at the given position and feeds it to the digest.
+     *
+     * @param channel  The channel to read from.
+     * @param position The position of the first byte of the block.
+     * @param buffer   The buffer to read into; its capacity is the block size.
+     * @param digest   The digest that receives the bytes read.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    private void readBlock(FileChannel channel, long position, ByteBuffer buffer, MessageDigest digest)
+            throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        digest.update(buffer);
+    }
+}
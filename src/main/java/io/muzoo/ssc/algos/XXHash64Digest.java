@@ -0,0 +1,179 @@
+package io.muzoo.ssc.algos;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * The XXHash64Digest class is a streaming implementation of the 64-bit xxHash (XXH64) as a
+ * java.security.MessageDigest, so it can be fed through the same NIO paths as MD5 and SHA-256.
+ * XXH64 is a non-cryptographic hash that runs several times faster per byte than MD5; it is
+ * meant for trusted data, where nobody crafts collisions on purpose.
+ *
+ * Features:
+ * - Processes the input in 32-byte stripes with four independent accumulators.
+ * - Produces the canonical (big-endian) 8-byte representation of the hash.
+ *
+ * Example Usage:
+ * MessageDigest xxh64 = new XXHash64Digest();
+ * xxh64.update("abc".getBytes(StandardCharsets.UTF_8));
+ * String hex = Hex.encodeHexString(xxh64.digest()); // "44bc2cf5ad770999"
+ */
+public class XXHash64Digest extends MessageDigest {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final long seed;
+    private final byte[] pending = new byte[STRIPE];
+    private int pendingLength;
+    private long totalLength;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    /**
+     * Constructs an XXH64 digest with seed 0.
+     */
+    public XXHash64Digest() {
+        this(0);
+    }
+
+    /**
+     * Constructs an XXH64 digest with the given seed.
+     *
+     * @param seed The seed of the hash.
+     */
+    public XXHash64Digest(long seed) {
+        super("XXH64");
+        this.seed = seed;
+        engineReset();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 8;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        engineUpdate(new byte[]{input}, 0, 1);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int length) {
+        totalLength += length;
+        int end = offset + length;
+
+        if (pendingLength > 0) {
+            int fill = Math.min(STRIPE - pendingLength, length);
+            System.arraycopy(input, offset, pending, pendingLength, fill);
+            pendingLength += fill;
+            offset += fill;
+            if (pendingLength < STRIPE) {
+                return;
+            }
+            processStripe(pending, 0);
+            pendingLength = 0;
+        }
+
+        for (; offset + STRIPE <= end; offset += STRIPE) {
+            processStripe(input, offset);
+        }
+
+        pendingLength = end - offset;
+        System.arraycopy(input, offset, pending, 0, pendingLength);
+    }
+
+    private void processStripe(byte[] input, int offset) {
+        v1 = round(v1, (long) LONG_LE.get(input, offset));
+        v2 = round(v2, (long) LONG_LE.get(input, offset + 8));
+        v3 = round(v3, (long) LONG_LE.get(input, offset + 16));
+        v4 = round(v4, (long) LONG_LE.get(input, offset + 24));
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long hash = getValue();
+        engineReset();
+
+        byte[] result = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            result[i] = (byte) hash;
+            hash >>>= 8;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the hash of the input so far as a long, without resetting the digest.
+     *
+     * @return The 64-bit hash value.
+     */
+    public long getValue() {
+        long hash;
+        if (totalLength >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME5;
+        }
+        hash += totalLength;
+
+        int offset = 0;
+        for (; offset + 8 <= pendingLength; offset += 8) {
+            hash ^= round(0, (long) LONG_LE.get(pending, offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (offset + 4 <= pendingLength) {
+            hash ^= ((int) INT_LE.get(pending, offset) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            offset += 4;
+        }
+        for (; offset < pendingLength; offset++) {
+            hash ^= (pending[offset] & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    @Override
+    protected void engineReset() {
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+        totalLength = 0;
+        pendingLength = 0;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+}
@@ -0,0 +1,329 @@
+package io.muzoo.ssc.cache;
+
+import io.muzoo.ssc.pipeline.WalkFilter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HashCache class remembers the digest of every hashed file between runs, so that a
+ * rescan of a mostly unchanged tree only reads the files that changed. A cached digest is
+ * reused only when the algorithm, size, last-modified time and file key (device and inode
+ * on Unix) of the file all still match.
+ *
+ * Responsibilities:
+ * - Load the cache file at the start of a scan and look up digests by absolute path.
+ * - Record the digests computed during the scan.
+ * - Forget files of the scanned tree that no longer exist, keeping those the scan filtered out.
+ * - Write the cache back atomically, so an interrupted run never leaves a broken cache behind.
+ * - Merge its changes into the cache file on save, so concurrent scans sharing the file (e.g.,
+ *   the shards of one tree) do not overwrite each other's digests.
+ *
+ * File format (big-endian, as written by DataOutputStream):
+ * - Header: magic "SSCH", format version, number of algorithm names, the names, number of entries.
+ * - Entry: path, size, last-modified time in nanoseconds, file key, algorithm index, digest length, digest.
+ * Strings are stored in modified UTF-8. A cache file that cannot be read is ignored and rebuilt.
+ *
+ * Features:
+ * - Safe to look up and update from many worker threads at once.
+ * - Keeps the entries of other trees, so one cache serves scans of several folders.
+ * - Keeps one digest per file; scanning the same file with another algorithm replaces it.
+ *
+ * Memory: the cache holds one entry per cached file, so it is only used when a scan asks for it
+ * (`--cache`); a scan without it keeps no per-file state beyond the CompactPathStore.
+ *
+ * Example Usage:
+ * HashCache cache = HashCache.load(HashCache.defaultLocation());
+ * byte[] digest = cache.lookup("MD5", file, attrs);
+ * if (digest == null) {
+ *     digest = algo.computeDigest(file);
+ *     cache.store("MD5", file, attrs, digest);
+ * }
+ * cache.save();
+ */
+public class HashCache {
+    private static final int MAGIC = 0x53534348;
+    private static final int VERSION = 1;
+
+    private final Path location;
+    private final Map<String, Entry> entries;
+    private final Set<String> stored = ConcurrentHashMap.newKeySet();
+    private final Set<String> forgotten = new HashSet<>();
+    private volatile boolean modified;
+
+    private HashCache(Path location, Map<String, Entry> entries) {
+        this.location = location;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the default location of the cache file, in the home directory of the user.
+     *
+     * @return The path `~/.ssc-duplicate-finder/hash-cache.bin`.
+     */
+    public static Path defaultLocation() {
+        return Paths.get(System.getProperty("user.home"), ".ssc-duplicate-finder", "hash-cache.bin");
+    }
+
+    /**
+     * Loads the cache stored at the specified location. A missing file yields an empty cache;
+     * an unreadable or corrupt file is reported and also yields an empty cache.
+     *
+     * @param location The path of the cache file.
+     * @return The loaded cache.
+     */
+    public static HashCache load(Path location) {
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(location), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown cache format");
+            }
+
+            String[] algorithms = new String[in.readInt()];
+            for (int i = 0; i < algorithms.length; i++) {
+                algorithms[i] = in.readUTF();
+            }
+
+            int count = in.readInt();
+            entries = new ConcurrentHashMap<>(Math.max(16, count * 4 / 3 + 1));
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                String fileKey = in.readUTF();
+                String algorithm = algorithms[in.readUnsignedByte()];
+                byte[] digest = new byte[in.readUnsignedByte()];
+                in.readFully(digest);
+                entries.put(path, new Entry(algorithm, size, lastModified, fileKey, digest));
+            }
+        } catch (NoSuchFileException e) {
+            // First run: start with an empty cache.
+        } catch (EOFException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Error reading hash cache: " + location + " - file is truncated, rebuilding it");
+            entries.clear();
+        } catch (IOException e) {
+            System.err.println("Error reading hash cache: " + location + " - " + e.getMessage() + ", rebuilding it");
+            entries.clear();
+        }
+        return new HashCache(location, entries);
+    }
+
+    public Path getLocation() {
+        return location;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Looks up the cached digest of a file.
+     *
+     * @param algorithm The name of the digest algorithm (e.g., "MD5").
+     * @param file      The file.
+     * @param attrs     The current attributes of the file.
+     * @return The cached digest, or `null` if the file is not cached or has changed since.
+     */
+    public byte[] lookup(String algorithm, Path file, BasicFileAttributes attrs) {
+        Entry entry = entries.get(key(file));
+        if (entry == null
+                || !entry.algorithm.equals(algorithm)
+                || entry.size != attrs.size()
+                || entry.lastModified != lastModified(attrs)
+                || !entry.fileKey.equals(fileKey(attrs))) {
+            return null;
+        }
+        return entry.digest;
+    }
+
+    /**
+     * Records the digest of a file.
+     *
+     * @param algorithm The name of the digest algorithm (e.g., "MD5").
+     * @param file      The file.
+     * @param attrs     The attributes of the file, read before its content was hashed.
+     * @param digest    The digest of the file; at most 255 bytes.
+     */
+    public void store(String algorithm, Path file, BasicFileAttributes attrs, byte[] digest) {
+        String key = key(file);
+        entries.put(key, new Entry(algorithm, attrs.size(), lastModified(attrs), fileKey(attrs), digest));
+        stored.add(key);
+        modified = true;
+    }
+
+    /**
+     * Forgets the cached files below the scanned root that the scan did not find,
+     * because they were deleted or moved. Entries outside the root are left untouched, and so
+     * are the entries the walk filter of the scan left out on purpose (excluded by a glob, a
+     * directory name, the size bounds or the shard), since their files may well still exist.
+     *
+     * The files of the scan are only looked up in the cache one by one, marking the entries
+     * found, so no second set of every scanned path is built next to the cache.
+     *
+     * @param root    The root of the scan.
+     * @param scanned Every file found by the scan.
+     * @param filter  The filter the scan walked the root with.
+     */
+    public void retainScanned(Path root, List<Path> scanned, WalkFilter filter) {
+        for (Path file : scanned) {
+            Entry entry = entries.get(key(file));
+            if (entry != null) {
+                entry.scanned = true;
+            }
+        }
+
+        String prefix = key(root);
+        String directoryPrefix = prefix.endsWith(root.getFileSystem().getSeparator())
+                ? prefix
+                : prefix + root.getFileSystem().getSeparator();
+        Path absoluteRoot = Paths.get(prefix);
+        boolean removed = entries.entrySet().removeIf(e -> {
+            if (e.getValue().scanned) {
+                e.getValue().scanned = false;
+                return false;
+            }
+            boolean gone = e.getKey().startsWith(directoryPrefix)
+                    && filter.reaches(root.resolve(absoluteRoot.relativize(Paths.get(e.getKey()))), e.getValue().size);
+            if (gone) {
+                forgotten.add(e.getKey());
+                stored.remove(e.getKey());
+            }
+            return gone;
+        });
+        if (removed) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Writes the changes of this scan to the cache file, if there are any. Other processes may
+     * have saved the same cache file since it was loaded (e.g., the shards of one tree, scanned
+     * at the same time), so the file is read again while holding a lock on `<cache>.lock`, the
+     * digests stored and the files forgotten by this scan are applied to it, and the result is
+     * written to a temporary file next to the target, which then atomically replaces it.
+     *
+     * @throws IOException If an I/O error occurs while writing the cache.
+     */
+    public void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+
+        Path directory = location.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path lockFile = location.resolveSibling(location.getFileName() + ".lock");
+        try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Released when the channel is closed.
+            lockChannel.lock();
+            Map<String, Entry> merged = load(location).entries;
+            merged.keySet().removeAll(forgotten);
+            for (String key : stored) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    merged.put(key, entry);
+                }
+            }
+
+            Path temp = Files.createTempFile(directory, location.getFileName().toString(), ".tmp");
+            try {
+                write(temp, merged);
+                try {
+                    Files.move(temp, location, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, location, StandardCopyOption.REPLACE_EXISTING);
+                }
+                stored.clear();
+                forgotten.clear();
+                modified = false;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static void write(Path target, Map<String, Entry> entries) throws IOException {
+        List<String> algorithms = new ArrayList<>();
+        Map<String, Integer> algorithmIndex = new HashMap<>();
+        for (Entry entry : entries.values()) {
+            algorithmIndex.computeIfAbsent(entry.algorithm, name -> {
+                algorithms.add(name);
+                return algorithms.size() - 1;
+            });
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(algorithms.size());
+            for (String algorithm : algorithms) {
+                out.writeUTF(algorithm);
+            }
+
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeUTF(entry.fileKey);
+                out.writeByte(algorithmIndex.get(entry.algorithm));
+                out.writeByte(entry.digest.length);
+                out.write(entry.digest);
+            }
+        }
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static long lastModified(BasicFileAttributes attrs) {
+        return attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKey(BasicFileAttributes attrs) {
+        Object fileKey = attrs.fileKey();
+        return fileKey == null ? "" : fileKey.toString();
+    }
+
+    /**
+     * The cached metadata and digest of a single file.
+     */
+    private static final class Entry {
+        private final String algorithm;
+        private final long size;
+        private final long lastModified;
+        private final String fileKey;
+        private final byte[] digest;
+        private boolean scanned;
+
+        private Entry(String algorithm, long size, long lastModified, String fileKey, byte[] digest) {
+            this.algorithm = algorithm;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+            this.digest = digest;
+        }
+    }
+}
@@ -13,7 +13,7 @@ import java.util.Set;
  * - Provide a list of supported algorithms when requested.
  *
  * Features:
- * - Maintains a static set of supported algorithms (e.g., "sha256", "md5", "bbb").
+ * - Maintains a static set of supported algorithms (e.g., "sha256", "md5", "bbb", "xxh64", "murmur3").
  * - Offers a simple method to check algorithm validity.
  * - Prints usage instructions to guide users.
  *
@@ -28,7 +28,7 @@ import java.util.Set;
  *
  */
 public class AlgorithmValidator implements IAlgorithmValidator {
-    private static final Set<String> SUPPORTED_ALGORITHMS = Set.of("sha256", "md5", "bbb");
+    private static final Set<String> SUPPORTED_ALGORITHMS = Set.of("sha256", "md5", "bbb", "xxh64", "murmur3");
 
     /**
      * Checks whether the specified algorithm is valid.
@@ -48,7 +48,7 @@ public class AlgorithmValidator implements IAlgorithmValidator {
      * Prints a usage message displaying the supported hashing algorithms.
      *
      * Example Output:
-     * Supported algorithms: sha256, md5, bbb
+     * Supported algorithms: sha256, md5, bbb, xxh64, murmur3
      */
     @Override
     public void printUsage() {
@@ -1,5 +1,7 @@
 package io.muzoo.ssc.cli;
 
+import io.muzoo.ssc.ScanOptions;
+
 /**
  * The CommandLineConfig class encapsulates the configuration options
  * parsed from the command-line arguments. It acts as a data transfer object
@@ -10,6 +12,7 @@ package io.muzoo.ssc.cli;
  * - Stores the folder path where the program should look for files.
  * - Specifies the hashing algorithm to use for duplicate detection.
  * - Flags for enabling counting and printing duplicate files.
+ * - The tuning options of the scan (e.g., the partial-content sample size).
  *
  * Example Usage:
  * CommandLineConfig config = new CommandLineConfig("/path/to/folder", "sha256", true, true);
@@ -23,6 +26,7 @@ public class CommandLineConfig {
     private final String algorithm;
     private final boolean countDuplicates;
     private final boolean printDuplicates;
+    private final ScanOptions scanOptions;
 
     /**
      * Constructors
@@ -33,10 +37,23 @@ public class CommandLineConfig {
      * @param printDuplicates A flag indicating whether to print duplicate file paths.
      */
     public CommandLineConfig(String folderPath, String algorithm, boolean countDuplicates, boolean printDuplicates) {
+        this(folderPath, algorithm, countDuplicates, printDuplicates, new ScanOptions());
+    }
+
+    /**
+     * @param folderPath The path to the folder where files will be processed.
+     * @param algorithm The hashing algorithm to use (e.g., "md5", "sha256", "bbb").
+     * @param countDuplicates A flag indicating whether to count duplicate files.
+     * @param printDuplicates A flag indicating whether to print duplicate file paths.
+     * @param scanOptions The tuning options of the scan.
+     */
+    public CommandLineConfig(String folderPath, String algorithm, boolean countDuplicates, boolean printDuplicates,
+                             ScanOptions scanOptions) {
         this.folderPath = folderPath;
         this.algorithm = algorithm;
         this.countDuplicates = countDuplicates;
         this.printDuplicates = printDuplicates;
+        this.scanOptions = scanOptions;
     }
 
     /**
@@ -63,4 +80,10 @@ public class CommandLineConfig {
      */
     public boolean isPrintDuplicates() { return printDuplicates; }
 
+    /**
+     * Returns the tuning options of the scan specified in the command-line arguments.
+     * @return The scan options.
+     */
+    public ScanOptions getScanOptions() { return scanOptions; }
+
 }
\ No newline at end of file
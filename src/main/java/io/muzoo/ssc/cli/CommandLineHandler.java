@@ -1,7 +1,17 @@
 package io.muzoo.ssc.cli;
 
+import io.muzoo.ssc.ScanOptions;
+import io.muzoo.ssc.algos.ChannelHasher;
+import io.muzoo.ssc.cache.HashCache;
+import io.muzoo.ssc.report.ReportFormat;
 import org.apache.commons.cli.*;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
 /**
  * The CommandLineHandler class is responsible for parsing and validating command-line arguments.
  * It uses Apache Commons CLI to define the accepted arguments, validate their correctness,
@@ -15,10 +25,41 @@ import org.apache.commons.cli.*;
  *
  * Features:
  * - Supports required and optional arguments, including:
- *   - `-f` or `--folder`: Specifies the folder path for processing (required).
+ *   - `-f` or `--folder`: Specifies the folder path for processing (required, except with `--merge`).
  *   - `-a` or `--algorithm`: Specifies the hashing algorithm (default: "bbb").
  *   - `-c` or `--count-duplicates`: Counts the total number of duplicate files.
  *   - `-p` or `--print`: Prints paths of duplicate files.
+ *   - `-s` or `--sample-size`: Block size of the partial-content stage in bytes (0 disables it).
+ *   - `--sample-middle`: Also samples a block from the middle of each file.
+ *   - `--sample-blocks`: Number of evenly spaced blocks sampled from large files before they are hashed in full.
+ *   - `-t` or `--threads`: Number of worker threads hashing files concurrently (default: 1).
+ *   - `--virtual-threads`: Uses virtual threads for the workers (JDK 21 and newer).
+ *   - `--walk-threads`: Number of threads listing directories concurrently during the walk (default: 1).
+ *   - `--follow-links`: Follows symbolic links, skipping links that loop back to a directory above them.
+ *   - `--min-size` / `--max-size`: Size bounds in bytes of the files that are scanned.
+ *   - `--include` / `--exclude`: Globs a scanned file must match one of / none of (repeatable).
+ *   - `--exclude-dir`: Name of a directory that is never entered, e.g. `.git` (repeatable).
+ *   - `--mmap-threshold`: File size in bytes from which files are hashed through memory mapping.
+ *   - `--read-ahead`: Number of blocks of a large file read ahead while the current one is hashed.
+ *   - `--confirm`: Byte-compares files with matching hashes before reporting them as duplicates.
+ *   - `--cache`: Reuses digests between scans through a hash cache file (default file: ~/.ssc-duplicate-finder/hash-cache.bin).
+ *     Off unless given.
+ *   - `--no-cache`: Hashes every file without reading or writing the hash cache, even if `--cache` is given.
+ *   - `--folders`: Reports directories with identical content as duplicate folders.
+ *   - `--prefilter-fpp`: False-positive rate of the Bloom filters keeping unique sizes out of the size table (0 disables them).
+ *   - `--prefilter-memory`: Most memory in MiB the prefilter may take (default: 64).
+ *   - `--memory-budget`: Heap in MiB for grouping; beyond it records are spilled to disk and merged.
+ *   - `--spill-dir`: Directory for the spilled run files (default: the system temp directory).
+ *   - `--format`: Format of the duplicate report: text, ndjson, csv or json (default: text).
+ *   - `-o` or `--output`: File the duplicate report is written to (default: standard output).
+ *   - `-w` or `--watch`: Keeps watching the folder and reports duplicates as files change.
+ *   - `--debounce`: Quiet period in milliseconds before a batch of changes is applied (default: 500).
+ *   - `--daemon`: Indexes the folder by content and serves lookups on a loopback HTTP port.
+ *   - `--port`: The loopback port of daemon mode (default: 8377, 0 picks a free port).
+ *   - `--export-index`: Writes the content of the folder to a reference index file instead of reporting.
+ *   - `--reference`: Reports the files of the folder that are already in a reference index file.
+ *   - `--shard`: Scans only the files whose size falls in shard i of n, given as `i/n`.
+ *   - `--merge`: Merges the reference index files exported by the shards of a scan into its duplicate groups.
  *   - `-h` or `--help`: Displays the help message.
  *
  * Example Usage:
@@ -85,8 +126,81 @@ public class CommandLineHandler implements ICommandLineParser {
         Options options = new Options();
         options.addOption("f", "folder", true, "Path to the folder (required)");
         options.addOption("c", "count-duplicates", false, "Count the total number of duplicate files");
-        options.addOption("a", "algorithm", true, "Algorithm for finding duplicates (bbb, sha256, md5)");
+        options.addOption("a", "algorithm", true, "Algorithm for finding duplicates (bbb, sha256, md5, xxh64, murmur3)");
         options.addOption("p", "print", false, "Print relative paths of all duplicate files");
+        options.addOption("s", "sample-size", true,
+                "Block size in bytes hashed by the partial-content stage, 0 to disable (default: "
+                        + ScanOptions.DEFAULT_SAMPLE_SIZE + ")");
+        options.addOption(null, "sample-middle", false, "Also sample a block from the middle of each file");
+        options.addOption(null, "sample-blocks", true,
+                "Number of evenly spaced blocks of the sample size hashed from every large candidate before it is"
+                        + " read in full, e.g. for disk images (default: 0, disabled)");
+        options.addOption("t", "threads", true, "Number of worker threads hashing files concurrently (default: 1)");
+        options.addOption(null, "virtual-threads", false, "Use virtual threads for the workers (JDK 21 and newer)");
+        options.addOption(null, "walk-threads", true,
+                "Number of threads listing directories concurrently, for network filesystems (default: 1)");
+        options.addOption(null, "follow-links", false,
+                "Follow symbolic links; links looping back to a directory above them are skipped");
+        options.addOption(null, "min-size", true, "Skip files smaller than this many bytes (e.g. 1 skips empty files)");
+        options.addOption(null, "max-size", true, "Skip files larger than this many bytes");
+        options.addOption(null, "include", true,
+                "Only scan files matching this glob; repeatable. Globs with a '/' match the path below the folder,"
+                        + " others the file name");
+        options.addOption(null, "exclude", true, "Skip files matching this glob; repeatable");
+        options.addOption(null, "exclude-dir", true,
+                "Never enter directories with this name, e.g. .git or node_modules; repeatable");
+        options.addOption(null, "mmap-threshold", true,
+                "File size in bytes from which files are hashed through memory mapping (default: "
+                        + ChannelHasher.DEFAULT_MAPPED_THRESHOLD + ")");
+        options.addOption(null, "read-ahead", true,
+                "Number of " + ChannelHasher.BUFFER_SIZE / 1024 + " KiB blocks of a file read asynchronously"
+                        + " while the current block is hashed (default: 0, synchronous reads)");
+        options.addOption(null, "confirm", false,
+                "Byte-compare files with matching hashes before reporting them as duplicates");
+        options.addOption(Option.builder().longOpt("cache").hasArg().optionalArg(true).argName("file")
+                .desc("Reuse digests between scans through a hash cache file (default file: "
+                        + HashCache.defaultLocation() + "); off unless given")
+                .build());
+        options.addOption(null, "no-cache", false, "Do not read or write the hash cache, even with --cache");
+        options.addOption(null, "folders", false,
+                "Report directories with identical content as duplicate folders instead of file by file");
+        options.addOption(null, "prefilter-fpp", true,
+                "False-positive rate of the Bloom filters keeping files of a unique size out of the size table,"
+                        + " 0 to disable them (default: " + ScanOptions.DEFAULT_PREFILTER_FALSE_POSITIVE_RATE + ")");
+        options.addOption(null, "prefilter-memory", true,
+                "Most memory in MiB the prefilter may take (default: "
+                        + ScanOptions.DEFAULT_PREFILTER_MEMORY / (1024 * 1024) + ")");
+        options.addOption(null, "memory-budget", true,
+                "Heap in MiB used for grouping; beyond it, records are sorted in runs on disk and merged"
+                        + " (needs a hashing algorithm)");
+        options.addOption(null, "spill-dir", true,
+                "Directory for the run files of --memory-budget (default: the system temp directory)");
+        options.addOption(null, "format", true,
+                "Format of the duplicate report: text, ndjson, csv or json (default: text)");
+        options.addOption("o", "output", true, "Write the duplicate report to this file instead of standard output");
+        options.addOption("w", "watch", false,
+                "Keep watching the folder and update the duplicates as files change (needs a hashing algorithm)");
+        options.addOption(null, "debounce", true,
+                "Quiet period in milliseconds before a batch of changes is applied in watch mode (default: "
+                        + ScanOptions.DEFAULT_WATCH_DEBOUNCE + ")");
+        options.addOption(null, "daemon", false,
+                "Index the folder by content and answer lookups over HTTP on the loopback interface"
+                        + " (needs a hashing algorithm)");
+        options.addOption(null, "port", true,
+                "Loopback port of daemon mode, 0 for any free port (default: " + ScanOptions.DEFAULT_DAEMON_PORT + ")");
+        options.addOption(null, "export-index", true,
+                "Write the size, digest and path of every file to this reference index file instead of reporting"
+                        + " (needs a hashing algorithm)");
+        options.addOption(null, "shard", true,
+                "Scan only the files whose size falls in shard i of n, given as i/n (e.g. 0/4); every group of"
+                        + " duplicates lies in a single shard");
+        options.addOption(Option.builder().longOpt("merge").hasArgs().argName("files")
+                .desc("Merge the index files exported by the shards of a scan (with --export-index) into its"
+                        + " duplicate groups, without reading any file; takes no --folder")
+                .build());
+        options.addOption(null, "reference", true,
+                "Report the files of the folder already in this reference index file, built with --export-index"
+                        + " and the same algorithm");
         options.addOption("h", "help", false, "Display help");
         return options;
     }
@@ -107,13 +221,13 @@ public class CommandLineHandler implements ICommandLineParser {
 
     /**
      * Checks whether the help message should be displayed based on the arguments.
-     * Help is shown if the `-h` option is provided or if the required `-f` option is missing.
+     * Help is shown if the `-h` option is provided or if the `-f` option is missing outside of merge mode.
      *
      * @param cmd The parsed `CommandLine` object.
      * @return `true` if help should be displayed, otherwise `false`.
      */
     private boolean shouldShowHelp(CommandLine cmd) {
-        return cmd.hasOption("h") || !cmd.hasOption("f");
+        return cmd.hasOption("h") || (!cmd.hasOption("f") && !cmd.hasOption("merge"));
     }
 
     /**
@@ -134,7 +248,12 @@ public class CommandLineHandler implements ICommandLineParser {
         String folderPath = cmd.getOptionValue("f");
         String algorithm = cmd.getOptionValue("a", "bbb");
 
-        if (!pathValidator.isValid(folderPath)) {
+        if (cmd.hasOption("merge") && cmd.hasOption("f")) {
+            System.err.println("Error: --merge reads the given index files and takes no --folder");
+            return null;
+        }
+
+        if (!cmd.hasOption("merge") && !pathValidator.isValid(folderPath)) {
             System.err.println("Error: Invalid directory path: " + folderPath);
             return null;
         }
@@ -145,11 +264,199 @@ public class CommandLineHandler implements ICommandLineParser {
             return null;
         }
 
+        ScanOptions scanOptions = createScanOptions(cmd);
+        if (scanOptions == null) {
+            return null;
+        }
+
+        if (scanOptions.isWatch() && algorithm.equals("bbb")) {
+            System.err.println("Error: Watch mode needs a hashing algorithm, e.g. -a md5");
+            return null;
+        }
+
+        if (scanOptions.isWatch() && (scanOptions.isConfirm() || scanOptions.getSampleBlocks() > 0)) {
+            System.err.println("Error: --watch cannot be combined with --confirm or --sample-blocks");
+            return null;
+        }
+
+        if (scanOptions.isDaemon() && algorithm.equals("bbb")) {
+            System.err.println("Error: Daemon mode needs a hashing algorithm, e.g. -a md5");
+            return null;
+        }
+
+        if (scanOptions.isDaemon() && (scanOptions.isWatch() || scanOptions.isDuplicateFolders()
+                || scanOptions.getMemoryBudget() > 0)) {
+            System.err.println("Error: --daemon cannot be combined with --watch, --folders or --memory-budget");
+            return null;
+        }
+
+        if (!scanOptions.getMergeIndexes().isEmpty() && (scanOptions.isWatch() || scanOptions.isDaemon()
+                || scanOptions.isDuplicateFolders() || scanOptions.getMemoryBudget() > 0 || scanOptions.getShardCount() > 1
+                || scanOptions.getExportIndex() != null || scanOptions.getReferenceIndex() != null)) {
+            System.err.println("Error: --merge cannot be combined with scan options such as --watch, --daemon, "
+                    + "--folders, --memory-budget, --shard, --export-index or --reference");
+            return null;
+        }
+
+        if (scanOptions.getShardCount() > 1 && (scanOptions.isDaemon() || scanOptions.isDuplicateFolders())) {
+            System.err.println("Error: --shard cannot be combined with --daemon or --folders");
+            return null;
+        }
+
+        if ((scanOptions.getExportIndex() != null || scanOptions.getReferenceIndex() != null) && algorithm.equals("bbb")) {
+            System.err.println("Error: Reference indexes need a hashing algorithm, e.g. -a md5");
+            return null;
+        }
+
+        if (scanOptions.getExportIndex() != null && scanOptions.getReferenceIndex() != null) {
+            System.err.println("Error: --export-index cannot be combined with --reference");
+            return null;
+        }
+
+        if ((scanOptions.getExportIndex() != null || scanOptions.getReferenceIndex() != null)
+                && (scanOptions.isWatch() || scanOptions.isDaemon() || scanOptions.isDuplicateFolders()
+                || scanOptions.getMemoryBudget() > 0)) {
+            System.err.println("Error: --export-index and --reference cannot be combined with --watch, --daemon, "
+                    + "--folders or --memory-budget");
+            return null;
+        }
+
+        if (scanOptions.getMemoryBudget() > 0 && algorithm.equals("bbb")) {
+            System.err.println("Error: --memory-budget needs a hashing algorithm, e.g. -a md5");
+            return null;
+        }
+
+        if (scanOptions.getMemoryBudget() > 0 && (scanOptions.isDuplicateFolders() || scanOptions.isWatch())) {
+            System.err.println("Error: --memory-budget cannot be combined with --folders or --watch");
+            return null;
+        }
+
+        if (scanOptions.getMemoryBudget() > 0 && scanOptions.getSampleBlocks() > 0) {
+            System.err.println("Error: --memory-budget cannot be combined with --sample-blocks");
+            return null;
+        }
+
+        if (scanOptions.getMinSize() > scanOptions.getMaxSize()) {
+            System.err.println("Error: --min-size cannot be larger than --max-size");
+            return null;
+        }
+
+        if (scanOptions.isFollowLinks() && (scanOptions.isDuplicateFolders() || scanOptions.isWatch())) {
+            System.err.println("Error: --follow-links cannot be combined with --folders or --watch");
+            return null;
+        }
+
         return new CommandLineConfig(
                 folderPath,
                 algorithm,
                 cmd.hasOption("c"),
-                cmd.hasOption("p")
+                cmd.hasOption("p"),
+                scanOptions
         );
     }
+
+    /**
+     * Creates the `ScanOptions` of the scan from the parsed command-line arguments.
+     *
+     * @param cmd The parsed `CommandLine` object containing the user's arguments.
+     * @return The scan options, or `null` if an option value is invalid.
+     */
+    private ScanOptions createScanOptions(CommandLine cmd) {
+        ScanOptions scanOptions = new ScanOptions();
+        try {
+            if (cmd.hasOption("s")) {
+                scanOptions.setSampleSize(Integer.parseInt(cmd.getOptionValue("s")));
+            }
+            scanOptions.setSampleMiddle(cmd.hasOption("sample-middle"));
+            if (cmd.hasOption("sample-blocks")) {
+                scanOptions.setSampleBlocks(Integer.parseInt(cmd.getOptionValue("sample-blocks")));
+            }
+            if (cmd.hasOption("t")) {
+                scanOptions.setThreads(Integer.parseInt(cmd.getOptionValue("t")));
+            }
+            scanOptions.setVirtualThreads(cmd.hasOption("virtual-threads"));
+            if (cmd.hasOption("walk-threads")) {
+                scanOptions.setWalkThreads(Integer.parseInt(cmd.getOptionValue("walk-threads")));
+            }
+            scanOptions.setFollowLinks(cmd.hasOption("follow-links"));
+            if (cmd.hasOption("min-size")) {
+                scanOptions.setMinSize(Long.parseLong(cmd.getOptionValue("min-size")));
+            }
+            if (cmd.hasOption("max-size")) {
+                scanOptions.setMaxSize(Long.parseLong(cmd.getOptionValue("max-size")));
+            }
+            if (cmd.hasOption("include")) {
+                scanOptions.setIncludeGlobs(List.of(cmd.getOptionValues("include")));
+            }
+            if (cmd.hasOption("exclude")) {
+                scanOptions.setExcludeGlobs(List.of(cmd.getOptionValues("exclude")));
+            }
+            if (cmd.hasOption("exclude-dir")) {
+                scanOptions.setExcludedDirectories(Set.copyOf(List.of(cmd.getOptionValues("exclude-dir"))));
+            }
+            if (cmd.hasOption("mmap-threshold")) {
+                scanOptions.setMappedThreshold(Long.parseLong(cmd.getOptionValue("mmap-threshold")));
+            }
+            if (cmd.hasOption("read-ahead")) {
+                scanOptions.setReadAhead(Integer.parseInt(cmd.getOptionValue("read-ahead")));
+            }
+            scanOptions.setConfirm(cmd.hasOption("confirm"));
+            if (cmd.hasOption("cache") && !cmd.hasOption("no-cache")) {
+                scanOptions.setCacheFile(cmd.getOptionValue("cache") != null
+                        ? Paths.get(cmd.getOptionValue("cache"))
+                        : HashCache.defaultLocation());
+            }
+            scanOptions.setDuplicateFolders(cmd.hasOption("folders"));
+            if (cmd.hasOption("prefilter-fpp")) {
+                scanOptions.setPrefilterFalsePositiveRate(Double.parseDouble(cmd.getOptionValue("prefilter-fpp")));
+            }
+            if (cmd.hasOption("prefilter-memory")) {
+                scanOptions.setPrefilterMemory(Long.parseLong(cmd.getOptionValue("prefilter-memory")) * 1024 * 1024);
+            }
+            if (cmd.hasOption("memory-budget")) {
+                scanOptions.setMemoryBudget(Long.parseLong(cmd.getOptionValue("memory-budget")) * 1024 * 1024);
+            }
+            if (cmd.hasOption("spill-dir")) {
+                scanOptions.setSpillDirectory(Paths.get(cmd.getOptionValue("spill-dir")));
+            }
+            if (cmd.hasOption("format")) {
+                scanOptions.setReportFormat(ReportFormat.fromName(cmd.getOptionValue("format")));
+            }
+            if (cmd.hasOption("o")) {
+                scanOptions.setReportOutput(Paths.get(cmd.getOptionValue("o")));
+            }
+            scanOptions.setWatch(cmd.hasOption("w"));
+            if (cmd.hasOption("debounce")) {
+                scanOptions.setWatchDebounce(Long.parseLong(cmd.getOptionValue("debounce")));
+            }
+            scanOptions.setDaemon(cmd.hasOption("daemon"));
+            if (cmd.hasOption("port")) {
+                scanOptions.setDaemonPort(Integer.parseInt(cmd.getOptionValue("port")));
+            }
+            if (cmd.hasOption("export-index")) {
+                scanOptions.setExportIndex(Paths.get(cmd.getOptionValue("export-index")));
+            }
+            if (cmd.hasOption("reference")) {
+                scanOptions.setReferenceIndex(Paths.get(cmd.getOptionValue("reference")));
+            }
+            if (cmd.hasOption("shard")) {
+                String[] shard = cmd.getOptionValue("shard").split("/", -1);
+                if (shard.length != 2) {
+                    throw new IllegalArgumentException("Shard must be given as i/n: " + cmd.getOptionValue("shard"));
+                }
+                scanOptions.setShard(Integer.parseInt(shard[0].trim()), Integer.parseInt(shard[1].trim()));
+            }
+            if (cmd.hasOption("merge")) {
+                List<Path> mergeIndexes = new ArrayList<>();
+                for (String file : cmd.getOptionValues("merge")) {
+                    mergeIndexes.add(Paths.get(file));
+                }
+                scanOptions.setMergeIndexes(mergeIndexes);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: Invalid option value: " + e.getMessage());
+            return null;
+        }
+        return scanOptions;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,297 @@
+package io.muzoo.ssc.daemon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.muzoo.ssc.ContentIndex;
+import io.muzoo.ssc.algos.MessageDigestAlgo;
+import io.muzoo.ssc.report.ReportWriter;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The LookupServer class answers "is this content already stored?" over HTTP on the loopback
+ * interface, from a ContentIndex built by a single scan. It lets another local process (e.g., an
+ * upload service) check incoming files against the scanned tree without rescanning it.
+ *
+ * Endpoints (all answers are JSON, paths are those of the stored files with that content):
+ * - `GET /lookup?digest=HEX[&size=N]`: Looks up one digest, only among files of size N if given.
+ *   Answers `{"digest":"..","size":N,"found":true,"paths":[..]}`.
+ * - `POST /lookup`: Looks up a batch, one query per line of the body, either `HEX` or `SIZE HEX`.
+ *   Answers one JSON object per line (NDJSON), in the order of the queries; an invalid query
+ *   answers `{"query":"..","error":".."}` without failing the rest of the batch.
+ * - `POST /content[?digest=true]`: Hashes the request body and looks up its size and digest.
+ *   If the body has a Content-Length no stored file has, the answer is given without hashing
+ *   the body, and has no `"digest"` field; `digest=true` hashes the body anyway.
+ * - `GET /stats`: The algorithm and the number of files and distinct contents of the index.
+ *
+ * Features:
+ * - A lookup is two probes of open-addressing tables, so it takes microseconds; the time of a
+ *   request is dominated by HTTP, which batching amortizes.
+ * - Binds to the loopback address only, so the index cannot be queried from another machine.
+ * - Requests are served by a fixed pool of threads, each hashing bodies with its own digest.
+ *
+ * Example Usage:
+ * try (LookupServer server = new LookupServer(index, algo, 8377, 4)) {
+ *     server.start();
+ *     // curl 'http://127.0.0.1:8377/lookup?digest=d41d8cd98f00b204e9800998ecf8427e'
+ * }
+ */
+public class LookupServer implements AutoCloseable {
+    private static final int MAX_BATCH_LINE = 1024;
+
+    private final ContentIndex index;
+    private final MessageDigestAlgo algo;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a LookupServer bound to the loopback interface. Lookups are served once it is started.
+     *
+     * @param index   The index to answer lookups from.
+     * @param algo    The algorithm the index was built with, used to hash uploaded content.
+     * @param port    The port to listen on, or 0 to pick a free port.
+     * @param threads The number of threads serving requests.
+     * @throws IOException If the port cannot be bound.
+     */
+    public LookupServer(ContentIndex index, MessageDigestAlgo algo, int port, int threads) throws IOException {
+        this.index = index;
+        this.algo = algo;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/lookup", this::handleLookup);
+        server.createContext("/content", this::handleContent);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * Starts serving lookups in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on, which is the port picked if it was created with port 0.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving lookups; requests still being answered are dropped.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleLookup(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (exchange.getRequestMethod().equals("GET")) {
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                String digest = query.get("digest");
+                if (digest == null) {
+                    sendError(exchange, 400, "Missing digest parameter");
+                    return;
+                }
+                try {
+                    long size = query.containsKey("size") ? parseSize(query.get("size")) : -1;
+                    ByteArrayOutputStream body = new ByteArrayOutputStream();
+                    Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+                    writeResult(out, parseDigest(digest), size);
+                    out.flush();
+                    send(exchange, 200, "application/json", body.toByteArray());
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                }
+            } else if (exchange.getRequestMethod().equals("POST")) {
+                lookupBatch(exchange);
+            } else {
+                sendError(exchange, 405, "Use GET or POST");
+            }
+        }
+    }
+
+    /**
+     * Answers every query line of the request body, streaming the answers as they are found.
+     */
+    private void lookupBatch(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        BufferedReader in = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    int separator = line.indexOf(' ');
+                    if (separator < 0) {
+                        writeResult(out, parseDigest(line), -1);
+                    } else {
+                        writeResult(out, parseDigest(line.substring(separator + 1).trim()),
+                                parseSize(line.substring(0, separator)));
+                    }
+                } catch (IllegalArgumentException e) {
+                    out.write("{\"query\":");
+                    ReportWriter.writeJsonString(out, line.length() > MAX_BATCH_LINE
+                            ? line.substring(0, MAX_BATCH_LINE) : line);
+                    out.write(",\"error\":");
+                    ReportWriter.writeJsonString(out, e.getMessage());
+                    out.write('}');
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    private void handleContent(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendError(exchange, 405, "Use POST");
+                return;
+            }
+
+            boolean wantsDigest = Boolean.parseBoolean(parseQuery(exchange.getRequestURI().getRawQuery()).get("digest"));
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+            long length = contentLength(exchange);
+            if (!wantsDigest && length >= 0 && !index.hasSize(length)) {
+                out.write("{\"size\":" + length + ",\"found\":false,\"paths\":[]}");
+            } else {
+                CountingInputStream in = new CountingInputStream(exchange.getRequestBody());
+                byte[] digest = algo.computeDigest(in);
+                writeResult(out, digest, in.getByteCount());
+            }
+            out.flush();
+            send(exchange, 200, "application/json", body.toByteArray());
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Use GET");
+                return;
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+            out.write("{\"algorithm\":");
+            ReportWriter.writeJsonString(out, index.getAlgorithm());
+            out.write(",\"files\":" + index.getFileCount()
+                    + ",\"hashedFiles\":" + index.getHashedFileCount()
+                    + ",\"distinctContents\":" + index.getDistinctContentCount() + "}");
+            out.flush();
+            send(exchange, 200, "application/json", body.toByteArray());
+        }
+    }
+
+    /**
+     * Writes the answer to a lookup of the digest, among the files of the size unless it is negative.
+     */
+    private void writeResult(Writer out, byte[] digest, long size) throws IOException {
+        List<Path> paths = size < 0 ? index.find(digest) : index.find(size, digest);
+        out.write("{\"digest\":\"" + Hex.encodeHexString(digest) + "\"");
+        if (size >= 0) {
+            out.write(",\"size\":" + size);
+        }
+        out.write(",\"found\":" + !paths.isEmpty() + ",\"paths\":[");
+        for (int i = 0; i < paths.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            ReportWriter.writeJsonString(out, paths.get(i).toString());
+        }
+        out.write("]}");
+    }
+
+    private byte[] parseDigest(String hex) {
+        if (hex.length() != index.getDigestLength() * 2) {
+            throw new IllegalArgumentException("Expected a " + index.getAlgorithm() + " digest of "
+                    + index.getDigestLength() * 2 + " hex digits: " + hex);
+        }
+        try {
+            return Hex.decodeHex(hex);
+        } catch (DecoderException e) {
+            throw new IllegalArgumentException("Invalid digest: " + hex);
+        }
+    }
+
+    private static long parseSize(String size) {
+        long value = Long.parseLong(size);
+        if (value < 0) {
+            throw new IllegalArgumentException("Size cannot be negative: " + size);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the length of the request body, or -1 if the client did not announce it.
+     */
+    private static long contentLength(HttpExchange exchange) {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        try {
+            return length == null ? -1 : Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                query.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+        out.write("{\"error\":");
+        ReportWriter.writeJsonString(out, message);
+        out.write('}');
+        out.flush();
+        send(exchange, status, "application/json", body.toByteArray());
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package io.muzoo.ssc.pipeline;
+
+/**
+ * The BloomFilter class remembers a set of 8-byte keys (e.g., file sizes) in a fixed array of
+ * bits, to tell cheaply whether a key has been seen before. It answers "no" exactly and "maybe"
+ * with a small probability of being wrong, the false-positive rate, which grows as keys are added.
+ *
+ * Memory layout:
+ * - bits: bitCount bits packed in longs. Every key sets hashCount of them, chosen by double
+ *   hashing two 32-bit halves of a 64-bit mix of the key.
+ *
+ * A key therefore costs about 1.44 * log2(1 / rate) bits, e.g. 1.2 bytes at a rate of 1%,
+ * however many bytes the key and the structures it stands in for would take.
+ *
+ * Features:
+ * - `forKeys` sizes the filter for a known number of keys and a target false-positive rate,
+ *   within a memory limit; with less memory than needed, the rate is higher than the target.
+ * - Not thread-safe; a filter is filled and queried from a single thread.
+ *
+ * Example Usage:
+ * BloomFilter seen = BloomFilter.forKeys(sizes.length, 0.01, 1 << 20);
+ * for (long size : sizes) {
+ *     if (seen.put(size)) {
+ *         // the size may have been seen before
+ *     }
+ * }
+ */
+public class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Constructs an empty BloomFilter.
+     *
+     * @param bitCount  The number of bits of the filter.
+     * @param hashCount The number of bits set by every key.
+     * @throws IllegalArgumentException If either count is not positive, or the filter would not fit in an array.
+     */
+    public BloomFilter(long bitCount, int hashCount) {
+        if (bitCount <= 0 || hashCount <= 0) {
+            throw new IllegalArgumentException("Bit count and hash count must be positive: " + bitCount + ", " + hashCount);
+        }
+        if ((bitCount + Long.SIZE - 1) / Long.SIZE > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many bits for a single filter: " + bitCount);
+        }
+        this.bits = new long[(int) ((bitCount + Long.SIZE - 1) / Long.SIZE)];
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Creates a BloomFilter sized for a number of keys and a target false-positive rate, using at
+     * most the given memory. The number of hashes is the optimal one for the bits actually used.
+     *
+     * @param expectedKeys      The number of keys that will be added.
+     * @param falsePositiveRate The target false-positive rate once every key is added, above 0 and below 1.
+     * @param maxBytes          The most memory the bits may take, in bytes.
+     * @return The empty filter.
+     * @throws IllegalArgumentException If the rate is not above 0 and below 1, or the memory is not positive.
+     */
+    public static BloomFilter forKeys(long expectedKeys, double falsePositiveRate, long maxBytes) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False-positive rate must be above 0 and below 1: " + falsePositiveRate);
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Memory must be positive: " + maxBytes);
+        }
+        long keys = Math.max(1, expectedKeys);
+        double optimalBits = Math.ceil(-keys * Math.log(falsePositiveRate) / (LN2 * LN2));
+        long bitCount = (long) Math.max(Long.SIZE, Math.min(optimalBits, Math.min(maxBytes, Integer.MAX_VALUE / 2L) * 8.0));
+        int hashCount = (int) Math.max(1, Math.round((double) bitCount / keys * LN2));
+        return new BloomFilter(bitCount, hashCount);
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Returns the memory taken by the bits of the filter.
+     *
+     * @return The size of the bits in bytes.
+     */
+    public long getMemoryUsage() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    /**
+     * Returns the probability that a key never added is reported as seen, once the given number
+     * of distinct keys has been added.
+     *
+     * @param keys The number of distinct keys added.
+     * @return The expected false-positive rate.
+     */
+    public double getFalsePositiveRate(long keys) {
+        return Math.pow(1 - Math.exp(-(double) hashCount * keys / bitCount), hashCount);
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param key The key.
+     * @return `true` if the key may have been added before, `false` if it certainly was not.
+     */
+    public boolean put(long key) {
+        long h = mix(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        boolean seen = true;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((bits[word] & mask) == 0) {
+                seen = false;
+                bits[word] |= mask;
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * Tells whether a key may have been added to the filter.
+     *
+     * @param key The key.
+     * @return `true` if the key may have been added, `false` if it certainly was not.
+     */
+    public boolean mightContain(long key) {
+        long h = mix(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spreads the bits of the key with the 64-bit finalizer of MurmurHash3, so that keys with
+     * little entropy, such as file sizes, set unrelated bits.
+     */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,236 @@
+package io.muzoo.ssc.pipeline;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The CompactPathStore class registers the files and directories of a walk under int ids
+ * without keeping a Path per file. Directories form a table of nodes with parent pointers,
+ * files are (directory id, name id) pairs in primitive arrays, and every distinct name is
+ * stored once as UTF-8 bytes in a shared arena. A full Path is only built when it is asked for.
+ *
+ * Memory layout:
+ * - directoryParent, directoryName: the parent id (-1 for a root) and name id of each directory.
+ * - fileDirectory, fileName: the directory id (-1 without one) and name id of each file.
+ * - nameBytes, nameOffsets: the bytes of all distinct names back to back, and where each starts.
+ * - nameSlots: an open-addressing table from name to name id used to intern names (load factor at most 1/2).
+ *
+ * A file therefore costs 8 bytes plus, if its name is new, its UTF-8 bytes and about 12 bytes,
+ * instead of a Path object holding the whole directory prefix.
+ *
+ * Features:
+ * - Ids are assigned in the order in which files and directories are added, starting at 0.
+ * - A root directory, or a file added without a directory, keeps its whole path as its name.
+ * - Not thread-safe for writes; the walk adds entries from a single thread. Reads may run
+ *   concurrently once the walk is done.
+ *
+ * Example Usage:
+ * CompactPathStore store = new CompactPathStore();
+ * int root = store.addDirectory(-1, Paths.get("/data"));
+ * int file = store.addFile(root, Paths.get("/data/a.txt"));
+ * Path path = store.getFile(file); // /data/a.txt
+ */
+public class CompactPathStore {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] directoryParent = new int[INITIAL_CAPACITY];
+    private int[] directoryName = new int[INITIAL_CAPACITY];
+    private int directoryCount;
+
+    private int[] fileDirectory = new int[INITIAL_CAPACITY];
+    private int[] fileName = new int[INITIAL_CAPACITY];
+    private int fileCount;
+
+    private byte[] nameBytes = new byte[INITIAL_CAPACITY * 16];
+    private int nameBytesSize;
+    private int[] nameOffsets = new int[INITIAL_CAPACITY + 1];
+    private int nameCount;
+    private int[] nameSlots = newSlots(INITIAL_CAPACITY * 2);
+
+    /**
+     * Adds a directory.
+     *
+     * @param parentId The id of the parent directory, or -1 for a root.
+     * @param dir      The directory; only its last name is kept unless it is a root.
+     * @return The id of the directory.
+     */
+    public int addDirectory(int parentId, Path dir) {
+        if (directoryCount == directoryParent.length) {
+            directoryParent = Arrays.copyOf(directoryParent, directoryCount * 2);
+            directoryName = Arrays.copyOf(directoryName, directoryCount * 2);
+        }
+        directoryParent[directoryCount] = parentId;
+        directoryName[directoryCount] = intern(parentId < 0 ? dir.toString() : lastName(dir));
+        return directoryCount++;
+    }
+
+    /**
+     * Adds a file.
+     *
+     * @param directoryId The id of the directory holding the file, or -1 if there is none.
+     * @param file        The file; only its last name is kept unless it has no directory.
+     * @return The id of the file.
+     */
+    public int addFile(int directoryId, Path file) {
+        if (fileCount == fileDirectory.length) {
+            fileDirectory = Arrays.copyOf(fileDirectory, fileCount * 2);
+            fileName = Arrays.copyOf(fileName, fileCount * 2);
+        }
+        fileDirectory[fileCount] = directoryId;
+        fileName[fileCount] = intern(directoryId < 0 ? file.toString() : lastName(file));
+        return fileCount++;
+    }
+
+    /**
+     * Builds the full path of a file.
+     *
+     * @param fileId The id of the file.
+     * @return The path of the file.
+     */
+    public Path getFile(int fileId) {
+        String name = name(fileName[fileId]);
+        int directoryId = fileDirectory[fileId];
+        return directoryId < 0 ? Paths.get(name) : getDirectory(directoryId).resolve(name);
+    }
+
+    /**
+     * Builds the full path of a directory from its root down.
+     *
+     * @param directoryId The id of the directory.
+     * @return The path of the directory.
+     */
+    public Path getDirectory(int directoryId) {
+        int depth = 0;
+        for (int dir = directoryId; directoryParent[dir] >= 0; dir = directoryParent[dir]) {
+            depth++;
+        }
+        String[] names = new String[depth];
+        int dir = directoryId;
+        for (int i = depth - 1; i >= 0; i--) {
+            names[i] = name(directoryName[dir]);
+            dir = directoryParent[dir];
+        }
+        return Paths.get(name(directoryName[dir]), names);
+    }
+
+    public String getFileName(int fileId) {
+        return name(fileName[fileId]);
+    }
+
+    public String getDirectoryName(int directoryId) {
+        return name(directoryName[directoryId]);
+    }
+
+    public int getFileDirectory(int fileId) {
+        return fileDirectory[fileId];
+    }
+
+    public int getParent(int directoryId) {
+        return directoryParent[directoryId];
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public int getDirectoryCount() {
+        return directoryCount;
+    }
+
+    /**
+     * Returns a read-only list view of the files, building each Path when it is read.
+     *
+     * @return The files of the store, in id order.
+     */
+    public List<Path> files() {
+        return new AbstractList<>() {
+            @Override
+            public Path get(int index) {
+                if (index < 0 || index >= fileCount) {
+                    throw new IndexOutOfBoundsException("No file with id " + index + " in a store of " + fileCount);
+                }
+                return getFile(index);
+            }
+
+            @Override
+            public int size() {
+                return fileCount;
+            }
+        };
+    }
+
+    private String name(int nameId) {
+        int offset = nameOffsets[nameId];
+        return new String(nameBytes, offset, nameOffsets[nameId + 1] - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the id of a name, adding it to the arena if it is new.
+     */
+    private int intern(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int mask = nameSlots.length - 1;
+        int slot = mix(Arrays.hashCode(bytes)) & mask;
+        while (nameSlots[slot] != EMPTY) {
+            int nameId = nameSlots[slot];
+            int offset = nameOffsets[nameId];
+            if (Arrays.equals(bytes, 0, bytes.length, nameBytes, offset, nameOffsets[nameId + 1])) {
+                return nameId;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (nameBytesSize + bytes.length > nameBytes.length) {
+            nameBytes = Arrays.copyOf(nameBytes, Math.max(nameBytes.length * 2, nameBytesSize + bytes.length));
+        }
+        System.arraycopy(bytes, 0, nameBytes, nameBytesSize, bytes.length);
+        nameBytesSize += bytes.length;
+        if (nameCount + 2 > nameOffsets.length) {
+            nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+        }
+        nameOffsets[nameCount + 1] = nameBytesSize;
+        nameSlots[slot] = nameCount;
+        int nameId = nameCount++;
+        if (nameCount * 2 > nameSlots.length) {
+            rehash();
+        }
+        return nameId;
+    }
+
+    private void rehash() {
+        nameSlots = newSlots(nameSlots.length * 2);
+        int mask = nameSlots.length - 1;
+        for (int nameId = 0; nameId < nameCount; nameId++) {
+            int offset = nameOffsets[nameId];
+            int hash = 1;
+            for (int i = offset; i < nameOffsets[nameId + 1]; i++) {
+                hash = 31 * hash + nameBytes[i];
+            }
+            int slot = mix(hash) & mask;
+            while (nameSlots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            nameSlots[slot] = nameId;
+        }
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static String lastName(Path path) {
+        Path name = path.getFileName();
+        return name == null ? path.toString() : name.toString();
+    }
+}
@@ -0,0 +1,146 @@
+package io.muzoo.ssc.pipeline;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The DiskPathStore class registers file paths under int ids like an in-memory list, but keeps
+ * them in two files instead of on the heap, so a scan can register any number of files within a
+ * fixed amount of memory.
+ *
+ * File layout:
+ * - paths.bin: the UTF-8 bytes of every path, each preceded by its length as an int.
+ * - index.bin: the offset of every path in paths.bin as a long, in id order.
+ *
+ * Features:
+ * - Ids are assigned in the order in which paths are added, starting at 0.
+ * - Paths are read back with positional reads, so any number of threads can read at once.
+ * - Paths added since the last read are flushed before the next read.
+ *
+ * Example Usage:
+ * try (DiskPathStore store = new DiskPathStore(tempDirectory)) {
+ *     int id = store.add(path);
+ *     Path same = store.get(id);
+ * }
+ */
+public class DiskPathStore implements Closeable {
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private final Path dataFile;
+    private final Path indexFile;
+    private final DataOutputStream data;
+    private final DataOutputStream index;
+    private FileChannel dataChannel;
+    private FileChannel indexChannel;
+    private long dataSize;
+    private int size;
+    private volatile boolean dirty;
+
+    /**
+     * Constructs an empty DiskPathStore whose files are created in the given directory.
+     *
+     * @param directory The directory holding the files of the store.
+     * @throws IOException If the files cannot be created.
+     */
+    public DiskPathStore(Path directory) throws IOException {
+        this.dataFile = directory.resolve("paths.bin");
+        this.indexFile = directory.resolve("index.bin");
+        this.data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFile), IO_BUFFER_SIZE));
+        this.index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile), IO_BUFFER_SIZE));
+    }
+
+    /**
+     * Adds a path to the store.
+     *
+     * @param path The path to add.
+     * @return The id of the path.
+     * @throws IOException If the path cannot be written.
+     */
+    public synchronized int add(Path path) throws IOException {
+        byte[] bytes = path.toString().getBytes(StandardCharsets.UTF_8);
+        index.writeLong(dataSize);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+        dataSize += Integer.BYTES + bytes.length;
+        dirty = true;
+        return size++;
+    }
+
+    /**
+     * Returns the path with the given id.
+     *
+     * @param id The id of the path.
+     * @return The path.
+     * @throws IOException If the path cannot be read.
+     * @throws IndexOutOfBoundsException If no path has that id.
+     */
+    public Path get(int id) throws IOException {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No path with id " + id + " in a store of " + size);
+        }
+        if (dirty) {
+            flush();
+        }
+        ByteBuffer offset = ByteBuffer.allocate(Long.BYTES);
+        readFully(indexChannel, offset, (long) id * Long.BYTES);
+        long position = offset.flip().getLong();
+
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(dataChannel, length, position);
+        ByteBuffer bytes = ByteBuffer.allocate(length.flip().getInt());
+        readFully(dataChannel, bytes, position + Integer.BYTES);
+        return Paths.get(new String(bytes.array(), StandardCharsets.UTF_8));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Closes and deletes the files of the store.
+     *
+     * @throws IOException If the files cannot be closed or deleted.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        data.close();
+        index.close();
+        if (dataChannel != null) {
+            dataChannel.close();
+            indexChannel.close();
+        }
+        Files.deleteIfExists(dataFile);
+        Files.deleteIfExists(indexFile);
+    }
+
+    private synchronized void flush() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        data.flush();
+        index.flush();
+        if (dataChannel == null) {
+            dataChannel = FileChannel.open(dataFile, StandardOpenOption.READ);
+            indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ);
+        }
+        dirty = false;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of path store");
+            }
+        }
+    }
+}
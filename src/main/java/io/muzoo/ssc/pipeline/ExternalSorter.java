@@ -0,0 +1,476 @@
+package io.muzoo.ssc.pipeline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The ExternalSorter class sorts (size, digest, file id) records within a fixed memory budget,
+ * so files can be grouped by size or digest however many there are. Records are collected in a
+ * byte buffer; whenever the buffer is full it is sorted and written to a run file in the temp
+ * directory. Reading the records back merges all runs with a k-way merge, so records with the
+ * same size and digest come out next to each other and every group can be processed as a stream.
+ *
+ * Memory layout: a record is the size (8 bytes, big-endian), the digest and the file id
+ * (4 bytes, big-endian) back to back, so comparing two records byte by byte orders them by
+ * size, then digest, then file id. Sorting takes two more ints per record for the merge sort,
+ * which the budget accounts for. The buffer grows on demand, so small scans never allocate
+ * the whole budget, and it is released as soon as the records are read back.
+ *
+ * Features:
+ * - If every record fits in the buffer, nothing is written to disk.
+ * - At most MAX_FAN_IN runs are merged at once; more runs are first merged into larger runs.
+ * - Records with the same size and digest come out in ascending file id order, so the groups
+ *   come out in walk order, as they do in memory.
+ * - Not thread-safe; records are added and read from a single thread.
+ *
+ * Example Usage:
+ * try (ExternalSorter sorter = new ExternalSorter(16, 64L << 20, tempDirectory)) {
+ *     sorter.add(size, digest, fileId);
+ *     try (ExternalSorter.Cursor cursor = sorter.sorted()) {
+ *         while (cursor.next()) {
+ *             boolean duplicate = cursor.sameDigestAsPrevious() || cursor.sameDigestAsNext();
+ *         }
+ *     }
+ * }
+ */
+public class ExternalSorter implements Closeable {
+    private static final int MAX_FAN_IN = 64;
+    private static final int MIN_RUN_RECORDS = 1024;
+    private static final int INITIAL_RECORDS = 4096;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private final int digestLength;
+    private final int recordLength;
+    private final int runCapacity;
+    private final Path tempDirectory;
+    private final List<Path> runs = new ArrayList<>();
+
+    private byte[] buffer;
+    private int count;
+    private long spilledBytes;
+    private boolean reading;
+
+    /**
+     * Constructs an empty ExternalSorter.
+     *
+     * @param digestLength  The length of the digest of every record, in bytes.
+     * @param memoryBudget  The number of bytes the buffered records and their sort may take.
+     * @param tempDirectory The directory in which run files are created.
+     * @throws IllegalArgumentException If the digest length is negative.
+     */
+    public ExternalSorter(int digestLength, long memoryBudget, Path tempDirectory) {
+        if (digestLength < 0) {
+            throw new IllegalArgumentException("Digest length cannot be negative: " + digestLength);
+        }
+        this.digestLength = digestLength;
+        this.recordLength = Long.BYTES + digestLength + Integer.BYTES;
+        long records = memoryBudget / (recordLength + 2 * Integer.BYTES);
+        this.runCapacity = (int) Math.max(MIN_RUN_RECORDS, Math.min(records, Integer.MAX_VALUE / recordLength));
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Adds a record, spilling the buffered records to a run file first if the buffer is full.
+     *
+     * @param size   The size of the file.
+     * @param digest The digest of the file; exactly digestLength bytes.
+     * @param fileId The id of the file.
+     * @throws IOException If a run file cannot be written.
+     * @throws IllegalArgumentException If the digest does not have the length of the sorter.
+     * @throws IllegalStateException If the records are already being read back.
+     */
+    public void add(long size, byte[] digest, int fileId) throws IOException {
+        if (digest.length != digestLength) {
+            throw new IllegalArgumentException("Expected a digest of " + digestLength + " bytes, got " + digest.length);
+        }
+        if (reading) {
+            throw new IllegalStateException("Records cannot be added once they are read back");
+        }
+        if (count == runCapacity) {
+            spill();
+        }
+        ensureCapacity();
+        int offset = count++ * recordLength;
+        putLong(buffer, offset, size);
+        System.arraycopy(digest, 0, buffer, offset + Long.BYTES, digestLength);
+        putInt(buffer, offset + Long.BYTES + digestLength, fileId);
+    }
+
+    /**
+     * Returns a cursor over all records in sorted order. Records cannot be added afterwards.
+     *
+     * @return A cursor positioned before the first record.
+     * @throws IOException If the runs cannot be written or opened.
+     */
+    public Cursor sorted() throws IOException {
+        reading = true;
+        if (runs.isEmpty()) {
+            int[] order = sortBuffer();
+            byte[] records = buffer;
+            buffer = null;
+            return new Cursor(new BufferSource(records, order, count));
+        }
+
+        if (count > 0) {
+            spill();
+        }
+        buffer = null;
+        while (runs.size() > MAX_FAN_IN) {
+            List<Path> batch = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+            runs.subList(0, MAX_FAN_IN).clear();
+            runs.add(mergeRuns(batch));
+        }
+        return new Cursor(new MergeSource(openRuns(runs)));
+    }
+
+    /**
+     * Returns the number of bytes written to run files so far, including intermediate merges.
+     *
+     * @return The number of spilled bytes.
+     */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * Deletes the remaining run files.
+     *
+     * @throws IOException If a run file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    private void ensureCapacity() {
+        if (buffer == null) {
+            buffer = new byte[Math.min(INITIAL_RECORDS, runCapacity) * recordLength];
+        } else if (count * recordLength == buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(count * 2, runCapacity) * recordLength);
+        }
+    }
+
+    /**
+     * Sorts the buffered records and writes them to a new run file.
+     */
+    private void spill() throws IOException {
+        int[] order = sortBuffer();
+        Path run = Files.createTempFile(tempDirectory, "run-", ".bin");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER_SIZE)) {
+            for (int i = 0; i < count; i++) {
+                out.write(buffer, order[i] * recordLength, recordLength);
+            }
+        }
+        runs.add(run);
+        spilledBytes += (long) count * recordLength;
+        count = 0;
+    }
+
+    /**
+     * Merges the given runs into a single new run and deletes them.
+     */
+    private Path mergeRuns(List<Path> batch) throws IOException {
+        Path merged = Files.createTempFile(tempDirectory, "run-", ".bin");
+        try (Cursor cursor = new Cursor(new MergeSource(openRuns(batch)));
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(merged), IO_BUFFER_SIZE)) {
+            while (cursor.next()) {
+                out.write(cursor.current);
+                spilledBytes += recordLength;
+            }
+        }
+        for (Path run : batch) {
+            Files.deleteIfExists(run);
+        }
+        return merged;
+    }
+
+    private List<RunSource> openRuns(List<Path> paths) throws IOException {
+        List<RunSource> sources = new ArrayList<>(paths.size());
+        try {
+            for (Path path : paths) {
+                sources.add(new RunSource(path));
+            }
+        } catch (IOException e) {
+            for (RunSource source : sources) {
+                source.close();
+            }
+            throw e;
+        }
+        return sources;
+    }
+
+    /**
+     * Sorts the indices of the buffered records with a bottom-up merge sort.
+     */
+    private int[] sortBuffer() {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        int[] scratch = new int[count];
+        for (int width = 1; width < count; width *= 2) {
+            for (int from = 0; from < count - width; from += 2 * width) {
+                merge(order, scratch, from, from + width, Math.min(from + 2 * width, count));
+            }
+        }
+        return order;
+    }
+
+    private void merge(int[] order, int[] scratch, int from, int middle, int to) {
+        int left = from;
+        int right = middle;
+        int out = from;
+        while (left < middle && right < to) {
+            scratch[out++] = compareBuffered(order[left], order[right]) <= 0 ? order[left++] : order[right++];
+        }
+        while (left < middle) {
+            scratch[out++] = order[left++];
+        }
+        while (right < to) {
+            scratch[out++] = order[right++];
+        }
+        System.arraycopy(scratch, from, order, from, to - from);
+    }
+
+    private int compareBuffered(int a, int b) {
+        int offsetA = a * recordLength;
+        int offsetB = b * recordLength;
+        return Arrays.compareUnsigned(buffer, offsetA, offsetA + recordLength, buffer, offsetB, offsetB + recordLength);
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        for (int i = Integer.BYTES - 1; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * The Cursor class walks the sorted records one at a time. Besides the current record it
+     * knows its neighbours, so a caller can tell where a group of equal sizes or digests starts
+     * and ends without holding the group.
+     */
+    public final class Cursor implements Closeable {
+        private final RecordSource source;
+        private byte[] previous = new byte[recordLength];
+        private byte[] current = new byte[recordLength];
+        private byte[] following = new byte[recordLength];
+        private boolean hasPrevious;
+        private boolean hasCurrent;
+        private boolean hasFollowing;
+
+        private Cursor(RecordSource source) throws IOException {
+            this.source = source;
+            this.hasFollowing = source.read(following);
+        }
+
+        /**
+         * Moves to the next record.
+         *
+         * @return `true` if there is a next record, `false` once every record has been read.
+         * @throws IOException If a run file cannot be read.
+         */
+        public boolean next() throws IOException {
+            byte[] recycled = previous;
+            previous = current;
+            hasPrevious = hasCurrent;
+            current = following;
+            hasCurrent = hasFollowing;
+            following = recycled;
+            hasFollowing = hasCurrent && source.read(following);
+            return hasCurrent;
+        }
+
+        public long getSize() {
+            return getLong(current, 0);
+        }
+
+        /**
+         * Returns a copy of the digest of the current record.
+         *
+         * @return The digest.
+         */
+        public byte[] getDigest() {
+            return Arrays.copyOfRange(current, Long.BYTES, Long.BYTES + digestLength);
+        }
+
+        public int getFileId() {
+            return getInt(current, Long.BYTES + digestLength);
+        }
+
+        public boolean sameSizeAsPrevious() {
+            return hasPrevious && Arrays.equals(current, 0, Long.BYTES, previous, 0, Long.BYTES);
+        }
+
+        public boolean sameSizeAsNext() {
+            return hasFollowing && Arrays.equals(current, 0, Long.BYTES, following, 0, Long.BYTES);
+        }
+
+        public boolean sameDigestAsPrevious() {
+            int keyLength = Long.BYTES + digestLength;
+            return hasPrevious && Arrays.equals(current, 0, keyLength, previous, 0, keyLength);
+        }
+
+        public boolean sameDigestAsNext() {
+            int keyLength = Long.BYTES + digestLength;
+            return hasFollowing && Arrays.equals(current, 0, keyLength, following, 0, keyLength);
+        }
+
+        /**
+         * Closes the run files read by the cursor.
+         *
+         * @throws IOException If a run file cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+
+    /**
+     * A sorted stream of records.
+     */
+    private interface RecordSource extends Closeable {
+        /**
+         * Reads the next record into the given array.
+         *
+         * @return `false` if there are no more records.
+         */
+        boolean read(byte[] record) throws IOException;
+    }
+
+    private final class BufferSource implements RecordSource {
+        private final byte[] records;
+        private final int[] order;
+        private final int size;
+        private int position;
+
+        private BufferSource(byte[] records, int[] order, int size) {
+            this.records = records;
+            this.order = order;
+            this.size = size;
+        }
+
+        @Override
+        public boolean read(byte[] record) {
+            if (position == size) {
+                return false;
+            }
+            System.arraycopy(records, order[position++] * recordLength, record, 0, recordLength);
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final class RunSource implements RecordSource {
+        private final DataInputStream in;
+        private final byte[] head = new byte[recordLength];
+
+        private RunSource(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), IO_BUFFER_SIZE));
+        }
+
+        @Override
+        public boolean read(byte[] record) throws IOException {
+            try {
+                in.readFully(record);
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Merges sorted runs with a priority queue holding the head record of every run.
+     */
+    private final class MergeSource implements RecordSource {
+        private final List<RunSource> sources;
+        private final PriorityQueue<RunSource> heads;
+
+        private MergeSource(List<RunSource> sources) throws IOException {
+            this.sources = sources;
+            this.heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                    (a, b) -> Arrays.compareUnsigned(a.head, b.head));
+            for (RunSource source : sources) {
+                if (source.read(source.head)) {
+                    heads.add(source);
+                }
+            }
+        }
+
+        @Override
+        public boolean read(byte[] record) throws IOException {
+            RunSource source = heads.poll();
+            if (source == null) {
+                return false;
+            }
+            System.arraycopy(source.head, 0, record, 0, recordLength);
+            if (source.read(source.head)) {
+                heads.add(source);
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (RunSource source : sources) {
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.muzoo.ssc.pipeline;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * The FileKeys class reads the identity of a physical file, its device and inode, as two longs,
+ * so that paths linking to the same file can be told apart without keeping a boxed file key
+ * object per file. Keys are only read for the files that need them (e.g., files whose size
+ * collides with another file), not during the walk.
+ *
+ * Features:
+ * - Uses the "unix" attribute view; on file systems without it (e.g., Windows), no file has a
+ *   key and no path is ever treated as a link.
+ * - `format` renders a key like the file key of the JDK, e.g. "(dev=fe00,ino=12050696)".
+ * - `realPath` tells links apart from hardlinks: paths sharing a key are hardlinks only if
+ *   they also have different real paths; otherwise one reaches the other through symbolic links.
+ *
+ * Example Usage:
+ * long[] key = new long[2];
+ * if (FileKeys.read(path, false, key)) {
+ *     String name = FileKeys.format(key[0], key[1]);
+ * }
+ */
+public final class FileKeys {
+    private static volatile boolean unsupported;
+
+    private FileKeys() {
+    }
+
+    /**
+     * Reads the device and inode of a file.
+     *
+     * @param file        The file.
+     * @param followLinks Whether a symbolic link is resolved to the file it points to.
+     * @param key         Receives the device at index 0 and the inode at index 1.
+     * @return `false` if the file has no key, because the file system has none or the file cannot be read.
+     */
+    public static boolean read(Path file, boolean followLinks, long[] key) {
+        if (unsupported) {
+            return false;
+        }
+        try {
+            Map<String, Object> attributes = followLinks
+                    ? Files.readAttributes(file, "unix:dev,ino")
+                    : Files.readAttributes(file, "unix:dev,ino", LinkOption.NOFOLLOW_LINKS);
+            key[0] = ((Number) attributes.get("dev")).longValue();
+            key[1] = ((Number) attributes.get("ino")).longValue();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            unsupported = true;
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the real path of a file, with every symbolic link on the way resolved. Two paths
+     * with the same real path are the same directory entry, one reached through links.
+     *
+     * @param file The file.
+     * @return The real path, or the absolute normalized path if the file cannot be resolved.
+     */
+    public static Path realPath(Path file) {
+        try {
+            return file.toRealPath();
+        } catch (IOException e) {
+            return file.toAbsolutePath().normalize();
+        }
+    }
+
+    /**
+     * Tells whether a path is the real path of its file, i.e. reaches it without any link.
+     *
+     * @param file     The path.
+     * @param realPath The real path of the file, as returned by `realPath`.
+     * @return `true` if the absolute normalized path is the real path.
+     */
+    public static boolean isRealPath(Path file, Path realPath) {
+        return file.toAbsolutePath().normalize().equals(realPath);
+    }
+
+    /**
+     * Formats a key the way the JDK formats the file key of a Unix file.
+     *
+     * @param device The device of the file.
+     * @param inode  The inode of the file.
+     * @return The formatted key.
+     */
+    public static String format(long device, long inode) {
+        return "(dev=" + Long.toHexString(device) + ",ino=" + inode + ")";
+    }
+}
@@ -0,0 +1,283 @@
+package io.muzoo.ssc.pipeline;
+
+import java.util.Arrays;
+
+/**
+ * The GroupingTable class groups file indices by a fixed-width binary key (a file size,
+ * a digest, ...) without creating any object per file. It is an open-addressing hash table
+ * whose slots point at groups; every group keeps its key in a shared byte arena and its
+ * members in a linked list threaded through two int arrays.
+ *
+ * Memory layout:
+ * - slots: one int per slot holding a group id, or -1 for an empty slot (load factor at most 1/2).
+ * - groupKeys: the keys of all groups back to back, keyWidth bytes each.
+ * - groupHead, groupTail, groupSize: the first entry, last entry and member count of each group.
+ * - entryFile, entryNext: the file index of each entry and the next entry of the same group.
+ *
+ * A file therefore costs 8 bytes and a group about keyWidth + 20 bytes, instead of a boxed key,
+ * a map entry and an ArrayList per group in a HashMap.
+ *
+ * Features:
+ * - Groups are visited in the order in which their first member was added.
+ * - Members of a group are visited in the order in which they were added.
+ * - Not thread-safe; every stage fills its tables from a single thread. Once a table is
+ *   complete, `find` may be called from many threads at once.
+ *
+ * Example Usage:
+ * GroupingTable table = new GroupingTable(Long.BYTES, 1024);
+ * table.add(4096L, 0);
+ * table.add(4096L, 7);
+ * table.forEachGroup((key, fileIds) -> System.out.println(GroupingTable.toLong(key) + ": " + fileIds.length));
+ */
+public class GroupingTable {
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private final int keyWidth;
+    private final byte[] scratchKey;
+
+    private int[] slots;
+    private byte[] groupKeys;
+    private int[] groupHead;
+    private int[] groupTail;
+    private int[] groupSize;
+    private int groupCount;
+
+    private int[] entryFile;
+    private int[] entryNext;
+    private int entryCount;
+
+    /**
+     * The GroupConsumer interface receives the groups of a table, one at a time.
+     */
+    @FunctionalInterface
+    public interface GroupConsumer {
+        /**
+         * Accepts a single group.
+         *
+         * @param key     A copy of the key shared by the group.
+         * @param fileIds The file indices of the group, in the order in which they were added.
+         */
+        void accept(byte[] key, int[] fileIds);
+    }
+
+    /**
+     * Constructs an empty GroupingTable.
+     *
+     * @param keyWidth         The width of every key, in bytes.
+     * @param expectedEntries  The number of entries expected, used to size the table up front.
+     * @throws IllegalArgumentException If the key width is not positive.
+     */
+    public GroupingTable(int keyWidth, int expectedEntries) {
+        if (keyWidth <= 0) {
+            throw new IllegalArgumentException("Key width must be positive: " + keyWidth);
+        }
+        int initial = Math.max(MIN_CAPACITY, expectedEntries);
+        this.keyWidth = keyWidth;
+        this.scratchKey = new byte[keyWidth];
+        this.slots = new int[Integer.highestOneBit(initial * 2 - 1) << 1];
+        Arrays.fill(slots, EMPTY);
+        this.groupKeys = new byte[initial * keyWidth];
+        this.groupHead = new int[initial];
+        this.groupTail = new int[initial];
+        this.groupSize = new int[initial];
+        this.entryFile = new int[initial];
+        this.entryNext = new int[initial];
+    }
+
+    public int getKeyWidth() {
+        return keyWidth;
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Adds a file to the group of the given key, creating the group on first use.
+     *
+     * @param key    The key of the file; exactly keyWidth bytes. The table keeps a copy.
+     * @param fileId The index of the file.
+     * @throws IllegalArgumentException If the key does not have the width of the table.
+     */
+    public void add(byte[] key, int fileId) {
+        if (key.length != keyWidth) {
+            throw new IllegalArgumentException("Expected a key of " + keyWidth + " bytes, got " + key.length);
+        }
+
+        int group = findOrCreateGroup(key);
+        int entry = newEntry(fileId);
+        if (groupSize[group] == 0) {
+            groupHead[group] = entry;
+        } else {
+            entryNext[groupTail[group]] = entry;
+        }
+        groupTail[group] = entry;
+        groupSize[group]++;
+    }
+
+    /**
+     * Adds a file to the group of the given 8-byte key, e.g. a file size.
+     *
+     * @param key    The key of the file.
+     * @param fileId The index of the file.
+     * @throws IllegalArgumentException If the table does not have 8-byte keys.
+     */
+    public void add(long key, int fileId) {
+        putLong(scratchKey, key);
+        add(scratchKey, fileId);
+    }
+
+    /**
+     * Returns the members of the group of the given key.
+     *
+     * @param key The key to look up; exactly keyWidth bytes.
+     * @return The file indices of the group, in the order in which they were added, or an empty
+     *         array if no file has the key.
+     * @throws IllegalArgumentException If the key does not have the width of the table.
+     */
+    public int[] find(byte[] key) {
+        if (key.length != keyWidth) {
+            throw new IllegalArgumentException("Expected a key of " + keyWidth + " bytes, got " + key.length);
+        }
+
+        int mask = slots.length - 1;
+        for (int slot = hash(key, 0) & mask; ; slot = (slot + 1) & mask) {
+            int group = slots[slot];
+            if (group == EMPTY) {
+                return new int[0];
+            }
+            if (Arrays.equals(groupKeys, group * keyWidth, (group + 1) * keyWidth, key, 0, keyWidth)) {
+                return members(group);
+            }
+        }
+    }
+
+    /**
+     * Returns the members of the group of the given 8-byte key, e.g. a file size.
+     *
+     * @param key The key to look up.
+     * @return The file indices of the group, or an empty array if no file has the key.
+     * @throws IllegalArgumentException If the table does not have 8-byte keys.
+     */
+    public int[] find(long key) {
+        byte[] bytes = new byte[Long.BYTES];
+        putLong(bytes, key);
+        return find(bytes);
+    }
+
+    /**
+     * Visits every group, in the order in which the groups were created.
+     *
+     * @param consumer The consumer receiving each group.
+     */
+    public void forEachGroup(GroupConsumer consumer) {
+        for (int group = 0; group < groupCount; group++) {
+            consumer.accept(Arrays.copyOfRange(groupKeys, group * keyWidth, (group + 1) * keyWidth), members(group));
+        }
+    }
+
+    private int[] members(int group) {
+        int[] fileIds = new int[groupSize[group]];
+        int entry = groupHead[group];
+        for (int i = 0; i < fileIds.length; i++) {
+            fileIds[i] = entryFile[entry];
+            entry = entryNext[entry];
+        }
+        return fileIds;
+    }
+
+    /**
+     * Decodes an 8-byte key written by {@link #add(long, int)}.
+     *
+     * @param key The key.
+     * @return The long value of the key.
+     */
+    public static long toLong(byte[] key) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (key[i] & 0xFFL);
+        }
+        return value;
+    }
+
+    private static void putLong(byte[] target, long value) {
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            target[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private int findOrCreateGroup(byte[] key) {
+        int mask = slots.length - 1;
+        for (int slot = hash(key, 0) & mask; ; slot = (slot + 1) & mask) {
+            int group = slots[slot];
+            if (group == EMPTY) {
+                group = newGroup(key);
+                slots[slot] = group;
+                if (groupCount * 2 > slots.length) {
+                    rehash();
+                }
+                return group;
+            }
+            if (Arrays.equals(groupKeys, group * keyWidth, (group + 1) * keyWidth, key, 0, keyWidth)) {
+                return group;
+            }
+        }
+    }
+
+    private int newGroup(byte[] key) {
+        if (groupCount == groupSize.length) {
+            int capacity = groupSize.length * 2;
+            groupKeys = Arrays.copyOf(groupKeys, capacity * keyWidth);
+            groupHead = Arrays.copyOf(groupHead, capacity);
+            groupTail = Arrays.copyOf(groupTail, capacity);
+            groupSize = Arrays.copyOf(groupSize, capacity);
+        }
+        System.arraycopy(key, 0, groupKeys, groupCount * keyWidth, keyWidth);
+        return groupCount++;
+    }
+
+    private int newEntry(int fileId) {
+        if (entryCount == entryFile.length) {
+            int capacity = entryFile.length * 2;
+            entryFile = Arrays.copyOf(entryFile, capacity);
+            entryNext = Arrays.copyOf(entryNext, capacity);
+        }
+        entryFile[entryCount] = fileId;
+        entryNext[entryCount] = EMPTY;
+        return entryCount++;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, EMPTY);
+        int mask = slots.length - 1;
+        for (int group = 0; group < groupCount; group++) {
+            int slot = hash(groupKeys, group * keyWidth) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = group;
+        }
+    }
+
+    /**
+     * Hashes keyWidth bytes with FNV-1a followed by a 64-bit finalizer, so that keys with little
+     * entropy, such as file sizes, still spread over the slots.
+     */
+    private int hash(byte[] bytes, int offset) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = offset; i < offset + keyWidth; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
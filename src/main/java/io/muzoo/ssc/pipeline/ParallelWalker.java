@@ -0,0 +1,414 @@
+package io.muzoo.ssc.pipeline;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * The ParallelWalker class walks a directory tree like Files.walkFileTree, but lists directories
+ * concurrently on a ForkJoinPool. Listing a directory and reading the attributes of its entries is
+ * what makes a walk slow on filesystems with a high latency per call (NFS, SMB, FUSE), so every
+ * subdirectory is listed by its own task as soon as its parent has been listed, and idle workers
+ * steal the listings of busy ones.
+ *
+ * The FileVisitor is never called concurrently: its callbacks are replayed on the calling thread,
+ * in exactly the order Files.walkFileTree would call them (pre-order, entries in directory stream
+ * order), waiting for a listing only when the replay reaches it. A visitor therefore needs no
+ * synchronization, and the ids, counts and groups a scan derives from the walk are the same for
+ * every degree of parallelism.
+ *
+ * Errors are reported as by Files.walkFileTree:
+ * - An entry whose attributes cannot be read, or a directory that cannot be opened (e.g. permission
+ *   denied), is passed to visitFileFailed.
+ * - An error while a directory is being read is passed to postVisitDirectory.
+ * - When links are followed, a link to a directory above it is passed to visitFileFailed as a
+ *   FileSystemLoopException instead of being entered, so symlink loops end the descent.
+ * - A SecurityException skips the entry, except for the root, where it is thrown.
+ *
+ * Pruning: a directory filter keeps whole subtrees out of the walk. A directory it rejects is
+ * still passed to preVisitDirectory, so the visitor can count it, but it is never listed: the
+ * walker does not fork its listing, and treats CONTINUE from preVisitDirectory as SKIP_SUBTREE.
+ *
+ * Features:
+ * - With a parallelism of 1, Files.walkFileTree itself does the walk, with the same pruning.
+ * - TERMINATE stops the walk; SKIP_SUBTREE and SKIP_SIBLINGS skip what they skip in Files.walkFileTree.
+ * - Listings run ahead of the replay, so when the visitor is slower than the listing, the listings
+ *   not replayed yet are held in memory.
+ *
+ * Example Usage:
+ * new ParallelWalker(16, false).walk(Paths.get("/mnt/nfs/share"), new SimpleFileVisitor<>() {
+ *     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+ *         System.out.println(file);
+ *         return FileVisitResult.CONTINUE;
+ *     }
+ * });
+ */
+public class ParallelWalker {
+    private static final LinkOption[] NO_LINK_OPTIONS = new LinkOption[0];
+    private static final LinkOption[] NOFOLLOW_LINKS = {LinkOption.NOFOLLOW_LINKS};
+
+    private final int parallelism;
+    private final boolean followLinks;
+    private final Predicate<Path> directoryFilter;
+
+    /**
+     * Constructs a ParallelWalker that enters every directory.
+     *
+     * @param parallelism The number of threads listing directories concurrently.
+     * @param followLinks `true` to follow symbolic links, `false` to visit links as files.
+     * @throws IllegalArgumentException If the parallelism is not positive.
+     */
+    public ParallelWalker(int parallelism, boolean followLinks) {
+        this(parallelism, followLinks, dir -> true);
+    }
+
+    /**
+     * Constructs a ParallelWalker that only enters the directories accepted by a filter.
+     *
+     * @param parallelism     The number of threads listing directories concurrently.
+     * @param followLinks     `true` to follow symbolic links, `false` to visit links as files.
+     * @param directoryFilter Tells whether a directory below the root is entered; called from the listing threads.
+     * @throws IllegalArgumentException If the parallelism is not positive.
+     */
+    public ParallelWalker(int parallelism, boolean followLinks, Predicate<Path> directoryFilter) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.followLinks = followLinks;
+        this.directoryFilter = directoryFilter;
+    }
+
+    /**
+     * Walks the tree rooted at the given path, calling the visitor for every directory and file.
+     *
+     * @param root    The root of the walk.
+     * @param visitor The visitor receiving the callbacks, on the calling thread.
+     * @throws IOException If the visitor throws an IOException.
+     */
+    public void walk(Path root, FileVisitor<? super Path> visitor) throws IOException {
+        if (parallelism == 1) {
+            Set<FileVisitOption> options = followLinks
+                    ? EnumSet.of(FileVisitOption.FOLLOW_LINKS)
+                    : EnumSet.noneOf(FileVisitOption.class);
+            Files.walkFileTree(root, options, Integer.MAX_VALUE, new PruningVisitor(root, visitor));
+            return;
+        }
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = readAttributes(root);
+        } catch (IOException e) {
+            visitor.visitFileFailed(root, e);
+            return;
+        }
+        if (!attrs.isDirectory()) {
+            visitor.visitFile(root, attrs);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            ListTask rootTask = new ListTask(root, new Ancestor(root, attrs.fileKey(), null));
+            pool.execute(rootTask);
+            replay(new Entry(root, attrs, null, rootTask), visitor);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Calls the visitor for the tree below the root entry, in the order of Files.walkFileTree.
+     */
+    private void replay(Entry root, FileVisitor<? super Path> visitor) throws IOException {
+        Deque<Frame> frames = new ArrayDeque<>();
+        FileVisitResult result = enter(root, visitor, frames);
+        if (result == FileVisitResult.TERMINATE) {
+            return;
+        }
+
+        while (!frames.isEmpty()) {
+            Frame frame = frames.peek();
+            if (frame.skipRemaining || frame.next == frame.listing.entries.size()) {
+                frames.pop();
+                frame.listing.cancelChildren();
+                result = visitor.postVisitDirectory(frame.dir, frame.listing.iterationError);
+                if (result == FileVisitResult.TERMINATE) {
+                    return;
+                }
+                if (result == FileVisitResult.SKIP_SIBLINGS && !frames.isEmpty()) {
+                    frames.peek().skipRemaining = true;
+                }
+                continue;
+            }
+
+            Entry entry = frame.listing.entries.get(frame.next);
+            frame.listing.entries.set(frame.next++, null);
+            result = enter(entry, visitor, frames);
+            if (result == FileVisitResult.TERMINATE) {
+                return;
+            }
+            if (result == FileVisitResult.SKIP_SIBLINGS) {
+                frame.skipRemaining = true;
+            }
+        }
+    }
+
+    /**
+     * Visits a single entry: a file is passed to visitFile, a directory is pre-visited and, if the
+     * visitor continues, pushed as a frame whose entries are visited next.
+     */
+    private static FileVisitResult enter(Entry entry, FileVisitor<? super Path> visitor, Deque<Frame> frames)
+            throws IOException {
+        if (entry.error != null) {
+            return visitor.visitFileFailed(entry.path, entry.error);
+        }
+        if (entry.listTask == null && entry.attrs.isDirectory()) {
+            return pruned(visitor.preVisitDirectory(entry.path, entry.attrs));
+        }
+        if (entry.listTask == null) {
+            return visitor.visitFile(entry.path, entry.attrs);
+        }
+
+        Listing listing = entry.listTask.join();
+        if (listing == null) {
+            return FileVisitResult.CONTINUE;
+        }
+        if (listing.openError != null) {
+            return visitor.visitFileFailed(entry.path, listing.openError);
+        }
+        FileVisitResult result = visitor.preVisitDirectory(entry.path, entry.attrs);
+        if (result == FileVisitResult.CONTINUE) {
+            frames.push(new Frame(entry.path, listing));
+        } else {
+            listing.cancelChildren();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the result of pre-visiting a pruned directory: the walk never enters it.
+     */
+    private static FileVisitResult pruned(FileVisitResult result) {
+        return result == FileVisitResult.CONTINUE ? FileVisitResult.SKIP_SUBTREE : result;
+    }
+
+    private BasicFileAttributes readAttributes(Path path) throws IOException {
+        if (!followLinks) {
+            return Files.readAttributes(path, BasicFileAttributes.class, NOFOLLOW_LINKS);
+        }
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, NO_LINK_OPTIONS);
+        } catch (IOException e) {
+            // A broken link is visited as the link itself, as Files.walkFileTree does.
+            return Files.readAttributes(path, BasicFileAttributes.class, NOFOLLOW_LINKS);
+        }
+    }
+
+    /**
+     * Tells whether entering a directory would revisit one of the directories above it.
+     */
+    private static boolean isLoop(Path dir, Object fileKey, Ancestor ancestor) {
+        for (Ancestor above = ancestor; above != null; above = above.parent) {
+            if (fileKey != null && above.fileKey != null) {
+                if (fileKey.equals(above.fileKey)) {
+                    return true;
+                }
+            } else {
+                try {
+                    if (Files.isSameFile(dir, above.dir)) {
+                        return true;
+                    }
+                } catch (IOException | SecurityException e) {
+                    // A directory that cannot be compared is not a known loop.
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists one directory and reads the attributes of its entries, forking a task for every
+     * subdirectory before returning. Returns `null` if a SecurityException hides the directory.
+     */
+    private final class ListTask extends RecursiveTask<Listing> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+        private final Ancestor ancestor;
+
+        private ListTask(Path dir, Ancestor ancestor) {
+            this.dir = dir;
+            this.ancestor = ancestor;
+        }
+
+        @Override
+        protected Listing compute() {
+            Listing listing = new Listing();
+            DirectoryStream<Path> stream;
+            try {
+                stream = Files.newDirectoryStream(dir);
+            } catch (IOException e) {
+                listing.openError = e;
+                return listing;
+            } catch (SecurityException e) {
+                return null;
+            }
+
+            try (stream) {
+                for (Path path : stream) {
+                    Entry entry = list(path);
+                    if (entry != null) {
+                        listing.entries.add(entry);
+                    }
+                }
+            } catch (DirectoryIteratorException e) {
+                listing.iterationError = e.getCause();
+            } catch (IOException e) {
+                if (listing.iterationError == null) {
+                    listing.iterationError = e;
+                }
+            }
+            return listing;
+        }
+
+        private Entry list(Path path) {
+            BasicFileAttributes attrs;
+            try {
+                attrs = readAttributes(path);
+            } catch (IOException e) {
+                return new Entry(path, null, e, null);
+            } catch (SecurityException e) {
+                return null;
+            }
+            if (!attrs.isDirectory()) {
+                return new Entry(path, attrs, null, null);
+            }
+            if (followLinks && isLoop(path, attrs.fileKey(), ancestor)) {
+                return new Entry(path, null, new FileSystemLoopException(path.toString()), null);
+            }
+            if (!directoryFilter.test(path)) {
+                return new Entry(path, attrs, null, null);
+            }
+            ListTask child = new ListTask(path, new Ancestor(path, attrs.fileKey(), ancestor));
+            child.fork();
+            return new Entry(path, attrs, null, child);
+        }
+    }
+
+    /**
+     * Applies the directory filter to a sequential walk by Files.walkFileTree.
+     */
+    private final class PruningVisitor implements FileVisitor<Path> {
+        private final Path root;
+        private final FileVisitor<? super Path> visitor;
+
+        private PruningVisitor(Path root, FileVisitor<? super Path> visitor) {
+            this.root = root;
+            this.visitor = visitor;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            FileVisitResult result = visitor.preVisitDirectory(dir, attrs);
+            return dir.equals(root) || directoryFilter.test(dir) ? result : pruned(result);
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            return visitor.visitFile(file, attrs);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+            return visitor.visitFileFailed(file, exc);
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            return visitor.postVisitDirectory(dir, exc);
+        }
+    }
+
+    /**
+     * The entries of a listed directory, and the errors met while listing it.
+     */
+    private static final class Listing {
+        private final List<Entry> entries = new ArrayList<>();
+        private IOException openError;
+        private IOException iterationError;
+
+        private void cancelChildren() {
+            for (Entry entry : entries) {
+                if (entry != null && entry.listTask != null) {
+                    entry.listTask.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * An entry of a directory: a file with its attributes, a directory with the task listing it,
+     * a pruned directory with its attributes only, or an entry that failed with its error.
+     */
+    private static final class Entry {
+        private final Path path;
+        private final BasicFileAttributes attrs;
+        private final IOException error;
+        private final ListTask listTask;
+
+        private Entry(Path path, BasicFileAttributes attrs, IOException error, ListTask listTask) {
+            this.path = path;
+            this.attrs = attrs;
+            this.error = error;
+            this.listTask = listTask;
+        }
+    }
+
+    /**
+     * A directory of the replay whose entries are being visited.
+     */
+    private static final class Frame {
+        private final Path dir;
+        private final Listing listing;
+        private int next;
+        private boolean skipRemaining;
+
+        private Frame(Path dir, Listing listing) {
+            this.dir = dir;
+            this.listing = listing;
+        }
+    }
+
+    /**
+     * A directory on the path from the root to a listed directory, used to detect symlink loops.
+     */
+    private static final class Ancestor {
+        private final Path dir;
+        private final Object fileKey;
+        private final Ancestor parent;
+
+        private Ancestor(Path dir, Object fileKey, Ancestor parent) {
+            this.dir = dir;
+            this.fileKey = fileKey;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package io.muzoo.ssc.pipeline;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The WalkFilter class decides which directories a walk enters and which files it keeps, so
+ * that files nobody cares about (version control objects, dependency folders, lock files,
+ * thumbnails) are dropped before any stage reads them.
+ *
+ * Rules:
+ * - A directory whose name is one of the excluded directory names is not entered. The root of
+ *   the walk is always entered.
+ * - A file is kept if its size lies within [minSize, maxSize], it matches at least one include
+ *   glob (when there are any), and it matches no exclude glob.
+ * - A glob containing a '/' is matched against the path of the file relative to the root, e.g.
+ *   `docs/**.pdf`; any other glob is matched against the file name alone, e.g. `*.tmp`.
+ * - With a shard count above 1, a file is only kept if its size hashes to the shard index
+ *   (see `shardOf`). Files of one size always fall in the same shard, so the shards of a tree
+ *   can be scanned by separate processes without splitting any group of duplicates.
+ *
+ * Features:
+ * - Immutable and thread-safe; globs are compiled once, when the filter is constructed.
+ * - `acceptsAll` tells whether the filter keeps everything, so callers can skip it.
+ *
+ * Example Usage:
+ * WalkFilter filter = new WalkFilter(root, 1, Long.MAX_VALUE, List.of(), List.of("*.tmp"), Set.of(".git"));
+ * boolean enter = filter.acceptsDirectory(root.resolve(".git")); // false
+ * boolean keep = filter.acceptsFile(file, attrs);
+ * boolean found = filter.reaches(root.resolve("src/Main.java"), 1024);
+ */
+public class WalkFilter {
+    private final Path root;
+    private final long minSize;
+    private final long maxSize;
+    private final List<Glob> includeGlobs;
+    private final List<Glob> excludeGlobs;
+    private final Set<String> excludedDirectories;
+    private final int shardIndex;
+    private final int shardCount;
+
+    /**
+     * Constructs a WalkFilter.
+     *
+     * @param root                The root of the walk, against which globs with a '/' are matched.
+     * @param minSize             The smallest size in bytes of a kept file.
+     * @param maxSize             The largest size in bytes of a kept file.
+     * @param includeGlobs        Globs of which a kept file must match one; empty keeps every file.
+     * @param excludeGlobs        Globs of which a kept file must match none.
+     * @param excludedDirectories Names of the directories that are not entered.
+     * @throws IllegalArgumentException If a glob is invalid, or the size bounds are negative or out of order.
+     */
+    public WalkFilter(Path root, long minSize, long maxSize, Collection<String> includeGlobs,
+                      Collection<String> excludeGlobs, Set<String> excludedDirectories) {
+        this(root, minSize, maxSize, includeGlobs, excludeGlobs, excludedDirectories, 0, 1);
+    }
+
+    /**
+     * Constructs a WalkFilter that only keeps the files of one shard of the sizes.
+     *
+     * @param root                The root of the walk, against which globs with a '/' are matched.
+     * @param minSize             The smallest size in bytes of a kept file.
+     * @param maxSize             The largest size in bytes of a kept file.
+     * @param includeGlobs        Globs of which a kept file must match one; empty keeps every file.
+     * @param excludeGlobs        Globs of which a kept file must match none.
+     * @param excludedDirectories Names of the directories that are not entered.
+     * @param shardIndex          The shard whose files are kept, from 0 to the shard count - 1.
+     * @param shardCount          The number of shards the sizes are split into; 1 keeps every size.
+     * @throws IllegalArgumentException If a glob is invalid, the size bounds are negative or out of order,
+     *                                  or the shard index is not below the shard count.
+     */
+    public WalkFilter(Path root, long minSize, long maxSize, Collection<String> includeGlobs,
+                      Collection<String> excludeGlobs, Set<String> excludedDirectories, int shardIndex, int shardCount) {
+        if (minSize < 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid size bounds: " + minSize + " to " + maxSize);
+        }
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Invalid shard: " + shardIndex + " of " + shardCount);
+        }
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.root = root;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.includeGlobs = compile(root.getFileSystem(), includeGlobs);
+        this.excludeGlobs = compile(root.getFileSystem(), excludeGlobs);
+        this.excludedDirectories = Set.copyOf(excludedDirectories);
+    }
+
+    /**
+     * Tells whether the filter keeps every file and enters every directory.
+     *
+     * @return `true` if the filter has no rule at all.
+     */
+    public boolean acceptsAll() {
+        return minSize == 0 && maxSize == Long.MAX_VALUE && includeGlobs.isEmpty() && excludeGlobs.isEmpty()
+                && excludedDirectories.isEmpty() && shardCount == 1;
+    }
+
+    /**
+     * Tells whether the walk enters a directory.
+     *
+     * @param dir The directory.
+     * @return `false` if the name of the directory is excluded and it is not the root.
+     */
+    public boolean acceptsDirectory(Path dir) {
+        Path name = dir.getFileName();
+        return name == null || dir.equals(root) || !excludedDirectories.contains(name.toString());
+    }
+
+    /**
+     * Tells whether the walk keeps a file.
+     *
+     * @param file  The file.
+     * @param attrs The attributes of the file.
+     * @return `true` if the size and path of the file pass every rule.
+     */
+    public boolean acceptsFile(Path file, BasicFileAttributes attrs) {
+        return acceptsFile(file, attrs.size());
+    }
+
+    /**
+     * Tells whether the walk keeps a file of the specified size.
+     *
+     * @param file The file.
+     * @param size The size of the file in bytes.
+     * @return `true` if the size and path of the file pass every rule.
+     */
+    public boolean acceptsFile(Path file, long size) {
+        if (size < minSize || size > maxSize) {
+            return false;
+        }
+        if (shardCount > 1 && shardOf(size, shardCount) != shardIndex) {
+            return false;
+        }
+        if (includeGlobs.isEmpty() && excludeGlobs.isEmpty()) {
+            return true;
+        }
+        Path name = file.getFileName();
+        Path relative = file.startsWith(root) ? root.relativize(file) : file;
+        if (!includeGlobs.isEmpty() && !matchesAny(includeGlobs, name, relative)) {
+            return false;
+        }
+        return !matchesAny(excludeGlobs, name, relative);
+    }
+
+    /**
+     * Tells whether a walk from the root would reach and keep a file: every directory between the
+     * root and the file must be entered, and the file itself kept.
+     *
+     * @param file A file below the root.
+     * @param size The size of the file in bytes.
+     * @return `true` if the walk would report the file.
+     */
+    public boolean reaches(Path file, long size) {
+        for (Path dir = file.getParent(); dir != null && !dir.equals(root) && dir.startsWith(root); dir = dir.getParent()) {
+            if (!acceptsDirectory(dir)) {
+                return false;
+            }
+        }
+        return acceptsFile(file, size);
+    }
+
+    /**
+     * Returns the shard a file size belongs to. The size is mixed first, so that sizes in a
+     * narrow range, or multiples of a block size, still spread evenly over the shards.
+     *
+     * @param size       The size of the file in bytes.
+     * @param shardCount The number of shards.
+     * @return The shard, from 0 to the shard count - 1.
+     */
+    public static int shardOf(long size, int shardCount) {
+        long h = size * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) Long.remainderUnsigned(h, shardCount);
+    }
+
+    private static boolean matchesAny(List<Glob> globs, Path name, Path relative) {
+        for (Glob glob : globs) {
+            Path target = glob.onRelativePath ? relative : name;
+            if (target != null && glob.matcher.matches(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Glob> compile(FileSystem fileSystem, Collection<String> globs) {
+        List<Glob> compiled = new ArrayList<>(globs.size());
+        for (String glob : globs) {
+            compiled.add(new Glob(fileSystem.getPathMatcher("glob:" + glob), glob.contains("/")));
+        }
+        return compiled;
+    }
+
+    /**
+     * A compiled glob, and whether it is matched against the relative path or the file name.
+     */
+    private static final class Glob {
+        private final PathMatcher matcher;
+        private final boolean onRelativePath;
+
+        private Glob(PathMatcher matcher, boolean onRelativePath) {
+            this.matcher = matcher;
+            this.onRelativePath = onRelativePath;
+        }
+    }
+}
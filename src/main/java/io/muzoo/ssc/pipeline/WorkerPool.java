@@ -0,0 +1,175 @@
+package io.muzoo.ssc.pipeline;
+
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The WorkerPool class runs a task over a list of items on a fixed number of worker threads.
+ * The calling thread acts as the producer and feeds item indices into a bounded queue;
+ * the workers take indices from the queue, run the task and store each result at the index
+ * of its item. Results therefore come back in the same order as the items, so a parallel run
+ * produces exactly the same groups as a single-threaded one.
+ *
+ * Responsibilities:
+ * - Run a task over every item, sequentially or on worker threads.
+ * - Keep memory bounded: at most a few items per worker are queued at any time.
+ * - Report failing items and carry on with the rest.
+ *
+ * Features:
+ * - A pool of a single thread runs every task inline on the calling thread.
+ * - Workers can be platform threads or, on JDK 21 and newer, virtual threads.
+ *
+ * Example Usage:
+ * WorkerPool pool = new WorkerPool(8, false);
+ * List<String> hashes = pool.map(files, file -> algo.computerHash(file.toFile()));
+ */
+public class WorkerPool {
+    private static final int QUEUE_SLOTS_PER_WORKER = 4;
+    private static final int POISON = -1;
+
+    private final int threads;
+    private final ThreadFactory threadFactory;
+
+    /**
+     * The Task interface is the unit of work run by the pool for every item.
+     *
+     * @param <T> The type of the items.
+     * @param <R> The type of the results.
+     */
+    @FunctionalInterface
+    public interface Task<T, R> {
+        /**
+         * Runs the task for a single item.
+         *
+         * @param item The item to process.
+         * @return The result for the item.
+         * @throws Exception If the item cannot be processed; the item is reported and skipped.
+         */
+        R apply(T item) throws Exception;
+    }
+
+    /**
+     * Constructs a WorkerPool.
+     *
+     * @param threads        The number of worker threads; 1 runs every task on the calling thread.
+     * @param virtualThreads Whether the workers should be virtual threads. Falls back to platform
+     *                       threads with a warning when the running JDK has no virtual threads.
+     * @throws IllegalArgumentException If the number of threads is not positive.
+     */
+    public WorkerPool(int threads, boolean virtualThreads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        this.threadFactory = virtualThreads ? virtualThreadFactory() : platformThreadFactory();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Runs the task over every item and returns the results in the order of the items.
+     * Items whose task fails are reported on standard error and get a `null` result.
+     *
+     * @param items The items to process.
+     * @param task  The task to run for each item.
+     * @param <T>   The type of the items.
+     * @param <R>   The type of the results.
+     * @return The results, one per item, in the order of the items.
+     * @throws InterruptedIOException If the calling thread is interrupted while waiting for the workers.
+     */
+    public <T, R> List<R> map(List<T> items, Task<T, R> task) throws InterruptedIOException {
+        Object[] results = new Object[items.size()];
+
+        if (threads == 1 || items.size() < 2) {
+            for (int i = 0; i < items.size(); i++) {
+                results[i] = runTask(items.get(i), task);
+            }
+            return castResults(results);
+        }
+
+        int workerCount = Math.min(threads, items.size());
+        BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(workerCount * QUEUE_SLOTS_PER_WORKER);
+        List<Thread> workers = new ArrayList<>(workerCount);
+        AtomicInteger workerIds = new AtomicInteger();
+
+        for (int w = 0; w < workerCount; w++) {
+            Thread worker = threadFactory.newThread(() -> {
+                try {
+                    for (int index = queue.take(); index != POISON; index = queue.take()) {
+                        results[index] = runTask(items.get(index), task);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            worker.setName("duplicate-finder-worker-" + workerIds.incrementAndGet());
+            workers.add(worker);
+            worker.start();
+        }
+
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                queue.put(i);
+            }
+            for (int w = 0; w < workerCount; w++) {
+                queue.put(POISON);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            workers.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for worker threads");
+        }
+        return castResults(results);
+    }
+
+    private static <T, R> R runTask(T item, Task<T, R> task) {
+        try {
+            return task.apply(item);
+        } catch (Exception e) {
+            System.err.println("Error processing file: " + item + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> castResults(Object[] results) {
+        return (List<R>) Arrays.asList(results);
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        return runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Looks up the virtual thread factory of JDK 21 and newer through reflection, so the project
+     * still builds and runs on older JDKs.
+     *
+     * @return A factory creating virtual threads, or platform threads if virtual threads are unavailable.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Warning: Virtual threads require JDK 21 or newer, using platform threads instead.");
+            return platformThreadFactory();
+        }
+    }
+}
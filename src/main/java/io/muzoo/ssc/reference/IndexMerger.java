@@ -0,0 +1,295 @@
+package io.muzoo.ssc.reference;
+
+import io.muzoo.ssc.DuplicateGroup;
+import io.muzoo.ssc.DuplicateGroupListener;
+import io.muzoo.ssc.pipeline.FileKeys;
+import io.muzoo.ssc.pipeline.GroupingTable;
+import io.muzoo.ssc.report.GroupType;
+import io.muzoo.ssc.stats.FileStatistics;
+import io.muzoo.ssc.stats.StageStatistics;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The IndexMerger class combines the partial indexes of a sharded scan into the duplicate groups
+ * of the whole scan, without reading any file again. Each shard (a subset of the roots, or a
+ * shard of the file sizes) is scanned by its own process and exported as a reference index;
+ * since every index is sorted by size and digest, a k-way merge brings the entries of equal
+ * content next to each other, whichever shards they come from.
+ *
+ * Memory layout:
+ * - sources: one memory-mapped ReferenceIndex and the position of the next entry per partial
+ *   index, ordered in a priority queue by the size and digest of that entry.
+ * - hardlinkGroups: the groups of paths linking to one file, held until every file group is out.
+ * Besides those, only the paths and file keys of the group being merged are held on the heap, so
+ * the merge needs memory for the largest group, not for all entries.
+ *
+ * Features:
+ * - Groups come out in ascending size, then digest, order, so the result does not depend on the
+ *   order in which the partial indexes are given.
+ * - Within a group, paths are listed in the order of the partial indexes, then of their entries.
+ * - A path found in several partial indexes (e.g., overlapping roots) is only listed once.
+ * - Paths with the same device and inode are hardlinks of one file, as in a scan: the file group
+ *   lists the first of them only, and they are reported as a hardlink group, after every file
+ *   group. Links in different partial indexes (e.g., roots of one volume) are collapsed too.
+ * - The statistics count every entry as a file, and the entries of unique content as eliminated
+ *   by the "merge" stage, together with the files a shard left out of its index for their size.
+ *
+ * Example Usage:
+ * try (IndexMerger merger = IndexMerger.open(List.of(Paths.get("shard-0.sscref"), Paths.get("shard-1.sscref")))) {
+ *     merger.merge(statistics, group -> System.out.println(group.getPaths()));
+ * }
+ */
+public class IndexMerger implements Closeable {
+    public static final String MERGE_STAGE = "merge";
+
+    private final List<ReferenceIndex> indexes;
+
+    private IndexMerger(List<ReferenceIndex> indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * Opens the partial indexes of a sharded scan.
+     *
+     * @param locations The partial index files.
+     * @return The merger of the indexes.
+     * @throws IOException If an index cannot be read.
+     * @throws IllegalArgumentException If no index is given, or the indexes were built with different algorithms.
+     */
+    public static IndexMerger open(List<Path> locations) throws IOException {
+        if (locations.isEmpty()) {
+            throw new IllegalArgumentException("No partial index to merge");
+        }
+        List<ReferenceIndex> indexes = new ArrayList<>(locations.size());
+        try {
+            for (Path location : locations) {
+                ReferenceIndex index = ReferenceIndex.open(location);
+                indexes.add(index);
+                ReferenceIndex first = indexes.get(0);
+                if (!index.getAlgorithm().equals(first.getAlgorithm()) || index.getDigestLength() != first.getDigestLength()) {
+                    throw new IllegalArgumentException("The partial index " + location + " was built with "
+                            + index.getAlgorithm() + ", not " + first.getAlgorithm());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            indexes.forEach(ReferenceIndex::close);
+            throw e;
+        }
+        return new IndexMerger(indexes);
+    }
+
+    public String getAlgorithm() {
+        return indexes.get(0).getAlgorithm();
+    }
+
+    /**
+     * Merges the partial indexes and hands every group of duplicates, then every group of
+     * hardlinks, to the listener, counting the files, duplicates, hardlinks and reclaimable size
+     * into the statistics.
+     *
+     * @param statistics The statistics the merge is counted into.
+     * @param listener   The listener receiving the groups.
+     * @throws IOException If the listener fails.
+     */
+    public void merge(FileStatistics statistics, DuplicateGroupListener listener) throws IOException {
+        StageStatistics stage = statistics.getStage(MERGE_STAGE);
+        for (ReferenceIndex index : indexes) {
+            statistics.incrementFileCount(index.getUnindexedFileCount());
+            statistics.incrementTotalFileSize(index.getUnindexedSize());
+            stage.incrementFilesIn(index.getUnindexedFileCount());
+            stage.incrementEliminated(index.getUnindexedFileCount(), index.getUnindexedSize());
+        }
+        PriorityQueue<Source> queue = new PriorityQueue<>();
+        for (int order = 0; order < indexes.size(); order++) {
+            Source source = new Source(indexes.get(order), order);
+            if (source.advance()) {
+                queue.add(source);
+            }
+        }
+
+        Group group = new Group();
+        List<DuplicateGroup> hardlinkGroups = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            Source first = queue.poll();
+            long size = first.size;
+            byte[] digest = first.digest;
+            group.clear();
+            addEntry(first, group, statistics);
+            requeue(queue, first);
+            while (!queue.isEmpty() && queue.peek().size == size && Arrays.equals(queue.peek().digest, digest)) {
+                Source next = queue.poll();
+                addEntry(next, group, statistics);
+                requeue(queue, next);
+            }
+
+            stage.incrementFilesIn(group.paths.size());
+            List<Path> physical = collapseHardlinks(group, size, statistics, hardlinkGroups);
+            if (physical.size() == 1) {
+                stage.incrementEliminated(1, size);
+            } else {
+                statistics.incrementDuplicateFileCount(physical.size() - 1);
+                statistics.incrementReclaimableSize((physical.size() - 1) * size);
+                listener.onGroup(new DuplicateGroup(GroupType.FILE, Hex.encodeHexString(digest), size, physical));
+            }
+        }
+        for (DuplicateGroup hardlinks : hardlinkGroups) {
+            listener.onGroup(hardlinks);
+        }
+    }
+
+    /**
+     * Unmaps every partial index.
+     */
+    @Override
+    public void close() {
+        indexes.forEach(ReferenceIndex::close);
+    }
+
+    private static void addEntry(Source source, Group group, FileStatistics statistics) {
+        Path path = source.index.getPath(source.entry);
+        if (group.add(path, source.index.getDevice(source.entry), source.index.getInode(source.entry))) {
+            statistics.incrementFileCount();
+            statistics.incrementTotalFileSize(source.size);
+        }
+    }
+
+    /**
+     * Keeps the first path of every physical file of a group and records the other paths to the
+     * same file, found by their device and inode, as a hardlink group, the way a scan does.
+     * Paths without a file key are always kept.
+     *
+     * @return The first path of every physical file, in the order of the group.
+     */
+    private static List<Path> collapseHardlinks(Group group, long size, FileStatistics statistics,
+                                                List<DuplicateGroup> hardlinkGroups) {
+        int count = group.paths.size();
+        GroupingTable byFileKey = new GroupingTable(2 * Long.BYTES, count);
+        ByteBuffer keyBuffer = ByteBuffer.allocate(2 * Long.BYTES);
+        for (int i = 0; i < count; i++) {
+            if (group.inodes[i] != 0) {
+                keyBuffer.clear();
+                byFileKey.add(keyBuffer.putLong(group.devices[i]).putLong(group.inodes[i]).array(), i);
+            }
+        }
+        if (byFileKey.getGroupCount() == byFileKey.getEntryCount()) {
+            return new ArrayList<>(group.paths);
+        }
+
+        BitSet links = new BitSet(count);
+        byFileKey.forEachGroup((fileKey, members) -> {
+            if (members.length > 1) {
+                statistics.incrementHardlinkCount(members.length - 1);
+                List<Path> linkPaths = new ArrayList<>(members.length);
+                for (int i = 0; i < members.length; i++) {
+                    linkPaths.add(group.paths.get(members[i]));
+                    if (i > 0) {
+                        links.set(members[i]);
+                    }
+                }
+                hardlinkGroups.add(new DuplicateGroup(GroupType.HARDLINK,
+                        FileKeys.format(group.devices[members[0]], group.inodes[members[0]]), size, linkPaths));
+            }
+        });
+        List<Path> physical = new ArrayList<>(count - links.cardinality());
+        for (int i = links.nextClearBit(0); i < count; i = links.nextClearBit(i + 1)) {
+            physical.add(group.paths.get(i));
+        }
+        return physical;
+    }
+
+    private static void requeue(PriorityQueue<Source> queue, Source source) {
+        if (source.advance()) {
+            queue.add(source);
+        }
+    }
+
+    /**
+     * The distinct paths of the entries of one size and digest, with the device and inode of
+     * each, reused from group to group.
+     */
+    private static final class Group {
+        private final List<Path> paths = new ArrayList<>();
+        private final Set<Path> seen = new HashSet<>();
+        private long[] devices = new long[16];
+        private long[] inodes = new long[16];
+
+        private void clear() {
+            paths.clear();
+            seen.clear();
+        }
+
+        /**
+         * Adds the path of an entry unless the group already lists it.
+         *
+         * @return `false` if the path was already listed.
+         */
+        private boolean add(Path path, long device, long inode) {
+            if (!seen.add(path)) {
+                return false;
+            }
+            int index = paths.size();
+            if (index == devices.length) {
+                devices = Arrays.copyOf(devices, 2 * index);
+                inodes = Arrays.copyOf(inodes, 2 * index);
+            }
+            paths.add(path);
+            devices[index] = device;
+            inodes[index] = inode;
+            return true;
+        }
+    }
+
+    /**
+     * The current entry of one partial index, ordered by size, then digest as unsigned bytes,
+     * then by the position of the index among the partial indexes.
+     */
+    private static final class Source implements Comparable<Source> {
+        private final ReferenceIndex index;
+        private final int order;
+        private long entry = -1;
+        private long size;
+        private byte[] digest;
+
+        private Source(ReferenceIndex index, int order) {
+            this.index = index;
+            this.order = order;
+        }
+
+        /**
+         * Moves to the next entry of the index.
+         *
+         * @return `false` if the index has no more entries.
+         */
+        private boolean advance() {
+            entry++;
+            if (entry >= index.getEntryCount()) {
+                return false;
+            }
+            size = index.getSize(entry);
+            digest = index.getDigest(entry);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Source other) {
+            int bySize = Long.compare(size, other.size);
+            if (bySize != 0) {
+                return bySize;
+            }
+            int byDigest = Arrays.compareUnsigned(digest, other.digest);
+            return byDigest != 0 ? byDigest : Integer.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package io.muzoo.ssc.reference;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ReferenceIndex class answers "is this file already in the archive?" from a reference
+ * index file written by ReferenceIndexWriter, without scanning the archive again. The file is
+ * memory-mapped read-only and searched in place: the sorted records are binary-searched by
+ * size and digest, so a lookup touches about log2(entries) records and allocates nothing on
+ * the heap. Only the paths of a match are decoded into Path objects.
+ *
+ * Memory layout:
+ * - windows: the file mapped in windows of WINDOW_SIZE bytes, since a single MappedByteBuffer
+ *   cannot exceed 2 GiB. Values that cross a window boundary are assembled byte by byte.
+ * The pages are part of the page cache, not of the heap, so an index of any size can be opened
+ * and repeated lookups of nearby records stay in memory.
+ *
+ * Features:
+ * - `hasSize` tells whether any reference file has a given size, so a file of a new size can be
+ *   ruled out before it is hashed.
+ * - Entries can also be read one by one in their sorted order, with the device and inode of
+ *   their file, e.g. to merge several indexes.
+ * - Safe to search from many threads at once; the mapped buffers are only read with absolute gets.
+ *
+ * Example Usage:
+ * try (ReferenceIndex reference = ReferenceIndex.open(Paths.get("archive.sscref"))) {
+ *     if (reference.hasSize(size)) {
+ *         List<Path> copies = reference.find(size, algo.computeDigest(file));
+ *     }
+ * }
+ */
+public class ReferenceIndex implements Closeable {
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+
+    private final Path location;
+    private final String algorithm;
+    private final int digestLength;
+    private final int recordLength;
+    private final long entryCount;
+    private final long pathsOffset;
+    private final long unindexedFileCount;
+    private final long unindexedSize;
+    private MappedByteBuffer[] windows;
+
+    private ReferenceIndex(Path location, MappedByteBuffer[] windows, long fileSize) throws IOException {
+        this.location = location;
+        this.windows = windows;
+        if (fileSize < ReferenceIndexWriter.HEADER_SIZE || intAt(0) != ReferenceIndexWriter.MAGIC) {
+            throw new IOException("Not a reference index: " + location);
+        }
+        if (intAt(Integer.BYTES) != ReferenceIndexWriter.VERSION) {
+            throw new IOException("Unknown reference index version: " + location);
+        }
+        this.digestLength = intAt(2 * Integer.BYTES);
+        this.entryCount = longAt(3 * Integer.BYTES);
+        this.pathsOffset = longAt(3 * Integer.BYTES + Long.BYTES);
+        this.unindexedFileCount = longAt(3 * Integer.BYTES + 2 * Long.BYTES);
+        this.unindexedSize = longAt(3 * Integer.BYTES + 3 * Long.BYTES);
+        this.recordLength = ReferenceIndexWriter.RECORD_LONGS * Long.BYTES + digestLength;
+        int nameOffset = ReferenceIndexWriter.FIXED_HEADER_SIZE;
+        int nameLength = (byteAt(nameOffset) & 0xFF) << 8 | (byteAt(nameOffset + 1) & 0xFF);
+        if (digestLength <= 0 || entryCount < 0 || unindexedFileCount < 0 || nameLength > ReferenceIndexWriter.HEADER_SIZE - nameOffset - 2
+                || pathsOffset != ReferenceIndexWriter.HEADER_SIZE + entryCount * recordLength || pathsOffset > fileSize) {
+            throw new IOException("Reference index is corrupt: " + location);
+        }
+        this.algorithm = new String(bytesAt(nameOffset + 2, nameLength), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a reference index by mapping its file read-only.
+     *
+     * @param location The index file.
+     * @return The opened index.
+     * @throws IOException If the file cannot be read, or is not a reference index.
+     */
+    public static ReferenceIndex open(Path location) throws IOException {
+        try (FileChannel channel = FileChannel.open(location, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((size + WINDOW_SIZE - 1) >>> WINDOW_SHIFT)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = (long) i << WINDOW_SHIFT;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+            }
+            return new ReferenceIndex(location, windows, size);
+        }
+    }
+
+    public Path getLocation() {
+        return location;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getDigestLength() {
+        return digestLength;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the number of files of the scan left out of the index, e.g. the files of a unique
+     * size left out of the index of a shard.
+     *
+     * @return The number of files without an entry.
+     */
+    public long getUnindexedFileCount() {
+        return unindexedFileCount;
+    }
+
+    public long getUnindexedSize() {
+        return unindexedSize;
+    }
+
+    /**
+     * Tells whether any file of the reference has the given size.
+     *
+     * @param size The size in bytes.
+     * @return `true` if at least one reference file has that size.
+     */
+    public boolean hasSize(long size) {
+        long record = lowerBound(size, null);
+        return record < entryCount && sizeAt(record) == size;
+    }
+
+    /**
+     * Returns the reference files with the given size and digest.
+     *
+     * @param size   The size in bytes.
+     * @param digest The digest, of the algorithm of the index.
+     * @return The paths of the reference files with that size and digest, or an empty list if
+     *         there are none or the digest does not have the length of the digests of the index.
+     */
+    public List<Path> find(long size, byte[] digest) {
+        if (digest.length != digestLength) {
+            return List.of();
+        }
+        List<Path> paths = new ArrayList<>();
+        for (long record = lowerBound(size, digest); record < entryCount && compare(record, size, digest) == 0; record++) {
+            paths.add(pathAt(record));
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the size of an entry; entries are numbered in (size, digest) order from 0.
+     *
+     * @param entry The number of the entry, below the entry count.
+     * @return The size in bytes.
+     */
+    public long getSize(long entry) {
+        return sizeAt(entry);
+    }
+
+    /**
+     * Returns a copy of the digest of an entry.
+     *
+     * @param entry The number of the entry, below the entry count.
+     * @return The digest.
+     */
+    public byte[] getDigest(long entry) {
+        return bytesAt(recordPosition(entry) + Long.BYTES, digestLength);
+    }
+
+    /**
+     * Returns the device of the file of an entry.
+     *
+     * @param entry The number of the entry, below the entry count.
+     * @return The device, or 0 if it was not known when the index was written.
+     */
+    public long getDevice(long entry) {
+        return longAt(recordPosition(entry) + Long.BYTES + digestLength);
+    }
+
+    /**
+     * Returns the inode of the file of an entry; entries with the same device and inode are
+     * hardlinks of one file.
+     *
+     * @param entry The number of the entry, below the entry count.
+     * @return The inode, or 0 if it was not known when the index was written.
+     */
+    public long getInode(long entry) {
+        return longAt(recordPosition(entry) + 2 * Long.BYTES + digestLength);
+    }
+
+    /**
+     * Returns the path of an entry.
+     *
+     * @param entry The number of the entry, below the entry count.
+     * @return The path of the file.
+     */
+    public Path getPath(long entry) {
+        return pathAt(entry);
+    }
+
+    /**
+     * Releases the mapped windows; the pages are unmapped once they are garbage collected.
+     */
+    @Override
+    public void close() {
+        windows = new MappedByteBuffer[0];
+    }
+
+    /**
+     * Returns the first record that does not sort before the given size and digest, or the
+     * number of entries if there is none. A `null` digest finds the first record of the size.
+     */
+    private long lowerBound(long size, byte[] digest) {
+        long low = 0;
+        long high = entryCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (compare(middle, size, digest) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares a record with the given size and digest, in the order of the records.
+     */
+    private int compare(long record, long size, byte[] digest) {
+        int bySize = Long.compare(sizeAt(record), size);
+        if (bySize != 0 || digest == null) {
+            return bySize;
+        }
+        long position = recordPosition(record) + Long.BYTES;
+        for (int i = 0; i < digestLength; i++) {
+            int byByte = Integer.compare(byteAt(position + i) & 0xFF, digest[i] & 0xFF);
+            if (byByte != 0) {
+                return byByte;
+            }
+        }
+        return 0;
+    }
+
+    private long recordPosition(long record) {
+        return ReferenceIndexWriter.HEADER_SIZE + record * recordLength;
+    }
+
+    private long sizeAt(long record) {
+        return longAt(recordPosition(record));
+    }
+
+    private Path pathAt(long record) {
+        long position = pathsOffset + longAt(recordPosition(record) + 3 * Long.BYTES + digestLength);
+        return Paths.get(new String(bytesAt(position + Integer.BYTES, intAt(position)), StandardCharsets.UTF_8));
+    }
+
+    private byte byteAt(long position) {
+        return windows[(int) (position >>> WINDOW_SHIFT)].get((int) (position & (WINDOW_SIZE - 1)));
+    }
+
+    private int intAt(long position) {
+        int offset = (int) (position & (WINDOW_SIZE - 1));
+        if (offset + Integer.BYTES <= WINDOW_SIZE) {
+            return windows[(int) (position >>> WINDOW_SHIFT)].getInt(offset);
+        }
+        return ByteBuffer.wrap(bytesAt(position, Integer.BYTES)).getInt();
+    }
+
+    private long longAt(long position) {
+        int offset = (int) (position & (WINDOW_SIZE - 1));
+        if (offset + Long.BYTES <= WINDOW_SIZE) {
+            return windows[(int) (position >>> WINDOW_SHIFT)].getLong(offset);
+        }
+        return ByteBuffer.wrap(bytesAt(position, Long.BYTES)).getLong();
+    }
+
+    private byte[] bytesAt(long position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = byteAt(position + i);
+        }
+        return bytes;
+    }
+}
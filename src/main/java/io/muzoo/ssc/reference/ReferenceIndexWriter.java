@@ -0,0 +1,197 @@
+package io.muzoo.ssc.reference;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The ReferenceIndexWriter class writes a reference index file: the (size, digest, file key,
+ * path) of every file of a scan, sorted by size and digest, in the layout read by ReferenceIndex.
+ * Entries must be added in that order, e.g. from an ExternalSorter, so the writer only streams
+ * them to disk and never holds them in memory.
+ *
+ * File format (big-endian):
+ * - Header (HEADER_SIZE bytes): magic "SSCR", format version, digest length, number of entries,
+ *   offset of the path section, number and total size of the files of the scan left out of the
+ *   index, and the name of the algorithm as a length and UTF-8 bytes.
+ * - Records, one per entry, all of the same width: size, digest, device and inode of the file
+ *   (0 if unknown), offset of the path within the path section. Sorted by size, then by digest
+ *   as unsigned bytes. Hardlinks are the entries of one size and digest with the same device
+ *   and inode.
+ * - Path section: for every entry, the length of its path and the path in UTF-8.
+ *
+ * Features:
+ * - Records are written to the index and paths to a temp file next to it, which is appended
+ *   once every record is known.
+ * - The index is written to a temp file and moved into place by `finish`, so an interrupted
+ *   export never leaves a broken index behind; closing without finishing discards it.
+ *
+ * Example Usage:
+ * try (ReferenceIndexWriter writer = new ReferenceIndexWriter(target, "MD5", 16)) {
+ *     writer.add(size, digest, device, inode, path); // in (size, digest) order
+ *     writer.finish();
+ * }
+ */
+public class ReferenceIndexWriter implements Closeable {
+    static final int MAGIC = 0x53534352;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_LONGS = 4;
+    static final int FIXED_HEADER_SIZE = 3 * Integer.BYTES + 4 * Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path target;
+    private final String algorithm;
+    private final int digestLength;
+    private final Path recordsFile;
+    private final Path pathsFile;
+    private final DataOutputStream records;
+    private final DataOutputStream paths;
+    private final byte[] previousDigest;
+    private long previousSize = -1;
+    private long pathsLength;
+    private long entryCount;
+    private long unindexedFiles;
+    private long unindexedBytes;
+    private boolean finished;
+
+    /**
+     * Constructs a ReferenceIndexWriter, creating its temp files next to the target.
+     *
+     * @param target       The index file to write; replaced by `finish` if it exists.
+     * @param algorithm    The name of the algorithm of the digests (e.g., "MD5").
+     * @param digestLength The length of every digest, in bytes.
+     * @throws IOException If the temp files cannot be created.
+     * @throws IllegalArgumentException If the digest length is not positive or the algorithm name is too long.
+     */
+    public ReferenceIndexWriter(Path target, String algorithm, int digestLength) throws IOException {
+        if (digestLength <= 0) {
+            throw new IllegalArgumentException("Digest length must be positive: " + digestLength);
+        }
+        if (FIXED_HEADER_SIZE + Short.BYTES + algorithm.getBytes(StandardCharsets.UTF_8).length > HEADER_SIZE) {
+            throw new IllegalArgumentException("Algorithm name too long for a reference index: " + algorithm);
+        }
+        this.target = target;
+        this.algorithm = algorithm;
+        this.digestLength = digestLength;
+        this.previousDigest = new byte[digestLength];
+
+        Path directory = target.toAbsolutePath().getParent();
+        String name = target.getFileName().toString();
+        this.recordsFile = Files.createTempFile(directory, name, ".tmp");
+        this.pathsFile = Files.createTempFile(directory, name, ".paths.tmp");
+        this.records = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(recordsFile), BUFFER_SIZE));
+        this.paths = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(pathsFile), BUFFER_SIZE));
+        records.write(new byte[HEADER_SIZE]);
+    }
+
+    /**
+     * Adds the next entry of the index.
+     *
+     * @param size   The size of the file, in bytes.
+     * @param digest The digest of the file.
+     * @param device The device of the file, or 0 if unknown.
+     * @param inode  The inode of the file, or 0 if unknown.
+     * @param path   The path of the file.
+     * @throws IOException If an I/O error occurs while writing.
+     * @throws IllegalArgumentException If the digest has the wrong length, or the entry sorts before the previous one.
+     */
+    public void add(long size, byte[] digest, long device, long inode, Path path) throws IOException {
+        if (digest.length != digestLength) {
+            throw new IllegalArgumentException("Expected a digest of " + digestLength + " bytes, got " + digest.length);
+        }
+        if (size < previousSize || (size == previousSize && Arrays.compareUnsigned(digest, previousDigest) < 0)) {
+            throw new IllegalArgumentException("Entries must be added in (size, digest) order: " + path);
+        }
+        previousSize = size;
+        System.arraycopy(digest, 0, previousDigest, 0, digestLength);
+
+        records.writeLong(size);
+        records.write(digest);
+        records.writeLong(device);
+        records.writeLong(inode);
+        records.writeLong(pathsLength);
+
+        byte[] pathBytes = path.toString().getBytes(StandardCharsets.UTF_8);
+        paths.writeInt(pathBytes.length);
+        paths.write(pathBytes);
+        pathsLength += Integer.BYTES + pathBytes.length;
+        entryCount++;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Records the files of the scan that have no entry, e.g. the files of a unique size left out
+     * of the index of a shard, so that a merge of the index still counts them.
+     *
+     * @param files The number of files left out.
+     * @param bytes The total size of the files left out.
+     */
+    public void setUnindexed(long files, long bytes) {
+        this.unindexedFiles = files;
+        this.unindexedBytes = bytes;
+    }
+
+    /**
+     * Completes the index: appends the paths, writes the header and moves the index into place.
+     *
+     * @throws IOException If an I/O error occurs while writing or moving the index.
+     */
+    public void finish() throws IOException {
+        records.close();
+        paths.close();
+        long pathsOffset = HEADER_SIZE + entryCount * (RECORD_LONGS * Long.BYTES + digestLength);
+        try (OutputStream out = Files.newOutputStream(recordsFile, StandardOpenOption.APPEND)) {
+            Files.copy(pathsFile, out);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(digestLength).putLong(entryCount).putLong(pathsOffset)
+                .putLong(unindexedFiles).putLong(unindexedBytes);
+        byte[] name = algorithm.getBytes(StandardCharsets.UTF_8);
+        header.putShort((short) name.length).put(name);
+        header.clear();
+        try (FileChannel channel = FileChannel.open(recordsFile, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+
+        try {
+            Files.move(recordsFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(recordsFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finished = true;
+    }
+
+    /**
+     * Deletes the temp files, and with them the index if `finish` was not called.
+     *
+     * @throws IOException If the temp files cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            records.close();
+            paths.close();
+        }
+        Files.deleteIfExists(recordsFile);
+        Files.deleteIfExists(pathsFile);
+    }
+}
@@ -0,0 +1,52 @@
+package io.muzoo.ssc.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The CsvReportWriter class writes the duplicate report as CSV (RFC 4180), one row per
+ * member of a group: a duplicate file, folder or hardlink. Members of the same group share
+ * the group number. CSV has no place for totals, so the summary is not written; in
+ * count-only mode only the header is written.
+ *
+ * Output:
+ * group,type,hash,size,path
+ * 1,file,5d41402abc4b2a76b9719d911017c592,5,/data/a.txt
+ * 1,file,5d41402abc4b2a76b9719d911017c592,5,/data/b.txt
+ */
+public class CsvReportWriter extends ReportWriter {
+
+    public CsvReportWriter(Writer out, boolean countOnly) {
+        super(out, countOnly);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        out.write("group,type,hash,size,path\r\n");
+    }
+
+    @Override
+    protected void writeGroupRecord(long number, GroupType type, String hash, long size, List<Path> paths)
+            throws IOException {
+        String prefix = number + "," + type.getColumnValue() + "," + quote(hash) + ","
+                + (size >= 0 ? String.valueOf(size) : "") + ",";
+        for (Path path : paths) {
+            out.write(prefix);
+            out.write(quote(path.toString()));
+            out.write("\r\n");
+        }
+    }
+
+    @Override
+    protected void writeSummary() {
+    }
+
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,56 @@
+package io.muzoo.ssc.report;
+
+/**
+ * The GroupType enum lists the kinds of groups a duplicate report holds.
+ *
+ * Types:
+ * - FILE: Distinct files with identical content; all but one of them can be reclaimed.
+ * - FOLDER: Directories with identical content, all the way down.
+ * - HARDLINK: Paths that are hard links to one and the same physical file. They take no
+ *   extra space, so they are not duplicates, but they are listed so they can be told apart.
+ * - REFERENCE: A file of the scanned tree that is already in a reference index, followed by
+ *   its copies in the reference.
+ */
+public enum GroupType {
+    FILE("group", "file", "Duplicate group"),
+    FOLDER("folder", "folder", "Duplicate folder group"),
+    HARDLINK("hardlink", "hardlink", "Hardlink group"),
+    REFERENCE("reference", "reference", "Already in reference");
+
+    private final String recordType;
+    private final String columnValue;
+    private final String title;
+
+    GroupType(String recordType, String columnValue, String title) {
+        this.recordType = recordType;
+        this.columnValue = columnValue;
+        this.title = title;
+    }
+
+    /**
+     * Returns the type of the JSON and NDJSON records of this group type.
+     *
+     * @return The record type (e.g., "group", "folder").
+     */
+    public String getRecordType() {
+        return recordType;
+    }
+
+    /**
+     * Returns the value of the type column of the CSV rows of this group type.
+     *
+     * @return The column value (e.g., "file", "folder").
+     */
+    public String getColumnValue() {
+        return columnValue;
+    }
+
+    /**
+     * Returns the heading of the blocks of this group type in the text report.
+     *
+     * @return The heading (e.g., "Duplicate group").
+     */
+    public String getTitle() {
+        return title;
+    }
+}
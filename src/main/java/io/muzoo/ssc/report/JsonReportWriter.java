@@ -0,0 +1,45 @@
+package io.muzoo.ssc.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The JsonReportWriter class writes the duplicate report as a single JSON document.
+ * The groups are streamed into the array as they arrive; the totals follow the array,
+ * since they are only known once every group has been written.
+ *
+ * Output:
+ * {"groups":[
+ * {"type":"group","hash":"5d41402abc4b2a76b9719d911017c592","size":5,"count":2,"paths":["/data/a.txt","/data/b.txt"]}
+ * ],"groupCount":1,"duplicateFileCount":2,"folderGroupCount":0,"duplicateFolderCount":0,
+ *  "hardlinkGroupCount":0,"hardlinkFileCount":0}
+ */
+public class JsonReportWriter extends ReportWriter {
+    private boolean firstGroup = true;
+
+    public JsonReportWriter(Writer out, boolean countOnly) {
+        super(out, countOnly);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        out.write("{\"groups\":[");
+    }
+
+    @Override
+    protected void writeGroupRecord(long number, GroupType type, String hash, long size, List<Path> paths)
+            throws IOException {
+        out.write(firstGroup ? "\n" : ",\n");
+        firstGroup = false;
+        writeJsonGroup(type, hash, size, paths);
+    }
+
+    @Override
+    protected void writeSummary() throws IOException {
+        out.write(firstGroup ? "]," : "\n],");
+        writeJsonTotals();
+        out.write("}\n");
+    }
+}
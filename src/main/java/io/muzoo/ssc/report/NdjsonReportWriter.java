@@ -0,0 +1,38 @@
+package io.muzoo.ssc.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The NdjsonReportWriter class writes the duplicate report as newline-delimited JSON, one
+ * self-contained record per line, so downstream tools can ingest groups while the report is
+ * still being written. Groups of identical folders and hardlink groups are "folder" and
+ * "hardlink" records with the same fields.
+ *
+ * Output:
+ * {"type":"group","hash":"5d41402abc4b2a76b9719d911017c592","size":5,"count":2,"paths":["/data/a.txt","/data/b.txt"]}
+ * {"type":"summary","groupCount":1,"duplicateFileCount":2,"folderGroupCount":0,"duplicateFolderCount":0,
+ *  "hardlinkGroupCount":0,"hardlinkFileCount":0}
+ */
+public class NdjsonReportWriter extends ReportWriter {
+
+    public NdjsonReportWriter(Writer out, boolean countOnly) {
+        super(out, countOnly);
+    }
+
+    @Override
+    protected void writeGroupRecord(long number, GroupType type, String hash, long size, List<Path> paths)
+            throws IOException {
+        writeJsonGroup(type, hash, size, paths);
+        out.write('\n');
+    }
+
+    @Override
+    protected void writeSummary() throws IOException {
+        out.write("{\"type\":\"summary\",");
+        writeJsonTotals();
+        out.write("}\n");
+    }
+}
@@ -0,0 +1,46 @@
+package io.muzoo.ssc.report;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * The ReportFormat enum lists the formats in which a duplicate report can be written.
+ *
+ * Formats:
+ * - TEXT: The human-readable report, one block per duplicate group followed by the statistics.
+ * - NDJSON: One JSON object per line: a "group", "folder" or "hardlink" record per group, then a "summary" record.
+ * - CSV: One row per member of a group, with the group number, type, hash, size and path.
+ * - JSON: A single JSON document holding every group and the totals.
+ */
+public enum ReportFormat {
+    TEXT,
+    NDJSON,
+    CSV,
+    JSON;
+
+    /**
+     * Returns the format with the given name, ignoring case.
+     *
+     * @param name The name of the format (e.g., "ndjson").
+     * @return The matching format.
+     * @throws IllegalArgumentException If no format has that name.
+     */
+    public static ReportFormat fromName(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown report format: " + name + " (expected one of "
+                    + Arrays.stream(values()).map(ReportFormat::getName).collect(Collectors.joining(", ")) + ")");
+        }
+    }
+
+    /**
+     * Returns the name of the format as used on the command line.
+     *
+     * @return The lower-case name of the format.
+     */
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,268 @@
+package io.muzoo.ssc.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The ReportWriter class writes a duplicate report group by group, as the groups are produced,
+ * instead of building the whole report in memory first. Groups are groups of identical files,
+ * groups of identical folders (whole directory trees) or hardlink groups (see GroupType). The totals of the report are counted
+ * while the groups pass through and written at the end, so the groups are visited exactly once.
+ *
+ * Responsibilities:
+ * - Count the groups and members of each GroupType in the same pass that writes them.
+ * - Skip groups of a single member, which are not duplicates.
+ * - Leave the encoding of the header, the groups and the summary to each format.
+ *
+ * Features:
+ * - A size below 0 means "unknown"; formats leave it out.
+ * - The size of a folder group is the combined size of the files below each folder.
+ * - In count-only mode the groups are counted but not written.
+ *
+ * Example Usage:
+ * try (ReportWriter writer = ReportWriter.create(ReportFormat.NDJSON, out, false)) {
+ *     writer.writeGroup("d41d8cd98f00b204e9800998ecf8427e", 0, paths);
+ *     writer.finish();
+ * }
+ */
+public abstract class ReportWriter implements Closeable {
+    protected final Writer out;
+    protected final boolean countOnly;
+
+    private final long[] groupCounts = new long[GroupType.values().length];
+    private final long[] memberCounts = new long[GroupType.values().length];
+    private long recordCount;
+    private boolean started;
+
+    /**
+     * Constructs a ReportWriter.
+     *
+     * @param out       The writer receiving the report.
+     * @param countOnly `true` to write only the totals, `false` to write every group as well.
+     */
+    protected ReportWriter(Writer out, boolean countOnly) {
+        this.out = out;
+        this.countOnly = countOnly;
+    }
+
+    /**
+     * Creates a report writer for the given format.
+     *
+     * @param format    The format of the report.
+     * @param out       The writer receiving the report.
+     * @param countOnly `true` to write only the totals, `false` to write every group as well.
+     * @return A new ReportWriter.
+     */
+    public static ReportWriter create(ReportFormat format, Writer out, boolean countOnly) {
+        switch (format) {
+            case NDJSON:
+                return new NdjsonReportWriter(out, countOnly);
+            case CSV:
+                return new CsvReportWriter(out, countOnly);
+            case JSON:
+                return new JsonReportWriter(out, countOnly);
+            default:
+                return new TextReportWriter(out, countOnly);
+        }
+    }
+
+    /**
+     * Writes a single group of duplicate files. Groups of fewer than two files are ignored.
+     *
+     * @param hash  The key of the group (e.g., the hexadecimal digest of its files).
+     * @param size  The size of each file of the group in bytes, or -1 if unknown.
+     * @param paths The paths of the files of the group.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    public void writeGroup(String hash, long size, List<Path> paths) throws IOException {
+        writeGroup(GroupType.FILE, hash, size, paths);
+    }
+
+    /**
+     * Writes a single group of the given type. Groups of fewer than two members are ignored.
+     *
+     * @param type  The type of the group.
+     * @param hash  The key of the group (e.g., the hexadecimal digest of its files).
+     * @param size  The size of each member of the group in bytes, or -1 if unknown. For a folder
+     *              group, the combined size of the files below each folder.
+     * @param paths The paths of the members of the group.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    public void writeGroup(GroupType type, String hash, long size, List<Path> paths) throws IOException {
+        if (paths.size() < 2) {
+            return;
+        }
+        start();
+        groupCounts[type.ordinal()]++;
+        memberCounts[type.ordinal()] += paths.size();
+        if (!countOnly) {
+            writeGroupRecord(++recordCount, type, hash, size, paths);
+        }
+    }
+
+    /**
+     * Writes the totals and the end of the report, and flushes the writer.
+     *
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    public void finish() throws IOException {
+        start();
+        writeSummary();
+        out.flush();
+    }
+
+    public long getGroupCount() {
+        return getGroupCount(GroupType.FILE);
+    }
+
+    public long getDuplicateFileCount() {
+        return getMemberCount(GroupType.FILE);
+    }
+
+    public long getGroupCount(GroupType type) {
+        return groupCounts[type.ordinal()];
+    }
+
+    public long getMemberCount(GroupType type) {
+        return memberCounts[type.ordinal()];
+    }
+
+    /**
+     * Closes the underlying writer.
+     *
+     * @throws IOException If an I/O error occurs while closing.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void start() throws IOException {
+        if (!started) {
+            started = true;
+            writeHeader();
+        }
+    }
+
+    /**
+     * Writes whatever precedes the first group. Does nothing by default.
+     *
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    protected void writeHeader() throws IOException {
+    }
+
+    /**
+     * Writes a single group.
+     *
+     * @param number The number of the group in the report, starting at 1.
+     * @param type   The type of the group.
+     * @param hash   The key of the group.
+     * @param size   The size of each member of the group in bytes, or -1 if unknown.
+     * @param paths  The paths of the members of the group; at least two.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    protected abstract void writeGroupRecord(long number, GroupType type, String hash, long size, List<Path> paths)
+            throws IOException;
+
+    /**
+     * Writes the totals and whatever follows the last group. The totals are available
+     * through `getGroupCount(GroupType)` and `getMemberCount(GroupType)`.
+     *
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    protected abstract void writeSummary() throws IOException;
+
+    /**
+     * Appends a string as a quoted JSON string literal.
+     *
+     * @param value The string to quote.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    protected void writeJsonString(String value) throws IOException {
+        writeJsonString(out, value);
+    }
+
+    /**
+     * Appends a string as a quoted JSON string literal to any writer.
+     *
+     * @param out   The writer receiving the literal.
+     * @param value The string to quote.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    public static void writeJsonString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Appends a group as a JSON object with its type, hash, size, member count and paths.
+     *
+     * @param type  The type of the group.
+     * @param hash  The key of the group.
+     * @param size  The size of each member of the group in bytes, or -1 if unknown.
+     * @param paths The paths of the members of the group.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    protected void writeJsonGroup(GroupType type, String hash, long size, List<Path> paths) throws IOException {
+        out.write("{\"type\":\"" + type.getRecordType() + "\",\"hash\":");
+        writeJsonString(hash);
+        if (size >= 0) {
+            out.write(",\"size\":" + size);
+        }
+        out.write(",\"count\":" + paths.size() + ",\"paths\":[");
+        for (int i = 0; i < paths.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeJsonString(paths.get(i).toString());
+        }
+        out.write("]}");
+    }
+
+    /**
+     * Appends the totals of the report as JSON members, without the surrounding braces.
+     *
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    protected void writeJsonTotals() throws IOException {
+        out.write("\"groupCount\":" + getGroupCount(GroupType.FILE)
+                + ",\"duplicateFileCount\":" + getMemberCount(GroupType.FILE)
+                + ",\"folderGroupCount\":" + getGroupCount(GroupType.FOLDER)
+                + ",\"duplicateFolderCount\":" + getMemberCount(GroupType.FOLDER)
+                + ",\"hardlinkGroupCount\":" + getGroupCount(GroupType.HARDLINK)
+                + ",\"hardlinkFileCount\":" + getMemberCount(GroupType.HARDLINK));
+        if (getGroupCount(GroupType.REFERENCE) > 0) {
+            out.write(",\"referenceFileCount\":" + getGroupCount(GroupType.REFERENCE));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.muzoo.ssc.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.List;
+
+/**
+ * The TextReportWriter class writes the human-readable duplicate report. Groups are written
+ * as they arrive, so the statistics come after the groups instead of before them.
+ *
+ * Folder, hardlink and reference totals are only written when groups of that type were found.
+ *
+ * Output:
+ *
+ * Duplicate File Groups:
+ * ================================================================
+ * Duplicate group (size: 2):
+ *  - /data/a.txt
+ *  - /data/b.txt
+ *
+ * Duplicate Statistics:
+ *  - Total Duplicate Groups: 1
+ *  - Total Duplicate Files: 2
+ */
+public class TextReportWriter extends ReportWriter {
+
+    public TextReportWriter(Writer out, boolean countOnly) {
+        super(out, countOnly);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        if (!countOnly) {
+            out.write("\nDuplicate File Groups:\n");
+        }
+    }
+
+    @Override
+    protected void writeGroupRecord(long number, GroupType type, String hash, long size, List<Path> paths)
+            throws IOException {
+        out.write("================================================================\n");
+        out.write(type.getTitle() + " (size: " + paths.size() + "):\n");
+        for (Path path : paths) {
+            out.write(" - " + path + "\n");
+        }
+    }
+
+    @Override
+    protected void writeSummary() throws IOException {
+        DecimalFormat df = new DecimalFormat("#,##0");
+        out.write("\nDuplicate Statistics:\n");
+        out.write(" - Total Duplicate Groups: " + df.format(getGroupCount(GroupType.FILE)) + "\n");
+        out.write(" - Total Duplicate Files: " + df.format(getMemberCount(GroupType.FILE)) + "\n");
+        if (getGroupCount(GroupType.FOLDER) > 0) {
+            out.write(" - Total Duplicate Folder Groups: " + df.format(getGroupCount(GroupType.FOLDER)) + "\n");
+            out.write(" - Total Duplicate Folders: " + df.format(getMemberCount(GroupType.FOLDER)) + "\n");
+        }
+        if (getGroupCount(GroupType.HARDLINK) > 0) {
+            out.write(" - Total Hardlink Groups: " + df.format(getGroupCount(GroupType.HARDLINK)) + "\n");
+            out.write(" - Total Hardlinked Paths: " + df.format(getMemberCount(GroupType.HARDLINK)) + "\n");
+        }
+        if (getGroupCount(GroupType.REFERENCE) > 0) {
+            out.write(" - Total Files Already in Reference: " + df.format(getGroupCount(GroupType.REFERENCE)) + "\n");
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package io.muzoo.ssc.stats;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 /**
  * The FileStatistics class is responsible for collecting and managing statistics
@@ -8,10 +15,19 @@ import java.text.DecimalFormat;
  *
  * Features:
  * - Tracks the total number of files and folders.
- * - Tracks the number of duplicate files and folders.
+ * - Tracks the files and folders skipped by the filters of the walk; they are only shown when nonzero.
+ * - Tracks the number of redundant copies of files and folders (every member of a duplicate group
+ *   but one), and of extra hardlinks to a file. The duplicate report counts every member of a
+ *   group instead, hence the different labels.
+ * - Tracks the bytes a memory-bounded scan spilled to disk; they are only shown when nonzero.
+ * - Tracks the full reads the block-sample stage avoided; they are only shown when nonzero.
+ * - Tracks the reclaimable size: the physical storage taken by all but one file of each duplicate group.
  * - Calculates the combined size of all files.
+ * - Tracks, per pipeline stage, how many files and bytes each stage eliminated.
  * - Provides formatted statistics for display.
  * - Offers a reset method to clear statistics, allowing reuse.
+ * - Is safe to update from many threads at once; counters are striped LongAdders,
+ *   so concurrent workers do not contend on a single field.
  *
  * Example Usage:
  * FileStatistics stats = new FileStatistics();
@@ -27,38 +43,79 @@ import java.text.DecimalFormat;
  *  - Total Files: 1
  *  - Total Folders: 1
  *  - Total Size: 1,024 bytes
- *  - Duplicate Files: 1
- *  - Duplicate Folders: 1
+ *  - Redundant File Copies: 1
+ *  - Redundant Folder Copies: 1
+ *  - Extra Hardlinks: 0
+ *  - Reclaimable Size: 0 bytes
+ * Pipeline Stages:
  */
 public class FileStatistics {
 
-    private long fileCount;
-    private long folderCount;
-    private long totalFileSize;
-    private long duplicateFileCount;
-    private long duplicateFolderCount;
+    private final LongAdder fileCount = new LongAdder();
+    private final LongAdder folderCount = new LongAdder();
+    private final LongAdder skippedFileCount = new LongAdder();
+    private final LongAdder skippedFolderCount = new LongAdder();
+    private final LongAdder totalFileSize = new LongAdder();
+    private final LongAdder duplicateFileCount = new LongAdder();
+    private final LongAdder duplicateFolderCount = new LongAdder();
+    private final LongAdder hardlinkCount = new LongAdder();
+    private final LongAdder reclaimableSize = new LongAdder();
+    private final LongAdder spilledBytes = new LongAdder();
+    private final LongAdder blockSampleAvoidedBytes = new LongAdder();
+    private final Map<String, StageStatistics> stages = Collections.synchronizedMap(new LinkedHashMap<>());
 
     // Increment methods
     /**
      * Increments the total file count by 1.
      */
     public void incrementFileCount() {
-        fileCount++;
+        fileCount.increment();
+    }
+
+    /**
+     * Increments the total file count by the specified number of files.
+     *
+     * @param count The number of files to add.
+     */
+    public void incrementFileCount(long count) {
+        fileCount.add(count);
     }
 
     public long getFileCount() {
-        return fileCount;
+        return fileCount.sum();
     }
 
     /**
      * Increments the total folder count by 1.
      */
     public void incrementFolderCount() {
-        folderCount++;
+        folderCount.increment();
     }
 
     public long getFolderCount() {
-        return folderCount;
+        return folderCount.sum();
+    }
+
+    /**
+     * Increments the count of files skipped by the filters of the walk by 1.
+     */
+    public void incrementSkippedFileCount() {
+        skippedFileCount.increment();
+    }
+
+    public long getSkippedFileCount() {
+        return skippedFileCount.sum();
+    }
+
+    /**
+     * Increments the count of folders the walk did not enter because of its filters by 1.
+     */
+    public void incrementSkippedFolderCount() {
+        skippedFolderCount.increment();
+    }
+
+    public long getSkippedFolderCount() {
+        return skippedFolderCount.sum();
     }
 
     /**
@@ -66,33 +123,116 @@ public class FileStatistics {
      * @param size The size of the file to be added to the total, in bytes.
      */
     public void incrementTotalFileSize(long size) {
-        totalFileSize += size;
+        totalFileSize.add(size);
     }
 
     public long getTotalFileSize() {
-        return totalFileSize;
+        return totalFileSize.sum();
     }
 
     /**
      * Increments the duplicate file count by 1.
      */
     public void incrementDuplicateFileCount() {
-        duplicateFileCount++;
+        duplicateFileCount.increment();
+    }
+
+    /**
+     * Adds the specified number of files to the duplicate file count.
+     * @param count The number of duplicate files to add.
+     */
+    public void incrementDuplicateFileCount(long count) {
+        duplicateFileCount.add(count);
     }
 
     public long getDuplicateFileCount() {
-        return duplicateFileCount;
+        return duplicateFileCount.sum();
     }
 
     /**
      * Increments the duplicate folder count by 1.
      */
     public void incrementDuplicateFolderCount() {
-        duplicateFolderCount++;
+        duplicateFolderCount.increment();
+    }
+
+    /**
+     * Adds the specified number of folders to the duplicate folder count.
+     * @param count The number of duplicate folders to add.
+     */
+    public void incrementDuplicateFolderCount(long count) {
+        duplicateFolderCount.add(count);
     }
 
     public long getDuplicateFolderCount() {
-        return duplicateFolderCount;
+        return duplicateFolderCount.sum();
+    }
+
+    /**
+     * Adds the specified number of paths to the hardlink count. Only the links beyond the first
+     * path of a physical file are counted.
+     * @param count The number of extra hardlinks to add.
+     */
+    public void incrementHardlinkCount(long count) {
+        hardlinkCount.add(count);
+    }
+
+    public long getHardlinkCount() {
+        return hardlinkCount.sum();
+    }
+
+    /**
+     * Adds the specified number of bytes to the reclaimable size.
+     * @param size The physical size in bytes that removing duplicates would free.
+     */
+    public void incrementReclaimableSize(long size) {
+        reclaimableSize.add(size);
+    }
+
+    public long getReclaimableSize() {
+        return reclaimableSize.sum();
+    }
+
+    /**
+     * Adds the specified number of bytes to the bytes spilled to disk by a memory-bounded scan.
+     * @param bytes The number of bytes written to run files.
+     */
+    public void incrementSpilledBytes(long bytes) {
+        spilledBytes.add(bytes);
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes.sum();
+    }
+
+    /**
+     * Adds the specified number of bytes to the reads avoided by the block-sample stage: the part
+     * of a file it eliminated that the full-hash stage would have read and the sample did not.
+     * @param bytes The number of bytes not read.
+     */
+    public void incrementBlockSampleAvoidedBytes(long bytes) {
+        blockSampleAvoidedBytes.add(bytes);
+    }
+
+    public long getBlockSampleAvoidedBytes() {
+        return blockSampleAvoidedBytes.sum();
+    }
+
+    /**
+     * Returns the statistics of the named pipeline stage, creating them on first use.
+     * Stages are reported in the order in which they were first requested.
+     *
+     * @param name The name of the pipeline stage (e.g., "size", "full-hash").
+     * @return The StageStatistics for the stage.
+     */
+    public StageStatistics getStage(String name) {
+        return stages.computeIfAbsent(name, StageStatistics::new);
+    }
+
+    public Collection<StageStatistics> getStages() {
+        synchronized (stages) {
+            return new ArrayList<>(stages.values());
+        }
     }
 
     /**
@@ -103,30 +243,73 @@ public class FileStatistics {
      */
     public String getFormattedStatistics() {
         DecimalFormat df = new DecimalFormat("#,###");
+        String stageLines = getStages().stream()
+                .map(StageStatistics::getFormattedStatistics)
+                .collect(Collectors.joining("\n"));
         return String.format("""
             Statistics:
              - Total Files: %s
              - Total Folders: %s
-             - Total Size: %s bytes
-             - Duplicate Files: %s
-             - Duplicate Folders: %s
+             - Total Size: %s bytes%s
+             - Redundant File Copies: %s
+             - Redundant Folder Copies: %s
+             - Extra Hardlinks: %s
+             - Reclaimable Size: %s bytes%s
+            Pipeline Stages:
+            %s
             """,
-                df.format(fileCount),
-                df.format(folderCount),
-                df.format(totalFileSize),
-                df.format(duplicateFileCount),
-                df.format(duplicateFolderCount));
+                df.format(fileCount.sum()),
+                df.format(folderCount.sum()),
+                df.format(totalFileSize.sum()),
+                formatSkipped(df),
+                df.format(duplicateFileCount.sum()),
+                df.format(duplicateFolderCount.sum()),
+                df.format(hardlinkCount.sum()),
+                df.format(reclaimableSize.sum()),
+                formatBytesLines(df),
+                stageLines);
+    }
+
+    private String formatBytesLines(DecimalFormat df) {
+        StringBuilder lines = new StringBuilder();
+        if (spilledBytes.sum() > 0) {
+            lines.append("\n - Spilled to Disk: ").append(df.format(spilledBytes.sum())).append(" bytes");
+        }
+        long avoided = blockSampleAvoidedBytes.sum();
+        if (avoided > 0) {
+            lines.append("\n - Reads Avoided by Block Sampling: ").append(df.format(avoided)).append(" bytes")
+                    .append(String.format(" (%.2f GB)", avoided / 1e9));
+        }
+        return lines.toString();
+    }
+
+    private String formatSkipped(DecimalFormat df) {
+        StringBuilder lines = new StringBuilder();
+        if (skippedFileCount.sum() > 0) {
+            lines.append("\n - Skipped Files: ").append(df.format(skippedFileCount.sum()));
+        }
+        if (skippedFolderCount.sum() > 0) {
+            lines.append("\n - Skipped Folders: ").append(df.format(skippedFolderCount.sum()));
+        }
+        return lines.toString();
     }
 
     /**
-     * Resets all tracked statistics (file count, folder count, total file size, and duplicate counts)
+     * Resets all tracked statistics (file count, folder count, total file size, duplicate counts and stages)
      * to zero, allowing the object to be reused for a new directory traversal.
      */
     public void reset() {
-        fileCount = 0;
-        folderCount = 0;
-        totalFileSize = 0;
-        duplicateFileCount = 0;
-        duplicateFolderCount = 0;
+        fileCount.reset();
+        folderCount.reset();
+        skippedFileCount.reset();
+        skippedFolderCount.reset();
+        totalFileSize.reset();
+        duplicateFileCount.reset();
+        duplicateFolderCount.reset();
+        hardlinkCount.reset();
+        reclaimableSize.reset();
+        spilledBytes.reset();
+        blockSampleAvoidedBytes.reset();
+        stages.clear();
     }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+package io.muzoo.ssc.stats;
+
+import java.text.DecimalFormat;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The StageStatistics class records how much work a single stage of the
+ * duplicate detection pipeline did and how much work it saved.
+ *
+ * Features:
+ * - Tracks how many files entered the stage.
+ * - Tracks how many files (and their bytes) the stage eliminated as unique.
+ * - Tracks how many bytes the stage actually read from disk.
+ * - Tracks how many files the stage took from the hash cache instead of reading them.
+ * - Is safe to update from many worker threads at once.
+ *
+ * Example Usage:
+ * StageStatistics size = statistics.getStage("size");
+ * size.incrementFilesIn(10);
+ * size.incrementEliminated(1, 4096);
+ * System.out.println(size.getFormattedStatistics());
+ *
+ * Output:
+ *  - size: 10 in, 1 eliminated (4,096 bytes), 0 bytes read
+ */
+public class StageStatistics {
+
+    private final String name;
+    private final LongAdder filesIn = new LongAdder();
+    private final LongAdder filesEliminated = new LongAdder();
+    private final LongAdder bytesEliminated = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+
+    /**
+     * Constructs an empty StageStatistics for the named stage.
+     *
+     * @param name The name of the pipeline stage (e.g., "size", "full-hash").
+     */
+    public StageStatistics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds the specified number of files to the count of files entering the stage.
+     * @param count The number of files that entered the stage.
+     */
+    public void incrementFilesIn(long count) {
+        filesIn.add(count);
+    }
+
+    public long getFilesIn() {
+        return filesIn.sum();
+    }
+
+    /**
+     * Records files that this stage proved to be unique, so later stages never touch them.
+     * @param files The number of files eliminated.
+     * @param bytes The combined size of the eliminated files, in bytes.
+     */
+    public void incrementEliminated(long files, long bytes) {
+        filesEliminated.add(files);
+        bytesEliminated.add(bytes);
+    }
+
+    public long getFilesEliminated() {
+        return filesEliminated.sum();
+    }
+
+    public long getBytesEliminated() {
+        return bytesEliminated.sum();
+    }
+
+    /**
+     * Adds the specified number of bytes to the amount read from disk by this stage.
+     * @param bytes The number of bytes read.
+     */
+    public void incrementBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Adds the specified number of files to the count of files whose digest came from the hash cache.
+     * @param count The number of cache hits.
+     */
+    public void incrementCacheHits(long count) {
+        cacheHits.add(count);
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Returns a single formatted line describing this stage.
+     * Cache hits are only mentioned for stages that had any.
+     *
+     * @return A string containing the formatted stage statistics.
+     */
+    public String getFormattedStatistics() {
+        DecimalFormat df = new DecimalFormat("#,##0");
+        String line = String.format(" - %s: %s in, %s eliminated (%s bytes), %s bytes read",
+                name,
+                df.format(filesIn.sum()),
+                df.format(filesEliminated.sum()),
+                df.format(bytesEliminated.sum()),
+                df.format(bytesRead.sum()));
+        long hits = cacheHits.sum();
+        return hits == 0 ? line : line + ", " + df.format(hits) + " cache hits";
+    }
+
+    /**
+     * Resets all counters of this stage to zero.
+     */
+    public void reset() {
+        filesIn.reset();
+        filesEliminated.reset();
+        bytesEliminated.reset();
+        bytesRead.reset();
+        cacheHits.reset();
+    }
+}
@@ -0,0 +1,213 @@
+package io.muzoo.ssc.watch;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The DirectoryWatcher class keeps a DuplicateIndex current by listening to file system events
+ * instead of rescanning the tree periodically. Every directory of the tree is registered with a
+ * WatchService; events are collected until the tree has been quiet for the debounce period and
+ * then applied to the index as one batch.
+ *
+ * Responsibilities:
+ * - Register every directory of the tree, including directories created while watching.
+ * - Debounce bursts of events (e.g., a file being written in many chunks) into a single update.
+ *   A batch is applied at the latest after ten debounce periods, even if events keep coming.
+ * - Re-read only the paths named by the events of a batch.
+ * - Recover from lost events (OVERFLOW) by rescanning only the directory whose events were lost.
+ *
+ * Features:
+ * - New directories are rescanned as a whole, since files may appear in them before they are registered.
+ * - Directories rejected by an optional directory filter are neither registered nor rescanned.
+ * - A listener is notified with the index after the initial scan and after every batch.
+ * - Runs until the calling thread is interrupted or the watcher is closed.
+ *
+ * Example Usage:
+ * DuplicateIndex index = new DuplicateIndex(new MD5Algo(), new WorkerPool(4, false));
+ * try (DirectoryWatcher watcher = new DirectoryWatcher(Paths.get("/data"), index, 500)) {
+ *     watcher.run(i -> System.out.println(i.getDuplicateGroups().size() + " duplicate groups"));
+ * }
+ */
+public class DirectoryWatcher implements AutoCloseable {
+    private static final int MAX_BATCH_FACTOR = 10;
+
+    private final Path root;
+    private final DuplicateIndex index;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Predicate<Path> directoryFilter;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    /**
+     * Constructs a DirectoryWatcher.
+     *
+     * @param root           The root of the tree to watch.
+     * @param index          The index kept up to date.
+     * @param debounceMillis How long the tree must be quiet before a batch of events is applied.
+     * @throws IOException If the WatchService cannot be created.
+     * @throws IllegalArgumentException If the debounce period is negative.
+     */
+    public DirectoryWatcher(Path root, DuplicateIndex index, long debounceMillis) throws IOException {
+        this(root, index, debounceMillis, dir -> true);
+    }
+
+    /**
+     * Constructs a DirectoryWatcher that only watches the directories accepted by a filter.
+     *
+     * @param root            The root of the tree to watch.
+     * @param index           The index kept up to date.
+     * @param debounceMillis  How long the tree must be quiet before a batch of events is applied.
+     * @param directoryFilter Tells whether a directory below the root is watched.
+     * @throws IOException If the WatchService cannot be created.
+     * @throws IllegalArgumentException If the debounce period is negative.
+     */
+    public DirectoryWatcher(Path root, DuplicateIndex index, long debounceMillis, Predicate<Path> directoryFilter)
+            throws IOException {
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("Debounce period cannot be negative: " + debounceMillis);
+        }
+        this.root = root;
+        this.index = index;
+        this.debounceMillis = debounceMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.directoryFilter = directoryFilter;
+    }
+
+    /**
+     * Registers the tree, scans it once in full and then applies changes as they happen.
+     * Registration happens before the initial scan, so no change made during the scan is lost.
+     *
+     * @param listener Receives the index after the initial scan and after every applied batch.
+     * @throws IOException If an I/O error occurs while registering or scanning the tree.
+     */
+    public void run(Consumer<DuplicateIndex> listener) throws IOException {
+        registerTree(root);
+        index.rescan(root);
+        listener.accept(index);
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> rescans = new LinkedHashSet<>();
+
+                WatchKey key = watchService.take();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis * MAX_BATCH_FACTOR);
+                while (key != null) {
+                    collectEvents(key, changed, rescans);
+                    key = System.nanoTime() < deadline
+                            ? watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)
+                            : null;
+                }
+
+                applyBatch(changed, rescans);
+                listener.accept(index);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed from another thread: stop watching.
+        }
+    }
+
+    /**
+     * Sorts the events of a key into paths to re-read and directories to rescan.
+     */
+    private void collectEvents(WatchKey key, Set<Path> changed, Set<Path> rescans) {
+        Path dir = watchedDirectories.get(key);
+        if (dir == null) {
+            key.cancel();
+            return;
+        }
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rescans.add(dir);
+                continue;
+            }
+
+            Path child = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                rescans.add(child);
+            } else {
+                changed.add(child);
+            }
+        }
+
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    /**
+     * Applies a batch to the index. Directories to rescan are registered first, so their
+     * subdirectories are watched too; paths inside a rescanned directory are not re-read twice.
+     */
+    private void applyBatch(Set<Path> changed, Set<Path> rescans) throws IOException {
+        for (Path dir : rescans) {
+            if (Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                registerTree(dir);
+            }
+            index.rescan(dir);
+        }
+
+        changed.removeIf(path -> rescans.stream().anyMatch(path::startsWith));
+        index.refresh(List.copyOf(changed));
+    }
+
+    /**
+     * Registers every directory of a subtree. Registering a directory that is already watched
+     * returns its existing key, so rescanned subtrees can simply be registered again.
+     */
+    private void registerTree(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path subdir, BasicFileAttributes attrs) throws IOException {
+                if (!subdir.equals(root) && !directoryFilter.test(subdir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = subdir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, subdir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Error processing file: " + file + " - " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Stops watching and releases the WatchService.
+     *
+     * @throws IOException If an I/O error occurs while closing the WatchService.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,363 @@
+package io.muzoo.ssc.watch;
+
+import io.muzoo.ssc.algos.Algorithms;
+import io.muzoo.ssc.pipeline.FileKeys;
+import io.muzoo.ssc.pipeline.WalkFilter;
+import io.muzoo.ssc.pipeline.WorkerPool;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The DuplicateIndex class keeps the duplicate groups of a directory tree up to date while the
+ * tree changes, instead of recomputing them with a full scan. It applies the same idea as the
+ * batch pipeline: files are grouped by size, and only files that share their size with another
+ * file are hashed. A file is hashed again only when its size or modification time changes.
+ *
+ * Responsibilities:
+ * - Index every file of a subtree with its size and modification time (`rescan`).
+ * - Apply changes to individual paths: new, modified and deleted files (`refresh`).
+ * - Hash the files that need a digest on the worker pool.
+ * - Report the current duplicate groups.
+ *
+ * Features:
+ * - A file that becomes the second file of its size triggers hashing of the first one as well.
+ * - Paths that are hardlinks of the same file (same device and inode) are one file: only the
+ *   first of them is listed in its group, so links alone never form a group of duplicates.
+ * - An optional WalkFilter keeps excluded directories out of rescans and drops files it rejects,
+ *   including files that change so that it rejects them.
+ * - Deleting a directory drops every indexed file below it.
+ * - All methods are synchronized, so the index can be read while a watcher updates it.
+ *
+ * Example Usage:
+ * DuplicateIndex index = new DuplicateIndex(new MD5Algo(), new WorkerPool(4, false));
+ * index.rescan(Paths.get("/data"));
+ * index.refresh(List.of(Paths.get("/data/new.bin")));
+ * index.getDuplicateGroups().forEach((hash, paths) -> System.out.println(hash + ": " + paths));
+ */
+public class DuplicateIndex {
+    private final Algorithms algorithm;
+    private final WorkerPool workerPool;
+    private final WalkFilter filter;
+    private final NavigableMap<Path, IndexedFile> files = new TreeMap<>();
+    private final Map<Long, Set<Path>> bySize = new HashMap<>();
+    private final Map<DigestKey, Set<Path>> byDigest = new LinkedHashMap<>();
+    private final Set<Path> pending = new LinkedHashSet<>();
+    private long hashedFileCount;
+
+    /**
+     * Constructs an empty DuplicateIndex that indexes every regular file.
+     *
+     * @param algorithm  The hashing algorithm.
+     * @param workerPool The pool on which files are hashed.
+     */
+    public DuplicateIndex(Algorithms algorithm, WorkerPool workerPool) {
+        this(algorithm, workerPool, null);
+    }
+
+    /**
+     * Constructs an empty DuplicateIndex that only indexes the files accepted by a filter.
+     *
+     * @param algorithm  The hashing algorithm.
+     * @param workerPool The pool on which files are hashed.
+     * @param filter     The filter of the indexed files and directories, or `null` to index every regular file.
+     */
+    public DuplicateIndex(Algorithms algorithm, WorkerPool workerPool, WalkFilter filter) {
+        this.algorithm = algorithm;
+        this.workerPool = workerPool;
+        this.filter = filter;
+    }
+
+    /**
+     * Walks a subtree and brings the index in line with it: files that were not indexed yet
+     * are added, changed files are re-indexed and indexed files that no longer exist are dropped.
+     * Used for the initial scan and whenever the events of a directory were lost.
+     *
+     * @param dir The root of the subtree.
+     * @throws IOException If an I/O error occurs while walking the subtree.
+     */
+    public synchronized void rescan(Path dir) throws IOException {
+        Map<Path, BasicFileAttributes> found = new HashMap<>();
+        if (Files.isDirectory(dir)) {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path subdir, BasicFileAttributes attrs) {
+                    return filter == null || filter.acceptsDirectory(subdir)
+                            ? FileVisitResult.CONTINUE
+                            : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && accepts(file, attrs)) {
+                        found.put(file, attrs);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    System.err.println("Error processing file: " + file + " - " + e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        for (Path indexed : subtree(dir)) {
+            if (!found.containsKey(indexed)) {
+                remove(indexed);
+            }
+        }
+        found.forEach(this::upsert);
+        hashPending();
+    }
+
+    /**
+     * Re-reads the specified paths and updates the index accordingly. A path that no longer
+     * exists is dropped together with everything indexed below it; directories are ignored,
+     * since their content is reported through their own events.
+     *
+     * @param paths The paths that changed.
+     * @throws InterruptedIOException If the update is interrupted while waiting for the workers.
+     */
+    public synchronized void refresh(Collection<Path> paths) throws InterruptedIOException {
+        for (Path path : paths) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isRegularFile() && accepts(path, attrs)) {
+                    upsert(path, attrs);
+                } else if (attrs.isRegularFile()) {
+                    remove(path);
+                }
+            } catch (NoSuchFileException e) {
+                subtree(path).forEach(this::remove);
+            } catch (IOException e) {
+                System.err.println("Error processing file: " + path + " - " + e.getMessage());
+            }
+        }
+        hashPending();
+    }
+
+    /**
+     * Returns the current groups of duplicate files.
+     *
+     * @return A map from the hexadecimal digest of each group to the paths of its files,
+     *         holding only groups of two or more distinct files; of several hardlinks to the
+     *         same file, only the first is listed.
+     */
+    public synchronized Map<String, List<Path>> getDuplicateGroups() {
+        Map<String, List<Path>> groups = new LinkedHashMap<>();
+        Set<FileKey> seen = new HashSet<>();
+        byDigest.forEach((key, paths) -> {
+            if (paths.size() < 2) {
+                return;
+            }
+            List<Path> distinct = new ArrayList<>(paths.size());
+            seen.clear();
+            for (Path path : paths) {
+                FileKey fileKey = files.get(path).fileKey;
+                if (fileKey == null || seen.add(fileKey)) {
+                    distinct.add(path);
+                }
+            }
+            if (distinct.size() > 1) {
+                groups.put(Hex.encodeHexString(key.digest), distinct);
+            }
+        });
+        return groups;
+    }
+
+    public synchronized int getFileCount() {
+        return files.size();
+    }
+
+    /**
+     * Returns the number of files hashed since the index was created, including re-hashes
+     * of modified files.
+     *
+     * @return The number of hashed files.
+     */
+    public synchronized long getHashedFileCount() {
+        return hashedFileCount;
+    }
+
+    private boolean accepts(Path file, BasicFileAttributes attrs) {
+        return filter == null || filter.acceptsFile(file, attrs);
+    }
+
+    private void upsert(Path file, BasicFileAttributes attrs) {
+        long lastModified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        IndexedFile existing = files.get(file);
+        if (existing != null && existing.size == attrs.size() && existing.lastModified == lastModified) {
+            return;
+        }
+        if (existing != null) {
+            remove(file);
+        }
+
+        files.put(file, new IndexedFile(attrs.size(), lastModified));
+        Set<Path> sameSize = bySize.computeIfAbsent(attrs.size(), size -> new LinkedHashSet<>());
+        sameSize.add(file);
+        if (sameSize.size() > 1) {
+            for (Path candidate : sameSize) {
+                if (files.get(candidate).digest == null) {
+                    pending.add(candidate);
+                }
+            }
+        }
+    }
+
+    private void remove(Path file) {
+        IndexedFile removed = files.remove(file);
+        if (removed == null) {
+            return;
+        }
+        pending.remove(file);
+        removeFromGroup(bySize, removed.size, file);
+        if (removed.digest != null) {
+            removeFromGroup(byDigest, new DigestKey(removed.size, removed.digest), file);
+        }
+    }
+
+    private static <K> void removeFromGroup(Map<K, Set<Path>> groups, K key, Path file) {
+        Set<Path> group = groups.get(key);
+        if (group != null && group.remove(file) && group.isEmpty()) {
+            groups.remove(key);
+        }
+    }
+
+    /**
+     * Returns the indexed paths equal to or below the specified path.
+     */
+    private List<Path> subtree(Path dir) {
+        List<Path> result = new ArrayList<>();
+        String prefix = dir.toString();
+        for (Path indexed : files.tailMap(dir, true).keySet()) {
+            if (!indexed.toString().startsWith(prefix)) {
+                break;
+            }
+            if (indexed.startsWith(dir)) {
+                result.add(indexed);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Hashes every file waiting for a digest on the worker pool and adds it to its digest group,
+     * reading its device and inode along the way. Files that cannot be hashed are reported by the
+     * pool and stay without digest.
+     */
+    private void hashPending() throws InterruptedIOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Path> batch = new ArrayList<>(pending);
+        pending.clear();
+
+        List<byte[]> digests = workerPool.map(batch, file -> algorithm.computeDigest(file));
+        long[] fileKey = new long[2];
+        for (int i = 0; i < batch.size(); i++) {
+            IndexedFile indexed = files.get(batch.get(i));
+            byte[] digest = digests.get(i);
+            if (indexed == null || digest == null) {
+                continue;
+            }
+            indexed.digest = digest;
+            indexed.fileKey = FileKeys.read(batch.get(i), false, fileKey) ? new FileKey(fileKey[0], fileKey[1]) : null;
+            hashedFileCount++;
+            byDigest.computeIfAbsent(new DigestKey(indexed.size, digest), key -> new LinkedHashSet<>()).add(batch.get(i));
+        }
+    }
+
+    /**
+     * The indexed state of a single file. The digest and file key are only read once another
+     * file of the same size exists.
+     */
+    private static final class IndexedFile {
+        private final long size;
+        private final long lastModified;
+        private byte[] digest;
+        private FileKey fileKey;
+
+        private IndexedFile(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * The key of a digest group: the size of its files and their common digest.
+     */
+    private static final class DigestKey {
+        private final long size;
+        private final byte[] digest;
+
+        private DigestKey(long size, byte[] digest) {
+            this.size = size;
+            this.digest = digest;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DigestKey)) {
+                return false;
+            }
+            DigestKey other = (DigestKey) o;
+            return size == other.size && Arrays.equals(digest, other.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(size) + Arrays.hashCode(digest);
+        }
+    }
+
+    /**
+     * The identity of a physical file, shared by all of its hardlinks.
+     */
+    private static final class FileKey {
+        private final long device;
+        private final long inode;
+
+        private FileKey(long device, long inode) {
+            this.device = device;
+            this.inode = inode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileKey)) {
+                return false;
+            }
+            FileKey other = (FileKey) o;
+            return device == other.device && inode == other.inode;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(device) + Long.hashCode(inode);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package io.muzoo.ssc;
+
+import io.muzoo.ssc.report.GroupType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that every way of scanning a tree finds the same duplicate groups: each algorithm,
+ * the in-memory and the memory-bounded (spilled) scan, and the merge of sharded index exports.
+ *
+ * The tree holds small and large duplicates, files of the same size that only differ in the
+ * middle or at the end (so the partial hash cannot tell them apart), a file of a unique size,
+ * and a hardlink, so every stage of the pipeline has something to eliminate.
+ */
+class DuplicateFinderTest {
+    private static final List<String> ALGORITHMS = List.of("bbb", "sha256", "md5", "xxh64", "murmur3");
+
+    @TempDir
+    Path root;
+
+    @TempDir
+    Path work;
+
+    @Test
+    void everyAlgorithmFindsTheSameGroups() throws IOException {
+        createTree(root);
+        Set<Set<Path>> expected = expectedGroups(root);
+        Set<Set<Path>> expectedLinks = Set.of(Set.of(root.resolve("large/copy.bin"), root.resolve("large/link.bin")));
+
+        for (String algorithm : ALGORITHMS) {
+            ScanResult result = new DuplicateFinder(root.toString(), algorithm).scan();
+            assertEquals(expected, groups(result, GroupType.FILE), algorithm);
+            assertEquals(expectedLinks, groups(result, GroupType.HARDLINK), algorithm);
+        }
+    }
+
+    @Test
+    void confirmedScanFindsTheSameGroups() throws IOException {
+        createTree(root);
+
+        ScanResult result = new DuplicateFinder(root.toString(), "xxh64", new ScanOptions().setConfirm(true)).scan();
+        assertEquals(expectedGroups(root), groups(result, GroupType.FILE));
+    }
+
+    @Test
+    void spilledScanFindsTheSameGroupsAsInMemoryScan() throws IOException {
+        createTree(root);
+
+        for (String algorithm : List.of("sha256", "xxh64")) {
+            ScanResult inMemory = new DuplicateFinder(root.toString(), algorithm).scan();
+            ScanResult spilled = new DuplicateFinder(root.toString(), algorithm,
+                    new ScanOptions().setMemoryBudget(1 << 20).setSpillDirectory(work)).scan();
+
+            assertEquals(groups(inMemory, GroupType.FILE), groups(spilled, GroupType.FILE), algorithm);
+            assertEquals(groups(inMemory, GroupType.HARDLINK), groups(spilled, GroupType.HARDLINK), algorithm);
+            assertEquals(inMemory.getStatistics().getDuplicateFileCount(),
+                    spilled.getStatistics().getDuplicateFileCount(), algorithm);
+            assertEquals(inMemory.getStatistics().getReclaimableSize(),
+                    spilled.getStatistics().getReclaimableSize(), algorithm);
+        }
+    }
+
+    @Test
+    void mergedShardsFindTheSameGroupsAsFullScan() throws IOException {
+        createTree(root);
+        ScanResult full = new DuplicateFinder(root.toString(), "xxh64").scan();
+
+        int shardCount = 3;
+        List<Path> indexes = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            Path index = work.resolve("shard-" + shard + ".idx");
+            new DuplicateFinder(root.toString(), "xxh64", new ScanOptions().setShard(shard, shardCount))
+                    .exportIndex(index);
+            indexes.add(index);
+        }
+        ScanResult merged = DuplicateFinder.merge(indexes);
+
+        assertEquals(groups(full, GroupType.FILE), groups(merged, GroupType.FILE));
+        assertEquals(full.getStatistics().getDuplicateFileCount(), merged.getStatistics().getDuplicateFileCount());
+        assertEquals(full.getStatistics().getReclaimableSize(), merged.getStatistics().getReclaimableSize());
+    }
+
+    /**
+     * Creates the test tree below the root.
+     */
+    private static void createTree(Path root) throws IOException {
+        Random random = new Random(42);
+        byte[] large = new byte[300_000];
+        random.nextBytes(large);
+
+        write(root.resolve("small/a.txt"), "alpha".getBytes());
+        write(root.resolve("small/b.txt"), "alpha".getBytes());
+        write(root.resolve("small/deep/c.txt"), "alpha".getBytes());
+        write(root.resolve("small/other.txt"), "bravo".getBytes());
+        write(root.resolve("small/unique.txt"), "a size no other file has".getBytes());
+
+        write(root.resolve("large/original.bin"), large);
+        write(root.resolve("large/copy.bin"), large);
+        Files.createLink(root.resolve("large/link.bin"), root.resolve("large/copy.bin"));
+        large[large.length / 2] ^= 1;
+        write(root.resolve("large/middle.bin"), large);
+        write(root.resolve("large/middle-copy.bin"), large);
+        large[large.length / 2] ^= 1;
+        large[large.length - 1] ^= 1;
+        write(root.resolve("large/end.bin"), large);
+    }
+
+    /**
+     * Returns the duplicate groups of the test tree, as `groups` reports them.
+     */
+    private static Set<Set<Path>> expectedGroups(Path root) {
+        return Set.of(
+                Set.of(root.resolve("small/a.txt"), root.resolve("small/b.txt"), root.resolve("small/deep/c.txt")),
+                Set.of(root.resolve("large/original.bin"), root.resolve("large/copy.bin")),
+                Set.of(root.resolve("large/middle.bin"), root.resolve("large/middle-copy.bin")));
+    }
+
+    /**
+     * Returns the groups of a type as sets of absolute paths. In duplicate groups, a scan keeps
+     * one path of the hardlinked file, whichever it walked first, so `link.bin` is read as `copy.bin`.
+     */
+    private static Set<Set<Path>> groups(ScanResult result, GroupType type) {
+        Set<Set<Path>> groups = new HashSet<>();
+        for (DuplicateGroup group : result.getGroups(type)) {
+            Set<Path> paths = new HashSet<>();
+            for (Path path : group.getPaths()) {
+                Path absolute = path.toAbsolutePath().normalize();
+                paths.add(type == GroupType.FILE && absolute.endsWith("large/link.bin")
+                        ? absolute.resolveSibling("copy.bin")
+                        : absolute);
+            }
+            groups.add(paths);
+        }
+        return groups;
+    }
+
+    private static void write(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+}
@@ -0,0 +1,153 @@
+package io.muzoo.ssc.cache;
+
+import io.muzoo.ssc.DuplicateFinder;
+import io.muzoo.ssc.ScanOptions;
+import io.muzoo.ssc.stats.StageStatistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that the hash cache is reused by later scans, forgets the files deleted from the scanned
+ * tree, keeps the files a filtered or sharded scan left out, and merges concurrent saves.
+ */
+class HashCacheTest {
+    private static final int HASHED_FILES = 8;
+
+    @TempDir
+    Path root;
+
+    @TempDir
+    Path work;
+
+    @Test
+    void nextScanReusesCachedDigests() throws IOException {
+        createTree();
+
+        StageStatistics first = scan(new ScanOptions());
+        assertEquals(HASHED_FILES, first.getFilesIn());
+        assertEquals(0, first.getCacheHits());
+
+        StageStatistics second = scan(new ScanOptions());
+        assertEquals(HASHED_FILES, second.getCacheHits());
+        assertEquals(0, second.getBytesRead());
+    }
+
+    @Test
+    void changedFileIsHashedAgain() throws IOException {
+        createTree();
+        scan(new ScanOptions());
+
+        Path changed = root.resolve("docs/a.txt");
+        Files.writeString(changed, "ALPHA");
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() + 2000));
+
+        assertEquals(HASHED_FILES - 1, scan(new ScanOptions()).getCacheHits());
+    }
+
+    @Test
+    void deletedFileIsForgotten() throws IOException {
+        createTree();
+        scan(new ScanOptions());
+        assertEquals(HASHED_FILES, HashCache.load(cacheFile()).size());
+
+        Files.delete(root.resolve("docs/c.txt"));
+        scan(new ScanOptions());
+
+        assertEquals(HASHED_FILES - 1, HashCache.load(cacheFile()).size());
+    }
+
+    @Test
+    void filteredScanKeepsFilesItLeftOut() throws IOException {
+        createTree();
+        scan(new ScanOptions());
+
+        scan(new ScanOptions().setExcludeGlobs(List.of("*.txt")));
+        scan(new ScanOptions().setIncludeGlobs(List.of("*.txt")));
+        scan(new ScanOptions().setExcludedDirectories(Set.of("docs")));
+        scan(new ScanOptions().setMinSize(100));
+        assertEquals(HASHED_FILES, HashCache.load(cacheFile()).size());
+
+        assertEquals(HASHED_FILES, scan(new ScanOptions()).getCacheHits());
+    }
+
+    @Test
+    void shardedScansKeepEachOthersFiles() throws IOException {
+        createTree();
+        scan(new ScanOptions());
+
+        scan(new ScanOptions().setShard(0, 2));
+        scan(new ScanOptions().setShard(1, 2));
+        assertEquals(HASHED_FILES, HashCache.load(cacheFile()).size());
+
+        assertEquals(HASHED_FILES, scan(new ScanOptions()).getCacheHits());
+    }
+
+    @Test
+    void concurrentSavesAreMerged() throws IOException {
+        createTree();
+        Path a = root.resolve("docs/a.txt");
+        Path b = root.resolve("media/x.bin");
+        HashCache first = HashCache.load(cacheFile());
+        HashCache second = HashCache.load(cacheFile());
+
+        first.store("xxh64", a, attributes(a), new byte[]{1});
+        second.store("xxh64", b, attributes(b), new byte[]{2});
+        first.save();
+        second.save();
+
+        HashCache merged = HashCache.load(cacheFile());
+        assertEquals(2, merged.size());
+        assertArrayEquals(new byte[]{1}, merged.lookup("xxh64", a, attributes(a)));
+        assertArrayEquals(new byte[]{2}, merged.lookup("xxh64", b, attributes(b)));
+        assertNull(merged.lookup("md5", a, attributes(a)));
+    }
+
+    /**
+     * Creates a tree of two groups of small text files and two of larger binary files, eight
+     * files that are all hashed in full.
+     */
+    private void createTree() throws IOException {
+        Files.createDirectories(root.resolve("docs"));
+        Files.createDirectories(root.resolve("media"));
+        for (String name : List.of("a", "b", "c")) {
+            Files.writeString(root.resolve("docs/" + name + ".txt"), "alpha");
+        }
+        Files.writeString(root.resolve("docs/d.txt"), "bravo");
+        byte[] content = new byte[4096];
+        for (String name : List.of("x", "y")) {
+            Files.write(root.resolve("media/" + name + ".bin"), content);
+        }
+        content[0] = 1;
+        for (String name : List.of("z", "w")) {
+            Files.write(root.resolve("media/" + name + ".bin"), content);
+        }
+    }
+
+    /**
+     * Scans the tree with the cache and returns the statistics of the full-hash stage.
+     */
+    private StageStatistics scan(ScanOptions options) throws IOException {
+        options.setCacheFile(cacheFile());
+        return new DuplicateFinder(root.toString(), "xxh64", options).scan().getStatistics().getStage("full-hash");
+    }
+
+    private Path cacheFile() {
+        return work.resolve("hash-cache.bin");
+    }
+
+    private static BasicFileAttributes attributes(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+}